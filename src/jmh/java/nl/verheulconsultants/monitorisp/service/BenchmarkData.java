@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+
+/**
+ * The outage histories the benchmarks run against.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public final class BenchmarkData {
+
+    /**
+     * The history starts at this time, 2020-01-01.
+     */
+    public static final long ORIGIN = 1_577_836_800_000L;
+
+    /**
+     * An outage of 10 to 70 seconds every 10 minutes; one in eight is caused by the internal network.
+     *
+     * @param size the number of outages
+     * @return the history
+     */
+    public static OutageStore history(int size) {
+        OutageStore store = new OutageStore();
+        for (int i = 0; i < size; i++) {
+            long start = ORIGIN + i * 600_000L;
+            store.append(start, start + 10_000L + (i % 7) * 10_000L, i % 8 == 0 ? INTERNAL : ISP, 1 + i % 3);
+        }
+        return store;
+    }
+
+    private BenchmarkData() {
+    }
+}
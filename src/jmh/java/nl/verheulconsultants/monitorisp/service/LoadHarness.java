@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getProbeEventLogFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.setSessionsDataFileNameForTest;
+import static nl.verheulconsultants.monitorisp.service.Utilities.sleepMillis;
+
+/**
+ * A load test of the probe engine and the persistence with many monitored hosts, to find where a probe cycle overruns its check interval.
+ *
+ * For every number of hosts the harness binds a listener per host on its own loopback address (127.1.x.y, all on one port; this needs Linux,
+ * where the whole 127/8 network is local). A fraction of the hosts fails, either refused (no listener) or timing out (a listener with a full
+ * backlog). The failing hosts are first in the selection, the worst case, since a cycle stops at the first host that answers. A controller
+ * checks the hosts for a number of cycles; then it is stopped and its session data are saved.
+ *
+ * Run it with
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec@load-test [-Dload.args="hosts=10,100,1000,10000 fail=0.01 mode=refuse cycles=5"]
+ * </pre>
+ * The results are printed and written as CSV to target/load-test.csv. Other arguments: interval, pause and timeout in milliseconds, out.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class LoadHarness {
+
+    private static final String PROFILE = "loadtest";
+    private static final String HEADER = "hosts,failing,cycles,meanCycleMillis,maxCycleMillis,overruns,probesPerSecond,cpuPercent,"
+            + "heapUsedMB,gcCount,gcMillis,saveMillis,sessionDataKB";
+    private final int hosts;
+    private final int failing;
+    private final boolean timeouts;
+    private final Map<String, String> config = new HashMap<>();
+    private final int cycles;
+    private final List<ServerSocketChannel> listeners = new ArrayList<>();
+    private final List<Socket> backlog = new ArrayList<>();
+    private Selector selector;
+    private Thread acceptor;
+    // the statistics of the measured cycles, written by the controller thread
+    private long cycleCount;
+    private long cycleMicrosSum;
+    private long cycleMicrosMax;
+    private long overruns;
+
+    LoadHarness(int hosts, double fail, boolean timeouts, int cycles, Map<String, String> config) {
+        this.hosts = hosts;
+        this.failing = (int) Math.round(hosts * fail);
+        this.timeouts = timeouts;
+        this.cycles = cycles;
+        this.config.putAll(config);
+    }
+
+    private static InetAddress address(int i) throws IOException {
+        return InetAddress.getByAddress(new byte[]{127, 1, (byte) (i / 250), (byte) (i % 250 + 1)});
+    }
+
+    /**
+     * Bind the listeners. The hosts that answer are accepted and closed by one selector thread.
+     *
+     * @return the port of all listeners
+     */
+    private int listen() throws IOException {
+        selector = Selector.open();
+        int port = 0;
+        for (int i = 0; i < hosts; i++) {
+            boolean fails = i < failing;
+            if (fails && !timeouts) {
+                // nothing listens: the connection is refused
+                continue;
+            }
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(address(i), port), fails ? 1 : 128);
+            port = channel.socket().getLocalPort();
+            listeners.add(channel);
+            if (fails) {
+                // never accepted: fill the backlog so the next connections time out
+                for (int k = 0; k < 3; k++) {
+                    Socket socket = new Socket();
+                    try {
+                        socket.connect(new InetSocketAddress(address(i), port), 200);
+                    } catch (IOException ex) {
+                        // the backlog is full
+                    }
+                    backlog.add(socket);
+                }
+            } else {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_ACCEPT);
+            }
+        }
+        if (port == 0) {
+            // every host is refused; any free port will do
+            try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+                port = channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).socket().getLocalPort();
+            }
+        }
+        acceptor = new Thread(this::accept, "load-test-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return port;
+    }
+
+    private void accept() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    SocketChannel accepted = ((ServerSocketChannel) key.channel()).accept();
+                    if (accepted != null) {
+                        accepted.close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | RuntimeException ex) {
+            // the selector is closed
+        }
+    }
+
+    private void close() throws IOException {
+        selector.close();
+        for (ServerSocketChannel channel : listeners) {
+            channel.close();
+        }
+        for (Socket socket : backlog) {
+            socket.close();
+        }
+    }
+
+    private synchronized void cycleEnded(long micros, int interval) {
+        cycleCount++;
+        if (cycleCount == 1) {
+            // the first cycle warms up
+            return;
+        }
+        cycleMicrosSum += micros;
+        cycleMicrosMax = Math.max(cycleMicrosMax, micros);
+        if (micros > interval * 1_000L) {
+            overruns++;
+        }
+    }
+
+    private synchronized long getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * Run the controller against the listeners and measure.
+     *
+     * @return a CSV line with the results
+     */
+    String run() throws IOException {
+        int port = listen();
+        StringBuilder addresses = new StringBuilder();
+        for (int i = 0; i < hosts; i++) {
+            addresses.append(i > 0 ? "," : "").append(address(i).getHostAddress());
+        }
+        config.put(RuntimeConfig.HOSTS, addresses.toString());
+        config.put(RuntimeConfig.PORT, Integer.toString(port));
+
+        ISPController controller = new ISPController(PROFILE, null, ProbeSampleLog.DEFAULT_CAPACITY);
+        controller.initWithDefaults();
+        int interval = controller.updateConfig(config, -1L).getCheckInterval();
+        controller.addListener(new ControllerListener() {
+            @Override
+            public void stateChanged(ISPController c) {
+            }
+
+            @Override
+            public void probeCycleEnded(ISPController c, long time, boolean success, long micros) {
+                cycleEnded(micros, interval);
+            }
+        });
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        com.sun.management.OperatingSystemMXBean os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        controller.start();
+        while (getCycleCount() < 1L) {
+            sleepMillis(10);
+        }
+        long probes = controller.getSessionData().successfulChecks + controller.getSessionData().failedChecks;
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long cpu = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        while (getCycleCount() < cycles + 1L) {
+            sleepMillis(10);
+        }
+        long elapsed = System.nanoTime() - start;
+        probes = controller.getSessionData().successfulChecks + controller.getSessionData().failedChecks - probes;
+        double cpuPercent = 100.0 * (os.getProcessCpuTime() - cpu) / elapsed;
+        gcCount = gcCount() - gcCount;
+        gcMillis = gcMillis() - gcMillis;
+        long heap = memory.getHeapMemoryUsage().getUsed();
+        controller.exitService();
+        controller.awaitTermination(60_000L);
+        close();
+
+        long saveStart = System.nanoTime();
+        controller.flush();
+        long saveMillis = (System.nanoTime() - saveStart) / 1_000_000L;
+        File data = new File(getSessionDataFileName(PROFILE));
+        long dataKB = data.length() / 1024;
+        data.delete();
+        Files.deleteIfExists(Paths.get(getProbeEventLogFileName(PROFILE)));
+
+        synchronized (this) {
+            return String.format("%d,%d,%d,%.1f,%.1f,%d,%.1f,%.1f,%d,%d,%d,%d,%d", hosts, failing, cycleCount - 1, cycleMicrosSum / 1_000.0 / (cycleCount - 1),
+                    cycleMicrosMax / 1_000.0, overruns, probes * 1e9 / elapsed, cpuPercent, heap / (1024 * 1024), gcCount, gcMillis, saveMillis, dataKB);
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0L;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0L, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Sweep the number of hosts.
+     *
+     * @param args arguments as name=value, see the class description
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                arguments.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        double fail = Double.parseDouble(arguments.getOrDefault("fail", "0.01"));
+        boolean timeouts = "timeout".equals(arguments.getOrDefault("mode", "refuse"));
+        int cycles = Integer.parseInt(arguments.getOrDefault("cycles", "5"));
+        Map<String, String> config = new HashMap<>();
+        config.put(RuntimeConfig.CHECK_INTERVAL, arguments.getOrDefault("interval", Integer.toString(ISPController.TIMEOUT_5_SEC)));
+        config.put(RuntimeConfig.HOST_PAUSE, arguments.getOrDefault("pause", "100"));
+        config.put(RuntimeConfig.PROBE_TIMEOUT, arguments.getOrDefault("timeout", Integer.toString(ISPController.TIMEOUT_900_MIL)));
+        Path out = Paths.get(arguments.getOrDefault("out", "target/load-test.csv"));
+
+        setSessionsDataFileNameForTest();
+        System.out.println(HEADER);
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            csv.println(HEADER);
+            for (String n : arguments.getOrDefault("hosts", "10,100,1000,10000").split(",")) {
+                String line = new LoadHarness(Integer.parseInt(n.trim()), fail, timeouts, cycles, config).run();
+                System.out.println(line);
+                csv.println(line);
+                csv.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.setSessionsDataFileNameForTest;
+import org.apache.wicket.model.util.CollectionModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark saving and loading the session data with a history of 1k, 100k and 1M outages.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int outages;
+
+    private MonitorISPData data;
+
+    @Setup
+    public void setup() {
+        setSessionsDataFileNameForTest();
+        data = new MonitorISPData("benchmark");
+        Host uva = new Host("1", "uva.nl");
+        data.paletteModel = new CollectionModel<>(List.of(new Host("0", "willfailconnection.com"), uva));
+        data.selected = List.of(uva);
+        data.history = BenchmarkData.history(outages);
+        data.startOfService = BenchmarkData.ORIGIN;
+        data.lastContactWithAnyHost = data.history.getEnd(outages - 1);
+        data.rollup = AvailabilityRollup.rebuild(data.history, data.startOfService, data.lastContactWithAnyHost, Clock.SYSTEM);
+        if (!data.saveData()) {
+            throw new IllegalStateException("The session data cannot be saved in " + getSessionDataFileName("benchmark"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        new File(getSessionDataFileName("benchmark")).delete();
+    }
+
+    @Benchmark
+    public boolean saveData() {
+        return data.saveData();
+    }
+
+    @Benchmark
+    public boolean loadData() {
+        return data.loadData();
+    }
+}
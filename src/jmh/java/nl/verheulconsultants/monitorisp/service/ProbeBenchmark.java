@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.setSessionsDataFileNameForTest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark checkISP against a listener on the loopback interface, so the cost of the monitor is measured and not the network.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProbeBenchmark {
+
+    private ServerSocket listener;
+    private ISPController controller;
+    private List<String> hosts;
+
+    @Setup
+    public void setup() throws IOException {
+        setSessionsDataFileNameForTest();
+        listener = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!listener.isClosed()) {
+                try (Socket socket = listener.accept()) {
+                    // a probe only makes the connection
+                } catch (IOException ex) {
+                    // the listener is closed
+                }
+            }
+        }, "benchmark-listener");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        controller = new ISPController("benchmark", null, ProbeSampleLog.DEFAULT_CAPACITY);
+        controller.initWithDefaults();
+        controller.updateConfig(Map.of(RuntimeConfig.HOSTS, listener.getInetAddress().getHostAddress(),
+                RuntimeConfig.PORT, Integer.toString(listener.getLocalPort())), -1);
+        controller.applyConfig();
+        hosts = controller.getConfig().getHosts();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        listener.close();
+        new File(getSessionDataFileName(controller.getProfile())).delete();
+    }
+
+    @Benchmark
+    public boolean checkISP() {
+        return controller.checkISP(hosts);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the status as read by the pages and the API, and the snapshot the controller creates after every check.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatusBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int outages;
+
+    private ISPController controller;
+
+    @Setup
+    public void setup() {
+        controller = new ISPController("benchmark", null, ProbeSampleLog.DEFAULT_CAPACITY);
+        controller.initWithDefaults();
+        MonitorISPData data = controller.getSessionData();
+        data.history = BenchmarkData.history(outages);
+        data.startOfService = BenchmarkData.ORIGIN;
+        data.lastContactWithAnyHost = data.history.getEnd(outages - 1);
+        data.rollup = AvailabilityRollup.rebuild(data.history, data.startOfService, data.lastContactWithAnyHost, Clock.SYSTEM);
+        controller.publishStatus();
+    }
+
+    /**
+     * The status list shown on the home page.
+     */
+    @Benchmark
+    public List getStatusData() {
+        return controller.getStatusData();
+    }
+
+    /**
+     * The total ISP unavailability of a new snapshot, as published after a check.
+     */
+    @Benchmark
+    public long getTotalISPUnavailability() {
+        controller.publishStatus();
+        return controller.getStatusSnapshot().getTotalISPUnavailability();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import nl.verheulconsultants.monitorisp.service.BenchmarkData;
+import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.millisToTime;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark rendering a page of the outage table: the rows supplied by the data provider and the text of their cells.
+ *
+ * The filtered view sorts on duration and shows only the internal outages; its selection is made again for every page, as after a new outage.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutageListBenchmark {
+
+    private static final int ROWS_PER_PAGE = 25;
+
+    @Param({"1000", "100000", "1000000"})
+    int outages;
+
+    private OutageStore store;
+
+    @Setup
+    public void setup() {
+        store = BenchmarkData.history(outages);
+    }
+
+    private OutageDataProvider provider() {
+        return new OutageDataProvider() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected OutageStore getStore() {
+                return store;
+            }
+        };
+    }
+
+    private static void render(OutageDataProvider provider, long first, Blackhole bh) {
+        bh.consume(provider.size());
+        Iterator<? extends OutageListItem> rows = provider.iterator(first, ROWS_PER_PAGE);
+        while (rows.hasNext()) {
+            OutageListItem row = rows.next();
+            bh.consume(row.getIndex());
+            bh.consume(row.getStart());
+            bh.consume(row.getEnd());
+            bh.consume(millisToTime(row.getDuration()));
+            bh.consume(row.getOutageCauseAsString());
+        }
+    }
+
+    /**
+     * The first page of the default view, newest first.
+     */
+    @Benchmark
+    public void defaultView(Blackhole bh) {
+        render(provider(), 0, bh);
+    }
+
+    /**
+     * A page in the middle of the internal outages sorted on duration.
+     */
+    @Benchmark
+    public void filteredView(Blackhole bh) {
+        OutageDataProvider provider = provider();
+        provider.getFilterState().setCauseName("INTERNAL");
+        provider.setSort(OutageDataProvider.DURATION, SortOrder.ASCENDING);
+        render(provider, provider.size() / 2, bh);
+    }
+}
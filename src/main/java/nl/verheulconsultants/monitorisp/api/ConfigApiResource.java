@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.RuntimeConfig;
+import static nl.verheulconsultants.monitorisp.service.Utilities.appendJsonString;
+import org.apache.wicket.request.IRequestParameters;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.string.StringValue;
+
+/**
+ * GET /api/config: the runtime configuration of a profile. POST /api/config: change it; the next probe cycle uses the new configuration.
+ *
+ * Parameters: profile selects a monitoring profile, by default the default profile. A POST has the settings to change as form or query
+ * parameters, named as in RuntimeConfig, and optionally version, the version the changes are based on; a change of another version is answered
+ * with 409. An invalid setting is answered with 400 and nothing is changed.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ConfigApiResource extends JsonApiResource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/config") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new ConfigApiResource();
+        }
+    };
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        Object request = attributes.getRequest().getContainerRequest();
+        if (request instanceof HttpServletRequest && "POST".equals(((HttpServletRequest) request).getMethod())) {
+            try {
+                update(attributes.getRequest().getRequestParameters());
+            } catch (IllegalArgumentException ex) {
+                ResourceResponse response = new ResourceResponse();
+                response.setError(400, ex.getMessage());
+                return response;
+            } catch (IllegalStateException ex) {
+                ResourceResponse response = new ResourceResponse();
+                response.setError(409, ex.getMessage());
+                return response;
+            }
+        }
+        return super.newResourceResponse(attributes);
+    }
+
+    /**
+     * Apply the settings in the parameters.
+     *
+     * @param parameters the request parameters
+     * @return the new configuration
+     */
+    static RuntimeConfig update(IRequestParameters parameters) {
+        ISPController controller = ExportResource.parseProfile(parameters.getParameterValue("profile").toOptionalString());
+        StringValue version = parameters.getParameterValue("version");
+        long expectedVersion;
+        try {
+            expectedVersion = version.isEmpty() ? -1L : Long.parseLong(version.toString());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid version " + version, ex);
+        }
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (String name : parameters.getParameterNames()) {
+            if (!"profile".equals(name) && !"version".equals(name)) {
+                changes.put(name, parameters.getParameterValue(name).toString(""));
+            }
+        }
+        return controller.updateConfig(changes, expectedVersion);
+    }
+
+    @Override
+    protected String getVersion(PageParameters parameters) {
+        return Long.toString(getConfig(parameters).getVersion());
+    }
+
+    @Override
+    protected void writeJson(PageParameters parameters, StringBuilder sb) {
+        writeConfig(getConfig(parameters), sb);
+    }
+
+    private static RuntimeConfig getConfig(PageParameters parameters) {
+        return ExportResource.parseProfile(parameters.get("profile").toOptionalString()).getConfig();
+    }
+
+    /**
+     * @param config the configuration
+     * @param sb the builder to append the configuration to as JSON object
+     */
+    static void writeConfig(RuntimeConfig config, StringBuilder sb) {
+        sb.append("{\"version\":").append(config.getVersion());
+        sb.append(",\"checkInterval\":").append(config.getCheckInterval());
+        sb.append(",\"recheckDelay\":").append(config.getRecheckDelay());
+        sb.append(",\"probeTimeout\":").append(config.getProbeTimeout());
+        sb.append(",\"hostPause\":").append(config.getHostPause());
+        sb.append(",\"routerTimeout\":").append(config.getRouterTimeout());
+        sb.append(",\"port\":").append(config.getPort());
+        appendJsonString(sb.append(",\"routerAddress\":"), config.getRouterAddress()).append(",\"hosts\":[");
+        for (int i = 0; i < config.getHosts().size(); i++) {
+            appendJsonString(i > 0 ? sb.append(',') : sb, config.getHosts().get(i));
+        }
+        sb.append("]}");
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import nl.verheulconsultants.monitorisp.service.ControllerListener;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Formats the probe cycles and outage transitions of the controllers as Server-Sent Events and hands them to the subscribers. The data of every
+ * event has the profile of the controller; a subscriber gets the events of all profiles or of one.
+ *
+ * An event is formatted once and offered to the bounded queue of every subscriber without waiting. A subscriber whose queue is full is
+ * lagging; it is closed and removed, so a stuck client never delays the controller.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class EventBroadcaster implements ControllerListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventBroadcaster.class);
+    /**
+     * The number of events buffered per subscriber, about 5 minutes of probe cycles.
+     */
+    static final int QUEUE_CAPACITY = 64;
+    /**
+     * Every subscriber holds a request thread.
+     */
+    static final int MAX_SUBSCRIBERS = 32;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final int capacity;
+    private final int maxSubscribers;
+    private long eventId = 0L;
+
+    /**
+     * A broadcaster with the default limits.
+     */
+    public EventBroadcaster() {
+        this(QUEUE_CAPACITY, MAX_SUBSCRIBERS);
+    }
+
+    /**
+     * @param capacity the number of events buffered per subscriber
+     * @param maxSubscribers the maximum number of subscribers
+     */
+    public EventBroadcaster(int capacity, int maxSubscribers) {
+        this.capacity = capacity;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Add a subscriber to the events of all profiles.
+     *
+     * @return the new subscriber or null if there are too many
+     */
+    public Subscriber subscribe() {
+        return subscribe(null);
+    }
+
+    /**
+     * Add a subscriber.
+     *
+     * @param profile the profile to get the events of or null for all profiles
+     * @return the new subscriber or null if there are too many
+     */
+    public synchronized Subscriber subscribe(String profile) {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(capacity, profile);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Remove and close a subscriber.
+     *
+     * @param subscriber the subscriber
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        // wake up the request thread waiting for an event
+        subscriber.queue.clear();
+        subscriber.queue.offer("");
+    }
+
+    /**
+     * Close all subscribers.
+     */
+    public void closeAll() {
+        for (Subscriber subscriber : subscribers) {
+            unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void stateChanged(ISPController controller) {
+        // the finer grained events are sent
+    }
+
+    @Override
+    public void probeCycleEnded(ISPController controller, long time, boolean success, long micros) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        StringBuilder data = startData(controller, 128);
+        data.append(",\"time\":\"").append(Instant.ofEpochMilli(time)).append("\",\"success\":").append(success);
+        data.append(",\"durationMicros\":").append(micros);
+        data.append(",\"up\":").append(controller.getStatusSnapshot().isCanReachISP()).append('}');
+        broadcast(controller.getProfile(), "cycle", data);
+    }
+
+    @Override
+    public void outageStarted(ISPController controller, long start, int cause) {
+        StringBuilder data = startData(controller, 96);
+        data.append(",\"start\":\"").append(Instant.ofEpochMilli(start)).append("\",\"cause\":\"").append(causeName(cause)).append("\"}");
+        broadcast(controller.getProfile(), "outage-start", data);
+    }
+
+    @Override
+    public void outageEnded(ISPController controller, long start, long end, int cause) {
+        StringBuilder data = startData(controller, 160);
+        data.append(",\"start\":\"").append(Instant.ofEpochMilli(start)).append("\",\"end\":\"").append(Instant.ofEpochMilli(end));
+        data.append("\",\"duration\":").append(end - start).append(",\"cause\":\"").append(causeName(cause)).append("\"}");
+        broadcast(controller.getProfile(), "outage-end", data);
+    }
+
+    private static StringBuilder startData(ISPController controller, int capacity) {
+        // a profile name needs no escaping
+        return new StringBuilder(capacity).append("{\"profile\":\"").append(controller.getProfile()).append('"');
+    }
+
+    /**
+     * Send an event to the subscribers of all profiles and of the profile of the event.
+     *
+     * @param profile the profile of the event
+     * @param event the event name
+     * @param data the data, a single line
+     */
+    synchronized void broadcast(String profile, String event, CharSequence data) {
+        String text = "id: " + ++eventId + "\nevent: " + event + "\ndata: " + data + "\n\n";
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.profile != null && !subscriber.profile.equals(profile)) {
+                continue;
+            }
+            if (!subscriber.queue.offer(text)) {
+                LOGGER.info("An event stream subscriber is lagging {} events and is disconnected.", capacity);
+                unsubscribe(subscriber);
+            }
+        }
+    }
+
+    /**
+     * The events for one client.
+     */
+    public static final class Subscriber {
+
+        private final BlockingQueue<String> queue;
+        private final String profile;
+        private volatile boolean closed = false;
+
+        private Subscriber(int capacity, String profile) {
+            queue = new ArrayBlockingQueue<>(capacity);
+            this.profile = profile;
+        }
+
+        /**
+         * Wait for the next event.
+         *
+         * @param timeout the maximum time to wait in milliseconds
+         * @return the event text or null if there was no event in time or the subscriber is closed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public String next(long timeout) throws InterruptedException {
+            return closed ? null : queue.poll(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return true if the subscriber is removed, for instance because it was lagging
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the probe cycles and the outage transitions as Server-Sent Events (text/event-stream).
+ *
+ * The events are cycle, outage-start and outage-end, each with a single line of JSON data. A comment is sent when there was no event for a while
+ * to keep the connection open. A client that cannot keep up is disconnected and can reconnect. The parameter profile selects the events of one
+ * monitoring profile; by default the events of all profiles are sent.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class EventStreamResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamResource.class);
+    static final long KEEPALIVE_MILLIS = 15_000L;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final EventBroadcaster BROADCASTER = new EventBroadcaster();
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("events") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new EventStreamResource();
+        }
+    };
+
+    /**
+     * @return the broadcaster to register with the controller
+     */
+    public static EventBroadcaster getBroadcaster() {
+        return BROADCASTER;
+    }
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+        String profile = attributes.getParameters().get("profile").toOptionalString();
+        if (profile != null && getController(profile) == null) {
+            response.setError(400, "Unknown profile " + profile);
+            return response;
+        }
+        final EventBroadcaster.Subscriber subscriber = BROADCASTER.subscribe(profile);
+        if (subscriber == null) {
+            response.setError(503, "Too many event stream subscribers");
+            return response;
+        }
+        response.setContentType("text/event-stream");
+        response.setTextEncoding("UTF-8");
+        response.setCacheDuration(Duration.ZERO);
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) throws IOException {
+                WebResponse out = (WebResponse) attributes.getResponse();
+                try {
+                    // reconnect after 5 seconds when the stream is closed
+                    out.write("retry: 5000\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    while (!subscriber.isClosed()) {
+                        String event = subscriber.next(KEEPALIVE_MILLIS);
+                        if (event != null && !event.isEmpty()) {
+                            out.write(event.getBytes(StandardCharsets.UTF_8));
+                        } else if (event == null) {
+                            out.write(KEEPALIVE);
+                        }
+                        out.flush();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException ex) {
+                    // the client has gone; the container wraps the IOException
+                    LOGGER.debug("The event stream is closed by the client: {}", ex.toString());
+                } finally {
+                    BROADCASTER.unsubscribe(subscriber);
+                }
+            }
+        });
+        return response;
+    }
+}
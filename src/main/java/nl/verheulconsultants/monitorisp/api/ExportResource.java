@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeOf;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.ContentDisposition;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the outage history or the recent probe samples to the client.
+ *
+ * Parameters: data=outages|probes, format=csv|ndjson, from and to as ISO-8601 instants or epoch millis, cause as name or number,
+ * profile the name of a monitoring profile.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ExportResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportResource.class);
+    static final int BUFFER_SIZE = 8192;
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+        response.disableCaching();
+        PageParameters parameters = attributes.getParameters();
+        final boolean probes = "probes".equals(parameters.get("data").toString("outages"));
+        final String formatName = parameters.get("format").toString("csv");
+        final int format;
+        final long from;
+        final long to;
+        final int cause;
+        final ISPController controller;
+        try {
+            controller = parseProfile(parameters.get("profile").toOptionalString());
+            format = parseFormat(formatName);
+            from = parseTime(parameters.get("from").toOptionalString(), 0L);
+            to = parseTime(parameters.get("to").toOptionalString(), Long.MAX_VALUE);
+            cause = parseCause(parameters.get("cause").toOptionalString());
+        } catch (IllegalArgumentException ex) {
+            response.setError(400, ex.getMessage());
+            return response;
+        }
+
+        response.setContentType(format == OutageExporter.CSV ? "text/csv" : "application/x-ndjson");
+        response.setTextEncoding("UTF-8");
+        response.setFileName((probes ? "probes." : "outages.") + formatName);
+        response.setContentDisposition(ContentDisposition.ATTACHMENT);
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) throws IOException {
+                Response out = attributes.getResponse();
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+                OutageExporter exporter = new OutageExporter(writer, format);
+                long count = probes ? exporter.writeProbes(controller.getProbeLog(), from, to)
+                        : exporter.writeOutages(controller.getHistory(), from, to, cause);
+                LOGGER.debug("Exported {} {} as {}", count, probes ? "probes" : "outages", formatName);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Parse the format parameter.
+     *
+     * @param name csv or ndjson
+     * @return the OutageExporter format
+     */
+    static int parseFormat(String name) {
+        switch (name) {
+            case "csv":
+                return OutageExporter.CSV;
+            case "ndjson":
+            case "json":
+                return OutageExporter.NDJSON;
+            default:
+                throw new IllegalArgumentException("Unknown format " + name);
+        }
+    }
+
+    /**
+     * Parse the profile parameter.
+     *
+     * @param value the name of a profile or null
+     * @return the controller of the profile, of the default profile when absent
+     */
+    static ISPController parseProfile(String value) {
+        if (value == null || value.isEmpty()) {
+            return getController();
+        }
+        ISPController controller = getController(value);
+        if (controller == null) {
+            throw new IllegalArgumentException("Unknown profile " + value);
+        }
+        return controller;
+    }
+
+    /**
+     * Parse the cause parameter.
+     *
+     * @param value a cause name, number or null
+     * @return the cause or ALL_CAUSES when absent
+     */
+    static int parseCause(String value) {
+        if (value == null || value.isEmpty()) {
+            return OutageExporter.ALL_CAUSES;
+        }
+        int cause = causeOf(value);
+        if (cause < 0) {
+            throw new IllegalArgumentException("Unknown cause " + value);
+        }
+        return cause;
+    }
+
+    /**
+     * Parse a time parameter.
+     *
+     * @param value an ISO-8601 instant, epoch millis or null
+     * @param defaultValue the value when absent
+     * @return the time in millis
+     */
+    static long parseTime(String value, long defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            try {
+                return Instant.parse(value).toEpochMilli();
+            } catch (DateTimeParseException ex2) {
+                throw new IllegalArgumentException("Invalid time " + value, ex2);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.Federation;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.appendJsonString;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getFederation;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * GET /api/federation: the peers and the most recent outages of this node, newest first, each marked shared or site-local.
+ *
+ * Parameter: limit, the number of outages, default 100.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class FederationApiResource extends JsonApiResource {
+
+    private static final long serialVersionUID = 1L;
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1_000;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/federation") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new FederationApiResource();
+        }
+    };
+
+    @Override
+    protected String getVersion(PageParameters parameters) {
+        Federation federation = getFederation();
+        StringBuilder sb = new StringBuilder(32).append(federation.getController().getHistory().getVersion());
+        for (Federation.Peer peer : federation.getPeers()) {
+            sb.append('.').append(peer.getEpoch()).append('.').append(peer.getSequence());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    protected void writeJson(PageParameters parameters, StringBuilder sb) {
+        int limit = parameters.get("limit").toInt(DEFAULT_LIMIT);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("The limit must be between 1 and " + MAX_LIMIT);
+        }
+        writeFederation(getFederation(), limit, sb);
+    }
+
+    /**
+     * @param federation the federation
+     * @param limit the maximum number of outages
+     * @param sb the builder to append the JSON object to
+     */
+    static void writeFederation(Federation federation, int limit, StringBuilder sb) {
+        sb.append("{\"node\":");
+        appendJsonString(sb, federation.getNode()).append(",\"peers\":[");
+        int count = 0;
+        for (Federation.Peer peer : federation.getPeers()) {
+            sb.append(count++ > 0 ? ",{\"node\":" : "{\"node\":");
+            appendJsonString(sb, peer.getNode()).append(",\"url\":");
+            appendJsonString(sb, peer.getUrl()).append(",\"sequence\":").append(peer.getSequence());
+            appendTime(sb.append(",\"lastPoll\":"), peer.getLastPoll()).append(",\"error\":");
+            if (peer.getLastError() == null) {
+                sb.append("null");
+            } else {
+                appendJsonString(sb, peer.getLastError());
+            }
+            sb.append('}');
+        }
+        sb.append("],\"outages\":[");
+        OutageStore store = federation.getController().getHistory();
+        count = 0;
+        for (int i = store.size() - 1; i >= 0 && count < limit; i--) {
+            List<String> sharedWith = federation.getSharedWith(store, i);
+            sb.append(count++ > 0 ? ",{\"index\":" : "{\"index\":").append(i + 1);
+            appendTime(sb.append(",\"start\":"), store.getStart(i));
+            appendTime(sb.append(",\"end\":"), store.getEnd(i));
+            sb.append(",\"cause\":\"").append(causeName(store.getCause(i)));
+            sb.append("\",\"scope\":\"").append(sharedWith.isEmpty() ? Federation.SITE_LOCAL : Federation.SHARED).append("\",\"sharedWith\":[");
+            for (int k = 0; k < sharedWith.size(); k++) {
+                appendJsonString(k > 0 ? sb.append(',') : sb, sharedWith.get(k));
+            }
+            sb.append("]}");
+        }
+        sb.append("]}");
+    }
+}
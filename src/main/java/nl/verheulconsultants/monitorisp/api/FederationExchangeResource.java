@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import nl.verheulconsultants.monitorisp.service.Federation;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getFederation;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * GET /api/federation/outages: the outages of this node for its peers, in the compact exchange format of the Federation.
+ *
+ * Parameter: since, the sequence number of the last outage the peer has. At most Federation.MAX_BATCH outages are returned.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class FederationExchangeResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/federation/outages") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new FederationExchangeResource();
+        }
+    };
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+        final int since = attributes.getParameters().get("since").toInt(-1);
+        if (since < 0) {
+            response.setError(400, "Invalid since");
+            return response;
+        }
+        response.setContentType("text/plain");
+        response.setTextEncoding("US-ASCII");
+        response.setCacheDuration(Duration.ZERO);
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) throws IOException {
+                Federation federation = getFederation();
+                ISPController controller = federation.getController();
+                StringBuilder sb = new StringBuilder(4_096);
+                Federation.writeBatch(federation.getNode(), controller.getStatusSnapshot().getStartOfService(), controller.getHistory(), since, sb);
+                attributes.getResponse().write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+            }
+        });
+        return response;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.Host;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import static nl.verheulconsultants.monitorisp.service.Utilities.appendJsonString;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * GET /api/hosts: the hosts to choose from, which of them are checked and the router address. The profile parameter selects a monitoring
+ * profile, by default the default profile.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class HostsApiResource extends JsonApiResource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/hosts") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new HostsApiResource();
+        }
+    };
+
+    @Override
+    protected String getVersion(PageParameters parameters) {
+        // the host lists are short and have no version of their own
+        return Integer.toHexString(createJson(ExportResource.parseProfile(parameters.get("profile").toOptionalString())).hashCode());
+    }
+
+    @Override
+    protected void writeJson(PageParameters parameters, StringBuilder sb) {
+        sb.append(createJson(ExportResource.parseProfile(parameters.get("profile").toOptionalString())));
+    }
+
+    static String createJson(ISPController controller) {
+        StringBuilder sb = new StringBuilder(256);
+        List<Host> selected = controller.getSelected();
+        sb.append("{\"hosts\":[");
+        int count = 0;
+        for (Host host : controller.getChoices()) {
+            sb.append(count++ > 0 ? ",{\"id\":" : "{\"id\":");
+            appendJsonString(sb, host.getId()).append(",\"address\":");
+            appendJsonString(sb, host.getHostAddress()).append(",\"selected\":").append(selected.contains(host)).append('}');
+        }
+        sb.append("],\"routerAddress\":");
+        return appendJsonString(sb, controller.getRouterAddress()).append('}').toString();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+
+/**
+ * Base of the JSON API resources with conditional GET.
+ *
+ * The entity tag is made of the version of the data, which is cheap to get, so a client polling with If-None-Match gets a 304 without the response being
+ * built. If-Modified-Since is handled by Wicket using the last modified time.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public abstract class JsonApiResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * Versions restart with the application; this keeps entity tags of different runs apart.
+     */
+    private static final String RUN = Long.toHexString(System.currentTimeMillis());
+
+    /**
+     * Get the version of the data the response is built from.
+     *
+     * @param parameters the request parameters
+     * @return a version that changes when the response would change
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    protected abstract String getVersion(PageParameters parameters);
+
+    /**
+     * @param parameters the request parameters
+     * @return the time the data last changed or null if unknown
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    protected Instant getLastModified(PageParameters parameters) {
+        return null;
+    }
+
+    /**
+     * Build the response.
+     *
+     * @param parameters the request parameters
+     * @param sb the builder to append the JSON document to
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    protected abstract void writeJson(PageParameters parameters, StringBuilder sb);
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+        PageParameters parameters = attributes.getParameters();
+        response.setContentType("application/json");
+        response.setTextEncoding("UTF-8");
+        // clients must revalidate, which is cheap
+        response.setCacheDuration(Duration.ZERO);
+
+        final String etag;
+        final Instant lastModified;
+        try {
+            etag = "\"" + RUN + "-" + getVersion(parameters) + "\"";
+            lastModified = getLastModified(parameters);
+        } catch (IllegalArgumentException ex) {
+            response.setError(400, ex.getMessage());
+            return response;
+        }
+        response.getHeaders().setHeader("ETag", etag);
+        if (null != lastModified) {
+            response.setLastModified(lastModified);
+        }
+        String ifNoneMatch = ((WebRequest) attributes.getRequest()).getHeader("If-None-Match");
+        if (etag.equals(ifNoneMatch)) {
+            response.setStatusCode(304);
+            return response;
+        }
+
+        final StringBuilder sb = new StringBuilder(1_024);
+        try {
+            writeJson(parameters, sb);
+        } catch (IllegalArgumentException ex) {
+            response.setError(400, ex.getMessage());
+            return response;
+        }
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) throws IOException {
+                attributes.getResponse().write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Append a time as ISO-8601 string or null if it is 0.
+     *
+     * @param sb the builder
+     * @param time the time in milliseconds
+     * @return the builder
+     */
+    static StringBuilder appendTime(StringBuilder sb, long time) {
+        if (time <= 0L) {
+            return sb.append("null");
+        }
+        return sb.append('"').append(Instant.ofEpochMilli(time)).append('"');
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.LatencyHistogram;
+import nl.verheulconsultants.monitorisp.service.ProbeMetrics;
+import nl.verheulconsultants.monitorisp.service.StatusSnapshot;
+import static nl.verheulconsultants.monitorisp.service.Utilities.NUMBER_OF_CAUSES;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.PROFILES;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Serves the check counters, the unavailability per cause and the probe timings of all monitoring profiles in the Prometheus text exposition
+ * format.
+ *
+ * The samples are read from the status snapshot and the histograms of the controller, which are kept up to date while probing. The text is
+ * built in a buffer that is reused by every scrape.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class MetricsResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final Object LOCK = new Object();
+    private static final StringBuilder TEXT = new StringBuilder(4_096);
+    private static byte[] bytes = new byte[4_096];
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("metrics") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new MetricsResource();
+        }
+    };
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+        response.setContentType(CONTENT_TYPE);
+        response.setCacheDuration(Duration.ZERO);
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) throws IOException {
+                // one scrape at a time, the buffers are shared
+                synchronized (LOCK) {
+                    TEXT.setLength(0);
+                    writeMetrics(PROFILES.getAll(), TEXT);
+                    int length = TEXT.length();
+                    if (bytes.length < length) {
+                        bytes = new byte[Math.max(length, 2 * bytes.length)];
+                    }
+                    for (int i = 0; i < length; i++) {
+                        char c = TEXT.charAt(i);
+                        // the names and labels are ASCII, a host name is an ASCII (punycode) name
+                        bytes[i] = c < 0x80 ? (byte) c : (byte) '?';
+                    }
+                    attributes.getResponse().write(bytes, 0, length);
+                }
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Write all metrics. Every sample has the label profile; the samples of all profiles are grouped per metric.
+     *
+     * @param controllers the controllers of the profiles
+     * @param sb the builder to append the text to
+     */
+    static void writeMetrics(Collection<ISPController> controllers, StringBuilder sb) {
+        header(sb, "monitorisp_checks_total", "counter", "Connection checks with a host by result.");
+        for (ISPController c : controllers) {
+            String labels = c.getMetrics().getLabels();
+            StatusSnapshot status = c.getStatusSnapshot();
+            sb.append("monitorisp_checks_total{").append(labels).append(",result=\"success\"} ").append(status.getSuccessfulChecks()).append('\n');
+            sb.append("monitorisp_checks_total{").append(labels).append(",result=\"failure\"} ").append(status.getFailedChecks()).append('\n');
+        }
+
+        header(sb, "monitorisp_interruptions_total", "counter", "Confirmed interruptions of the internet connection.");
+        for (ISPController c : controllers) {
+            sample(sb, "monitorisp_interruptions_total", c).append(c.getStatusSnapshot().getNumberOfInterruptions()).append('\n');
+        }
+
+        header(sb, "monitorisp_unavailability_seconds_total", "counter", "Time the internet connection was unavailable by cause.");
+        for (ISPController c : controllers) {
+            StatusSnapshot status = c.getStatusSnapshot();
+            for (int cause = 0; cause < NUMBER_OF_CAUSES; cause++) {
+                sb.append("monitorisp_unavailability_seconds_total{").append(c.getMetrics().getLabels());
+                sb.append(",cause=\"").append(causeName(cause)).append("\"} ");
+                LatencyHistogram.appendSeconds(sb, status.getUnavailability(cause) * 1_000L).append('\n');
+            }
+        }
+
+        header(sb, "monitorisp_up", "gauge", "1 if the internet can be reached, 0 if not.");
+        for (ISPController c : controllers) {
+            sample(sb, "monitorisp_up", c).append(c.getStatusSnapshot().isCanReachISP() ? 1 : 0).append('\n');
+        }
+        header(sb, "monitorisp_checking", "gauge", "1 if the controller is checking connections.");
+        for (ISPController c : controllers) {
+            sample(sb, "monitorisp_checking", c).append(c.getStatusSnapshot().isBusyCheckingConnections() ? 1 : 0).append('\n');
+        }
+
+        header(sb, "monitorisp_probe_duration_seconds", "histogram", "Time to connect or to fail per host.");
+        for (ISPController c : controllers) {
+            ProbeMetrics metrics = c.getMetrics();
+            for (Map.Entry<String, LatencyHistogram> e : metrics.getProbeDurations().entrySet()) {
+                e.getValue().appendTo(sb, "monitorisp_probe_duration_seconds", metrics.getProbeLabels(e.getKey()));
+            }
+        }
+        header(sb, "monitorisp_probe_cycle_duration_seconds", "histogram", "Time of a check cycle, until a host answered or all hosts failed.");
+        for (ISPController c : controllers) {
+            c.getMetrics().getCycleDuration().appendTo(sb, "monitorisp_probe_cycle_duration_seconds", c.getMetrics().getLabels());
+        }
+        header(sb, "monitorisp_probe_start_lag_seconds", "histogram", "Time a check cycle started later than intended.");
+        for (ISPController c : controllers) {
+            c.getMetrics().getStartLag().appendTo(sb, "monitorisp_probe_start_lag_seconds", c.getMetrics().getLabels());
+        }
+        header(sb, "monitorisp_probe_interval_drift_seconds", "histogram", "Time the interval between the starts of two check cycles exceeded the check interval.");
+        for (ISPController c : controllers) {
+            c.getMetrics().getIntervalDrift().appendTo(sb, "monitorisp_probe_interval_drift_seconds", c.getMetrics().getLabels());
+        }
+        header(sb, "monitorisp_probe_gaps_total", "counter", "Check cycles that started so late that the connection was not checked for a while.");
+        for (ISPController c : controllers) {
+            sample(sb, "monitorisp_probe_gaps_total", c).append(c.getMetrics().getProbeGaps()).append('\n');
+        }
+        header(sb, "monitorisp_probe_gap_seconds_total", "counter", "Time the connection was not checked because the check cycles stalled.");
+        for (ISPController c : controllers) {
+            LatencyHistogram.appendSeconds(sample(sb, "monitorisp_probe_gap_seconds_total", c), c.getMetrics().getProbeGapMillis() * 1_000L).append('\n');
+        }
+        header(sb, "monitorisp_session_save_duration_seconds", "histogram", "Time to save the session data.");
+        for (ISPController c : controllers) {
+            c.getMetrics().getSaveDuration().appendTo(sb, "monitorisp_session_save_duration_seconds", c.getMetrics().getLabels());
+        }
+    }
+
+    private static StringBuilder sample(StringBuilder sb, String name, ISPController controller) {
+        return sb.append(name).append('{').append(controller.getMetrics().getLabels()).append("} ");
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import nl.verheulconsultants.monitorisp.service.ProbeSampleLog;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+
+/**
+ * Writes outages and probe samples as CSV or newline delimited JSON directly from the stores, one line at a time.
+ *
+ * Nothing is collected in between, so the memory used does not depend on the length of the history.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public final class OutageExporter {
+
+    /**
+     * Comma separated values with a header line.
+     */
+    public static final int CSV = 0;
+
+    /**
+     * One JSON object per line.
+     */
+    public static final int NDJSON = 1;
+
+    /**
+     * Any outage cause.
+     */
+    public static final int ALL_CAUSES = -1;
+
+    private final Writer out;
+    private final int format;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * An exporter writing to a buffered writer.
+     *
+     * @param out the writer, buffered by the caller
+     * @param format CSV or NDJSON
+     */
+    public OutageExporter(Writer out, int format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Write the outages that overlap a time range.
+     *
+     * @param store the outage history
+     * @param from the start of the range
+     * @param to the end of the range
+     * @param cause the cause to select or ALL_CAUSES
+     * @return the number of outages written
+     * @throws IOException if the client went away
+     */
+    public long writeOutages(OutageStore store, long from, long to, int cause) throws IOException {
+        if (format == CSV) {
+            out.write("index,start,end,durationMillis,cause,interruptions\n");
+        }
+        long count = 0L;
+        OutageStore.Cursor cursor = store.cursor();
+        while (cursor.next()) {
+            if (cursor.getEnd() <= from || cursor.getStart() >= to || (cause != ALL_CAUSES && cursor.getCause() != cause)) {
+                continue;
+            }
+            line.setLength(0);
+            if (format == CSV) {
+                line.append(cursor.getIndex() + 1).append(',')
+                        .append(Instant.ofEpochMilli(cursor.getStart())).append(',')
+                        .append(Instant.ofEpochMilli(cursor.getEnd())).append(',')
+                        .append(cursor.getDuration()).append(',')
+                        .append(causeName(cursor.getCause())).append(',')
+                        .append(cursor.getInterruptions()).append('\n');
+            } else {
+                line.append("{\"index\":").append(cursor.getIndex() + 1)
+                        .append(",\"start\":\"").append(Instant.ofEpochMilli(cursor.getStart()))
+                        .append("\",\"end\":\"").append(Instant.ofEpochMilli(cursor.getEnd()))
+                        .append("\",\"durationMillis\":").append(cursor.getDuration())
+                        .append(",\"cause\":\"").append(causeName(cursor.getCause()))
+                        .append("\",\"interruptions\":").append(cursor.getInterruptions()).append("}\n");
+            }
+            out.append(line);
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Write the probe samples in a time range.
+     *
+     * @param log the probe samples
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the number of probes written
+     * @throws IOException if the client went away
+     */
+    public long writeProbes(ProbeSampleLog log, long from, long to) throws IOException {
+        if (format == CSV) {
+            out.write("sequence,time,host,success,rttMicros\n");
+        }
+        long count = 0L;
+        ProbeSampleLog.Reader reader = log.reader();
+        while (reader.next()) {
+            if (reader.getTime() < from || reader.getTime() >= to) {
+                continue;
+            }
+            line.setLength(0);
+            if (format == CSV) {
+                line.append(reader.getSequence()).append(',')
+                        .append(Instant.ofEpochMilli(reader.getTime())).append(',')
+                        .append(reader.getHost()).append(',')
+                        .append(reader.isSuccess()).append(',')
+                        .append(reader.getRttMicros()).append('\n');
+            } else {
+                line.append("{\"sequence\":").append(reader.getSequence())
+                        .append(",\"time\":\"").append(Instant.ofEpochMilli(reader.getTime()))
+                        .append("\",\"host\":\"").append(reader.getHost())
+                        .append("\",\"success\":").append(reader.isSuccess())
+                        .append(",\"rttMicros\":").append(reader.getRttMicros()).append("}\n");
+            }
+            out.append(line);
+            count++;
+        }
+        out.flush();
+        return count;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.time.Instant;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * GET /api/outages: a page of the outage history.
+ *
+ * Parameters: from and to select on the start of the outages, cause selects a cause, order=asc (default) or desc, limit the page size and cursor the
+ * nextCursor of the previous page. The first page is found by a binary search on the start times; following pages continue at the cursor, so a page costs
+ * the same however deep in the history it is. In ascending order nextCursor is also returned at the end of the history, to poll for new outages.
+ * The profile parameter selects a monitoring profile, by default the default profile.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutagesApiResource extends JsonApiResource {
+
+    private static final long serialVersionUID = 1L;
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1_000;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/outages") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new OutagesApiResource();
+        }
+    };
+
+    /**
+     * @return the outage history to serve
+     */
+    protected OutageStore getStore() {
+        return getController().getHistory();
+    }
+
+    private OutageStore getStore(PageParameters parameters) {
+        String profile = parameters.get("profile").toOptionalString();
+        return profile == null ? getStore() : ExportResource.parseProfile(profile).getHistory();
+    }
+
+    @Override
+    protected String getVersion(PageParameters parameters) {
+        return Long.toString(getStore(parameters).getVersion());
+    }
+
+    @Override
+    protected Instant getLastModified(PageParameters parameters) {
+        OutageStore store = getStore(parameters);
+        int n = store.size();
+        return n > 0 ? Instant.ofEpochMilli(store.getEnd(n - 1)) : null;
+    }
+
+    @Override
+    protected void writeJson(PageParameters parameters, StringBuilder sb) {
+        OutageStore store = getStore(parameters);
+        long from = ExportResource.parseTime(parameters.get("from").toOptionalString(), Long.MIN_VALUE);
+        long to = ExportResource.parseTime(parameters.get("to").toOptionalString(), Long.MAX_VALUE);
+        int cause = ExportResource.parseCause(parameters.get("cause").toOptionalString());
+        int limit = parameters.get("limit").toInt(DEFAULT_LIMIT);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("The limit must be between 1 and " + MAX_LIMIT);
+        }
+        boolean descending = "desc".equals(parameters.get("order").toString("asc"));
+        String cursor = parameters.get("cursor").toOptionalString();
+
+        int n = store.size();
+        int i;
+        if (null != cursor) {
+            try {
+                i = Integer.parseInt(cursor);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor, ex);
+            }
+            // a descending page starts at the outage of the cursor, an ascending page may start after the last one
+            if (descending ? i < -1 || i >= n : i < 0 || i > n) {
+                throw new IllegalArgumentException("Invalid cursor " + cursor);
+            }
+        } else {
+            i = descending ? store.indexOf(to) - 1 : store.indexOf(from);
+        }
+
+        sb.append("{\"version\":").append(store.getVersion()).append(",\"items\":[");
+        int count = 0;
+        if (descending) {
+            for (; i >= 0 && count < limit && store.getStart(i) >= from; i--) {
+                if (store.getStart(i) < to && (cause < 0 || store.getCause(i) == cause)) {
+                    writeOutage(store, i, count++ > 0 ? sb.append(',') : sb);
+                }
+            }
+            boolean more = i >= 0 && store.getStart(i) >= from;
+            sb.append("],\"nextCursor\":").append(more ? "\"" + i + "\"" : "null").append('}');
+        } else {
+            for (; i < n && count < limit && store.getStart(i) < to; i++) {
+                if (store.getStart(i) >= from && (cause < 0 || store.getCause(i) == cause)) {
+                    writeOutage(store, i, count++ > 0 ? sb.append(',') : sb);
+                }
+            }
+            boolean more = i >= n || store.getStart(i) < to;
+            sb.append("],\"nextCursor\":").append(more ? "\"" + i + "\"" : "null").append('}');
+        }
+    }
+
+    private static void writeOutage(OutageStore store, int i, StringBuilder sb) {
+        sb.append("{\"index\":").append(i + 1)
+                .append(",\"start\":\"").append(Instant.ofEpochMilli(store.getStart(i)))
+                .append("\",\"end\":\"").append(Instant.ofEpochMilli(store.getEnd(i)))
+                .append("\",\"durationMillis\":").append(store.getEnd(i) - store.getStart(i))
+                .append(",\"cause\":\"").append(causeName(store.getCause(i)))
+                .append("\",\"interruptions\":").append(store.getInterruptions(i)).append('}');
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.PROFILES;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * GET /api/profiles: the monitoring profiles with their latest status snapshot.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProfilesApiResource extends JsonApiResource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/profiles") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new ProfilesApiResource();
+        }
+    };
+
+    @Override
+    protected String getVersion(PageParameters parameters) {
+        StringBuilder sb = new StringBuilder(32);
+        for (ISPController controller : PROFILES.getAll()) {
+            sb.append(sb.length() > 0 ? "." : "").append(Long.toHexString(controller.getStatusSnapshot().getVersion()));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    protected void writeJson(PageParameters parameters, StringBuilder sb) {
+        writeProfiles(PROFILES.getAll(), sb);
+    }
+
+    /**
+     * @param controllers the controllers of the profiles
+     * @param sb the builder to append the profiles to as JSON object
+     */
+    static void writeProfiles(Iterable<ISPController> controllers, StringBuilder sb) {
+        sb.append("{\"profiles\":[");
+        int count = 0;
+        for (ISPController controller : controllers) {
+            // a profile name needs no escaping
+            sb.append(count++ > 0 ? ",{\"name\":\"" : "{\"name\":\"").append(controller.getProfile()).append("\",\"status\":");
+            StatusApiResource.writeStatus(controller.getStatusSnapshot(), sb);
+            sb.append('}');
+        }
+        sb.append("]}");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.time.Instant;
+import nl.verheulconsultants.monitorisp.service.StatusSnapshot;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * GET /api/status: the latest status snapshot. The profile parameter selects a monitoring profile, by default the default profile.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class StatusApiResource extends JsonApiResource {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The reference to mount.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("api/status") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new StatusApiResource();
+        }
+    };
+
+    @Override
+    protected String getVersion(PageParameters parameters) {
+        return Long.toString(getStatus(parameters).getVersion());
+    }
+
+    @Override
+    protected Instant getLastModified(PageParameters parameters) {
+        return Instant.ofEpochMilli(getStatus(parameters).getTimeStamp());
+    }
+
+    @Override
+    protected void writeJson(PageParameters parameters, StringBuilder sb) {
+        writeStatus(getStatus(parameters), sb);
+    }
+
+    private static StatusSnapshot getStatus(PageParameters parameters) {
+        return ExportResource.parseProfile(parameters.get("profile").toOptionalString()).getStatusSnapshot();
+    }
+
+    /**
+     * @param s the status
+     * @param sb the builder to append the status to as JSON object
+     */
+    static void writeStatus(StatusSnapshot s, StringBuilder sb) {
+        sb.append("{\"version\":").append(s.getVersion());
+        appendTime(sb.append(",\"timeStamp\":"), s.getTimeStamp());
+        appendTime(sb.append(",\"startOfService\":"), s.getStartOfService());
+        appendTime(sb.append(",\"lastContactWithAnyHost\":"), s.getLastContactWithAnyHost());
+        appendTime(sb.append(",\"lastFail\":"), s.getLastFail());
+        sb.append(",\"busyCheckingConnections\":").append(s.isBusyCheckingConnections());
+        sb.append(",\"internetUp\":").append(s.isBusyCheckingConnections() ? Boolean.toString(s.isCanReachISP()) : "null");
+        sb.append(",\"numberOfInterruptions\":").append(s.getNumberOfInterruptions());
+        sb.append(",\"failedChecks\":").append(s.getFailedChecks());
+        sb.append(",\"successfulChecks\":").append(s.getSuccessfulChecks());
+        sb.append(",\"currentISPUnavailabilityMillis\":").append(s.getCurrentISPUnavailability());
+        sb.append(",\"totalISPUnavailabilityMillis\":").append(s.getTotalISPUnavailability());
+        sb.append(",\"availabilityThisMonth\":").append(s.getAvailabilityThisMonth());
+        sb.append(",\"probeGaps\":").append(s.getProbeGaps());
+        appendTime(sb.append(",\"lastProbeGap\":"), s.getLastProbeGap());
+        sb.append(",\"outages\":").append(s.getOutages()).append('}');
+    }
+}
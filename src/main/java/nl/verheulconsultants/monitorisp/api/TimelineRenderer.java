@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.DAY;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.HOUR;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.MONTH;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.service.Utilities.NUMBER_OF_CAUSES;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.millisToTime;
+
+/**
+ * Renders one tile of the availability timeline as SVG: a month with a cell per day or a day with a cell per hour.
+ *
+ * A cell is green when no downtime was registered and gets the colour of the cause with the most downtime otherwise, more opaque as the downtime grows.
+ * All figures come from the rollup buckets; the outage history is not read.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public final class TimelineRenderer {
+
+    static final int CELL = 14;
+    static final int GAP = 2;
+    static final int LABEL_WIDTH = 80;
+    static final String UP_COLOUR = "#2ca02c";
+    static final String NO_DATA_COLOUR = "#e0e0e0";
+    private static final String[] CAUSE_COLOURS = {"#d62728", "#ff7f0e", "#9467bd", "#7f7f7f", "#bcbd22"};
+    private static final DateTimeFormatter MONTH_LABEL = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("EEE d MMM", Locale.ENGLISH);
+    private static final DateTimeFormatter DAY_TITLE = DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ENGLISH);
+    private static final DateTimeFormatter HOUR_TITLE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00", Locale.ENGLISH);
+
+    private TimelineRenderer() {
+    }
+
+    /**
+     * @param granularity DAY or HOUR
+     * @return the calendar period covered by a tile of the given cell granularity
+     */
+    static int tilePeriod(int granularity) {
+        return granularity == HOUR ? DAY : MONTH;
+    }
+
+    /**
+     * Render a tile.
+     *
+     * @param rollup the availability rollup
+     * @param granularity DAY for a month of days or HOUR for a day of hours
+     * @param tileStart the start of the month or day
+     * @param now the current time; later cells are left empty
+     * @return the SVG document
+     */
+    public static String render(AvailabilityRollup rollup, int granularity, long tileStart, long now) {
+        int maxCells = granularity == HOUR ? 24 : 31;
+        long tileEnd = rollup.getNextPeriodStart(tileStart, tilePeriod(granularity));
+        DateTimeFormatter cellTitle = granularity == HOUR ? HOUR_TITLE : DAY_TITLE;
+        StringBuilder sb = new StringBuilder(256 * maxCells);
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(LABEL_WIDTH + maxCells * (CELL + GAP))
+                .append("\" height=\"").append(CELL + 2 * GAP).append("\">");
+        sb.append("<text x=\"0\" y=\"").append(CELL).append("\" font-family=\"sans-serif\" font-size=\"11\">")
+                .append((granularity == HOUR ? DAY_LABEL : MONTH_LABEL).format(Instant.ofEpochMilli(tileStart).atZone(rollup.getZone())))
+                .append("</text>");
+
+        int i = 0;
+        for (long cellStart = tileStart; cellStart < tileEnd; i++) {
+            long cellEnd = rollup.getNextPeriodStart(cellStart, granularity);
+            String fill = NO_DATA_COLOUR;
+            double opacity = 1.0;
+            StringBuilder title = new StringBuilder(cellTitle.format(Instant.ofEpochMilli(cellStart).atZone(rollup.getZone())));
+            if (cellStart < now) {
+                long up = rollup.getUptime(cellStart, cellEnd);
+                StringBuilder details = new StringBuilder();
+                long down = 0L;
+                int worst = -1;
+                long worstDown = 0L;
+                for (int c = 0; c < NUMBER_OF_CAUSES; c++) {
+                    long d = rollup.getDowntime(cellStart, cellEnd, c);
+                    if (d > 0L) {
+                        details.append(", ").append(causeName(c)).append(' ').append(millisToTime(d));
+                        down += d;
+                        if (d > worstDown) {
+                            worst = c;
+                            worstDown = d;
+                        }
+                    }
+                }
+                if (up + down > 0L) {
+                    long ispDown = rollup.getDowntime(cellStart, cellEnd, ISP);
+                    title.append(String.format(Locale.ENGLISH, " availability %.3f %%", up + ispDown > 0L ? 100.0 * up / (up + ispDown) : 100.0))
+                            .append(details);
+                    if (worst < 0) {
+                        fill = UP_COLOUR;
+                    } else {
+                        fill = worst < CAUSE_COLOURS.length ? CAUSE_COLOURS[worst] : CAUSE_COLOURS[ISP];
+                        opacity = Math.min(1.0, 0.3 + 7.0 * down / (up + down));
+                    }
+                }
+            }
+            sb.append("<rect x=\"").append(LABEL_WIDTH + i * (CELL + GAP)).append("\" y=\"").append(GAP)
+                    .append("\" width=\"").append(CELL).append("\" height=\"").append(CELL)
+                    .append("\" fill=\"").append(fill);
+            if (opacity < 1.0) {
+                sb.append("\" fill-opacity=\"").append(String.format(Locale.ENGLISH, "%.2f", opacity));
+            }
+            sb.append("\"><title>").append(title).append("</title></rect>");
+            cellStart = cellEnd;
+        }
+        return sb.append("</svg>").toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.ProfileRegistry;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Serves the tiles of the availability timeline as SVG with an entity tag.
+ *
+ * Parameters: granularity=day (a month of days, the default) or hour (a day of hours) and time, a time in the tile as ISO-8601 instant or epoch millis,
+ * default now, and profile, a monitoring profile, default the default profile. Tiles of the past are served from a cache per profile and may be
+ * cached by the browser; a matching If-None-Match is answered with 304.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class TimelineResource extends AbstractResource {
+
+    private static final long serialVersionUID = 1L;
+    static final int TILE_CACHE_SIZE = 1_024;
+    static final Duration PAST_TILE_MAX_AGE = Duration.ofMinutes(10);
+    // the other profiles get smaller caches
+    static final int PROFILE_TILE_CACHE_SIZE = 256;
+    private static final TimelineTileCache CACHE = new TimelineTileCache(TILE_CACHE_SIZE);
+    private static final Map<String, TimelineTileCache> PROFILE_CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * The reference to mount and to link to.
+     */
+    public static final ResourceReference REFERENCE = new ResourceReference("timeline") {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public IResource getResource() {
+            return new TimelineResource();
+        }
+    };
+
+    /**
+     * @return the tile cache of the default profile, for monitoring
+     */
+    public static TimelineTileCache getCache() {
+        return CACHE;
+    }
+
+    /**
+     * @param profile the name of a profile
+     * @return the tile cache of the profile
+     */
+    static TimelineTileCache getCache(String profile) {
+        if (ProfileRegistry.DEFAULT_PROFILE.equals(profile)) {
+            return CACHE;
+        }
+        return PROFILE_CACHES.computeIfAbsent(profile, p -> new TimelineTileCache(PROFILE_TILE_CACHE_SIZE));
+    }
+
+    @Override
+    protected ResourceResponse newResourceResponse(Attributes attributes) {
+        ResourceResponse response = new ResourceResponse();
+        PageParameters parameters = attributes.getParameters();
+        final int granularity;
+        final long time;
+        final ISPController controller;
+        long now = System.currentTimeMillis();
+        try {
+            controller = ExportResource.parseProfile(parameters.get("profile").toOptionalString());
+            granularity = parseGranularity(parameters.get("granularity").toString("day"));
+            time = ExportResource.parseTime(parameters.get("time").toOptionalString(), now);
+        } catch (IllegalArgumentException ex) {
+            response.setError(400, ex.getMessage());
+            return response;
+        }
+
+        final TimelineTileCache.Tile tile = getCache(controller.getProfile()).get(controller.getRollup(), granularity, time, now);
+        response.setContentType("image/svg+xml");
+        response.setTextEncoding("UTF-8");
+        response.getHeaders().setHeader("ETag", tile.getEtag());
+        if (tile.isLive()) {
+            // revalidate on every request
+            response.setCacheDuration(Duration.ZERO);
+        } else {
+            response.setCacheDuration(PAST_TILE_MAX_AGE);
+            response.setCacheScope(WebResponse.CacheScope.PUBLIC);
+        }
+        String ifNoneMatch = ((WebRequest) attributes.getRequest()).getHeader("If-None-Match");
+        if (tile.getEtag().equals(ifNoneMatch)) {
+            response.setStatusCode(304);
+            return response;
+        }
+        response.setWriteCallback(new WriteCallback() {
+            @Override
+            public void writeData(Attributes attributes) throws IOException {
+                attributes.getResponse().write(tile.getSvg().getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return response;
+    }
+
+    /**
+     * @param name day or hour
+     * @return the rollup granularity of the cells
+     */
+    static int parseGranularity(String name) {
+        switch (name) {
+            case "day":
+                return AvailabilityRollup.DAY;
+            case "hour":
+                return AvailabilityRollup.HOUR;
+            default:
+                throw new IllegalArgumentException("Unknown granularity " + name);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
+
+/**
+ * A least recently used cache of rendered timeline tiles.
+ *
+ * A tile is keyed by its granularity and start and is kept with the rollup version of its time window, so it is rendered again only when a bucket in
+ * that window changed. Tiles that include the current time are always rendered and not cached.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class TimelineTileCache {
+
+    private final int capacity;
+    private final Map<String, Tile> tiles;
+    private AvailabilityRollup rollup;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity the maximum number of tiles kept
+     */
+    public TimelineTileCache(int capacity) {
+        this.capacity = capacity;
+        this.tiles = new LinkedHashMap<String, Tile>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tile> eldest) {
+                return size() > TimelineTileCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the tile containing a time, from the cache if it is still valid.
+     *
+     * @param rollup the availability rollup
+     * @param granularity DAY or HOUR
+     * @param time a time in the tile
+     * @param now the current time
+     * @return the tile
+     */
+    public Tile get(AvailabilityRollup rollup, int granularity, long time, long now) {
+        int period = TimelineRenderer.tilePeriod(granularity);
+        long tileStart = rollup.getPeriodStart(time, period);
+        long tileEnd = rollup.getNextPeriodStart(tileStart, period);
+        long version = rollup.getVersion(tileStart, tileEnd);
+        boolean live = tileEnd > now;
+        String key = granularity + ":" + tileStart;
+        if (!live) {
+            synchronized (this) {
+                if (this.rollup != rollup) {
+                    // the session data were reloaded
+                    tiles.clear();
+                    this.rollup = rollup;
+                }
+                Tile tile = tiles.get(key);
+                if (null != tile && tile.version == version) {
+                    hits++;
+                    return tile;
+                }
+            }
+        }
+        Tile tile = new Tile(tileStart, version, live, TimelineRenderer.render(rollup, granularity, tileStart, now));
+        synchronized (this) {
+            misses++;
+            if (!live && this.rollup == rollup) {
+                tiles.put(key, tile);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * @return the number of tiles served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of tiles rendered
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of tiles in the cache
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    /**
+     * A rendered tile.
+     */
+    public static final class Tile {
+
+        private final long start;
+        private final long version;
+        private final boolean live;
+        private final String svg;
+        private final String etag;
+
+        Tile(long start, long version, boolean live, String svg) {
+            this.start = start;
+            this.version = version;
+            this.live = live;
+            this.svg = svg;
+            // derived from the content, so it stays valid when the application is restarted
+            this.etag = "\"" + Integer.toHexString(svg.hashCode()) + "-" + Integer.toHexString(svg.length()) + "\"";
+        }
+
+        /**
+         * @return the start of the tile
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return true if the tile includes the current time and may change
+         */
+        public boolean isLive() {
+            return live;
+        }
+
+        /**
+         * @return the SVG document
+         */
+        public String getSvg() {
+            return svg;
+        }
+
+        /**
+         * @return the entity tag, quoted
+         */
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.service.Utilities.NUMBER_OF_CAUSES;
+
+/**
+ * Incremental rollup of uptime, downtime by cause and outage counts in calendar buckets per hour, day and month.
+ *
+ * Every interval is split at the bucket boundaries when it is added, so that availability queries over any calendar range can be answered by summing a few buckets
+ * instead of scanning the outage history. The ongoing outage is kept apart and is added to the query results up to the current time.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class AvailabilityRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Bucket granularity hour.
+     */
+    public static final int HOUR = 0;
+
+    /**
+     * Bucket granularity day.
+     */
+    public static final int DAY = 1;
+
+    /**
+     * Bucket granularity month.
+     */
+    public static final int MONTH = 2;
+
+    /**
+     * Hourly buckets are kept for this period; older ranges are answered at day resolution.
+     */
+    public static final long HOURLY_RETENTION = 92L * 24 * 60 * 60 * 1_000;
+
+    private static final int NUMBER_OF_GRANULARITIES = 3;
+    private final String zoneId;
+    private final long origin;
+    private transient TreeMap<Long, Bucket>[] buckets;
+    private transient ZoneId zone;
+    private long ongoingStart = 0L;
+    private int ongoingCause = ISP;
+    private transient long modCount;
+    private transient long ongoingVersion;
+    private transient Clock clock;
+
+    /**
+     * A rollup in the default time zone of this system.
+     *
+     * @param origin the time before which intervals are ignored, usually the start of service
+     */
+    public AvailabilityRollup(long origin) {
+        this(origin, Clock.SYSTEM);
+    }
+
+    /**
+     * A rollup in the default time zone of this system with the ongoing outage up to the time of a clock.
+     *
+     * @param origin the time before which intervals are ignored, usually the start of service
+     * @param clock the clock of the current time
+     */
+    AvailabilityRollup(long origin, Clock clock) {
+        this.zoneId = ZoneId.systemDefault().getId();
+        this.origin = origin;
+        this.clock = clock;
+        initBuckets();
+    }
+
+    /**
+     * @param clock the clock of the current time, for a rollup that is read from file
+     */
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void initBuckets() {
+        buckets = new TreeMap[NUMBER_OF_GRANULARITIES];
+        for (int i = 0; i < NUMBER_OF_GRANULARITIES; i++) {
+            buckets[i] = new TreeMap<>();
+        }
+    }
+
+    /**
+     * Rebuild a rollup from an outage history that was recorded without one. The time between the outages is counted as uptime.
+     *
+     * @param outages the outages in chronological order
+     * @param origin the start of service
+     * @param lastContact the last time any host could be reached
+     * @param clock the clock of the current time
+     * @return the new rollup
+     */
+    static AvailabilityRollup rebuild(OutageStore outages, long origin, long lastContact, Clock clock) {
+        AvailabilityRollup rollup = new AvailabilityRollup(origin, clock);
+        long upSince = origin;
+        OutageStore.Cursor cursor = outages.cursor();
+        while (cursor.next()) {
+            rollup.addUptime(upSince, cursor.getStart());
+            rollup.addOutage(cursor.getStart(), cursor.getEnd(), cursor.getCause());
+            upSince = Math.max(upSince, cursor.getEnd());
+        }
+        rollup.addUptime(upSince, lastContact);
+        return rollup;
+    }
+
+    /**
+     * Register a period in which at least one host could be reached.
+     *
+     * @param start the start of the period
+     * @param end the end of the period
+     */
+    public synchronized void addUptime(long start, long end) {
+        for (int g = 0; g < NUMBER_OF_GRANULARITIES; g++) {
+            long from = Math.max(start, origin);
+            while (from < end) {
+                long bucketStart = truncate(from, g);
+                long to = Math.min(end, next(bucketStart, g));
+                bucket(g, bucketStart).uptime += to - from;
+                from = to;
+            }
+        }
+    }
+
+    /**
+     * Register a closed outage. The downtime is split over the buckets it spans, the outage and its duration are counted in the buckets where it started.
+     *
+     * @param start the start of the outage
+     * @param end the end of the outage
+     * @param cause the cause of the outage
+     */
+    public synchronized void addOutage(long start, long end, int cause) {
+        for (int g = 0; g < NUMBER_OF_GRANULARITIES; g++) {
+            long from = Math.max(start, origin);
+            if (from < end) {
+                bucket(g, truncate(from, g)).countOutage(cause, end - start);
+            }
+            while (from < end) {
+                long bucketStart = truncate(from, g);
+                long to = Math.min(end, next(bucketStart, g));
+                bucket(g, bucketStart).addDowntime(cause, to - from);
+                from = to;
+            }
+        }
+    }
+
+    /**
+     * Register the start of an outage that is not closed yet.
+     *
+     * @param start the start of the outage
+     * @param cause the cause as known at this moment
+     */
+    public synchronized void openOutage(long start, int cause) {
+        ongoingStart = start;
+        ongoingCause = cause;
+        ongoingVersion = ++modCount;
+    }
+
+    /**
+     * Close the ongoing outage and add it to the buckets.
+     *
+     * @param end the end of the outage
+     * @param cause the final cause of the outage
+     */
+    public synchronized void closeOutage(long end, int cause) {
+        if (ongoingStart > 0L) {
+            addOutage(ongoingStart, end, cause);
+            ongoingStart = 0L;
+        }
+    }
+
+    /**
+     * Close an outage that is still open when the rollup is read from file, with the cause it has so far. The checks that would have closed it
+     * have stopped.
+     *
+     * @param end the last time the outage is known to have lasted
+     */
+    synchronized void closeStaleOutage(long end) {
+        closeOutage(Math.max(ongoingStart, end), ongoingCause);
+    }
+
+    /**
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the registered uptime in milliseconds
+     */
+    public synchronized long getUptime(long from, long to) {
+        long sum = 0L;
+        for (Bucket b : cover(from, to)) {
+            sum += b.uptime;
+        }
+        return sum;
+    }
+
+    /**
+     * @param from the start of the range
+     * @param to the end of the range
+     * @param cause the outage cause
+     * @return the downtime with the given cause in milliseconds, including the ongoing outage up to now
+     */
+    public synchronized long getDowntime(long from, long to, int cause) {
+        long sum = 0L;
+        for (Bucket b : cover(from, to)) {
+            sum += b.getDowntime(cause);
+        }
+        if (ongoingStart > 0L && ongoingCause == cause) {
+            long start = Math.max(ongoingStart, truncate(from, HOUR));
+            long end = Math.min(clock.currentTimeMillis(), roundUp(to));
+            sum += Math.max(0L, end - start);
+        }
+        return sum;
+    }
+
+    /**
+     * @param from the start of the range
+     * @param to the end of the range
+     * @param cause the outage cause
+     * @return the number of outages with the given cause started in the range, including the ongoing outage
+     */
+    public synchronized int getOutageCount(long from, long to, int cause) {
+        int count = 0;
+        for (Bucket b : cover(from, to)) {
+            count += b.getCount(cause);
+        }
+        if (ongoingStart >= truncate(from, HOUR) && ongoingStart < roundUp(to) && ongoingCause == cause) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Merge the duration sketches of the closed outages that started in a range.
+     *
+     * @param from the start of the range
+     * @param to the end of the range
+     * @param cause the outage cause
+     * @return a new sketch to query the duration quantiles
+     */
+    public synchronized DurationSketch getDurationSketch(long from, long to, int cause) {
+        DurationSketch ret = new DurationSketch();
+        for (Bucket b : cover(from, to)) {
+            DurationSketch sketch = b.getSketch(cause);
+            if (null != sketch) {
+                ret.merge(sketch);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The availability of the ISP as used in service level agreements. Only outages caused by the ISP count as unavailable; periods in which the service, the controller
+     * or the internal network was down are left out.
+     *
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the percentage of time the ISP was available or 100 if nothing was registered in the range
+     */
+    public synchronized double getAvailability(long from, long to) {
+        long up = getUptime(from, to);
+        long down = getDowntime(from, to, ISP);
+        if (up + down == 0L) {
+            return 100.0;
+        }
+        return 100.0 * up / (up + down);
+    }
+
+    /**
+     * Get a number that changes whenever a bucket in a range is changed or an outage overlapping the range is opened. Use it to decide if a result derived from
+     * the range is still valid; it is not kept when the rollup is saved.
+     *
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the version of the range
+     */
+    public synchronized long getVersion(long from, long to) {
+        long version = 0L;
+        for (TreeMap<Long, Bucket> map : buckets) {
+            for (Bucket b : map.subMap(from, to).values()) {
+                version = Math.max(version, b.version);
+            }
+        }
+        if (ongoingStart > 0L && ongoingStart < to) {
+            version = Math.max(version, ongoingVersion);
+        }
+        return version;
+    }
+
+    /**
+     * @return the time zone of the calendar periods
+     */
+    public ZoneId getZone() {
+        return zone();
+    }
+
+    /**
+     * @param t a time
+     * @param granularity HOUR, DAY or MONTH
+     * @return the start of the calendar period containing t in the zone of this rollup
+     */
+    public long getPeriodStart(long t, int granularity) {
+        return truncate(t, granularity);
+    }
+
+    /**
+     * @param periodStart the start of a calendar period
+     * @param granularity HOUR, DAY or MONTH
+     * @return the start of the next period
+     */
+    public long getNextPeriodStart(long periodStart, int granularity) {
+        return next(periodStart, granularity);
+    }
+
+    /**
+     * @return the start of the current calendar month in the zone of this rollup
+     */
+    public long getStartOfMonth() {
+        return truncate(clock.currentTimeMillis(), MONTH);
+    }
+
+    /**
+     * Collect the least number of buckets that cover a range. The range is resolved to whole hours; whole months and days are answered from the coarser buckets.
+     */
+    private Iterable<Bucket> cover(long from, long to) {
+        List<Bucket> ret = new ArrayList<>();
+        long t = truncate(Math.max(from, origin), HOUR);
+        long end = roundUp(to);
+        long hourHorizon = buckets[HOUR].isEmpty() ? Long.MIN_VALUE : buckets[HOUR].lastKey() - HOURLY_RETENTION;
+        while (t < end) {
+            int g = MONTH;
+            while (g > HOUR && (truncate(t, g) != t || next(t, g) > end)) {
+                g--;
+            }
+            if (g == HOUR && t < hourHorizon) {
+                // the hourly buckets are pruned, take the whole day
+                g = DAY;
+                t = truncate(t, DAY);
+            }
+            Bucket b = buckets[g].get(t);
+            if (null != b) {
+                ret.add(b);
+            }
+            t = next(t, g);
+        }
+        return ret;
+    }
+
+    private long roundUp(long t) {
+        long hour = truncate(t, HOUR);
+        return hour == t ? t : next(hour, HOUR);
+    }
+
+    /**
+     * Get or create a bucket to be changed. The bucket gets a new version.
+     */
+    private Bucket bucket(int granularity, long bucketStart) {
+        Bucket b = buckets[granularity].get(bucketStart);
+        if (null == b) {
+            b = new Bucket();
+            buckets[granularity].put(bucketStart, b);
+            if (granularity == HOUR) {
+                buckets[HOUR].headMap(bucketStart - HOURLY_RETENTION).clear();
+            }
+        }
+        b.version = ++modCount;
+        return b;
+    }
+
+    /**
+     * @param granularity HOUR, DAY or MONTH
+     * @return an unmodifiable view of the buckets of the given granularity by their start time
+     */
+    public synchronized Map<Long, Bucket> getBuckets(int granularity) {
+        return Collections.unmodifiableMap(new TreeMap<>(buckets[granularity]));
+    }
+
+    private ZoneId zone() {
+        if (null == zone) {
+            zone = ZoneId.of(zoneId);
+        }
+        return zone;
+    }
+
+    long truncate(long t, int granularity) {
+        ZonedDateTime z = Instant.ofEpochMilli(t).atZone(zone());
+        switch (granularity) {
+            case HOUR:
+                z = z.truncatedTo(ChronoUnit.HOURS);
+                break;
+            case DAY:
+                z = z.truncatedTo(ChronoUnit.DAYS);
+                break;
+            default:
+                z = z.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        }
+        return z.toInstant().toEpochMilli();
+    }
+
+    long next(long bucketStart, int granularity) {
+        ZonedDateTime z = Instant.ofEpochMilli(bucketStart).atZone(zone());
+        switch (granularity) {
+            case HOUR:
+                return bucketStart + ChronoUnit.HOURS.getDuration().toMillis();
+            case DAY:
+                return z.plusDays(1).truncatedTo(ChronoUnit.DAYS).toInstant().toEpochMilli();
+            default:
+                return z.plusMonths(1).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * Write the buckets as primitives, leaving out the causes without outages.
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (TreeMap<Long, Bucket> map : buckets) {
+            out.writeInt(map.size());
+            for (Map.Entry<Long, Bucket> e : map.entrySet()) {
+                Bucket b = e.getValue();
+                out.writeLong(e.getKey());
+                out.writeLong(b.uptime);
+                int mask = 0;
+                for (int c = 0; c < b.downtime.length; c++) {
+                    if (b.getDowntime(c) > 0L || b.getCount(c) > 0) {
+                        mask |= 1 << c;
+                    }
+                }
+                out.writeByte(mask);
+                for (int c = 0; c < b.downtime.length; c++) {
+                    if ((mask & (1 << c)) != 0) {
+                        out.writeLong(b.getDowntime(c));
+                        out.writeInt(b.getCount(c));
+                        out.writeObject(b.getSketch(c));
+                    }
+                }
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        clock = Clock.SYSTEM;
+        initBuckets();
+        for (TreeMap<Long, Bucket> map : buckets) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                long key = in.readLong();
+                Bucket b = new Bucket();
+                b.uptime = in.readLong();
+                int mask = in.readUnsignedByte();
+                for (int c = 0; c < Byte.SIZE; c++) {
+                    if ((mask & (1 << c)) != 0) {
+                        b.addDowntime(c, in.readLong());
+                        b.addCount(c, in.readInt());
+                        b.setSketch(c, (DurationSketch) in.readObject());
+                    }
+                }
+                map.put(key, b);
+            }
+        }
+    }
+
+    /**
+     * The totals of one calendar period.
+     */
+    public static class Bucket implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        long uptime;
+        long[] downtime = new long[NUMBER_OF_CAUSES];
+        int[] count = new int[NUMBER_OF_CAUSES];
+        DurationSketch[] sketches = new DurationSketch[NUMBER_OF_CAUSES];
+        transient long version;
+
+        void addDowntime(int cause, long millis) {
+            if (cause >= downtime.length) {
+                downtime = Arrays.copyOf(downtime, cause + 1);
+            }
+            downtime[cause] += millis;
+        }
+
+        void countOutage(int cause, long duration) {
+            addCount(cause, 1);
+            if (null == getSketch(cause)) {
+                setSketch(cause, new DurationSketch());
+            }
+            sketches[cause].add(duration);
+        }
+
+        void setSketch(int cause, DurationSketch sketch) {
+            if (cause >= sketches.length) {
+                sketches = Arrays.copyOf(sketches, cause + 1);
+            }
+            sketches[cause] = sketch;
+        }
+
+        /**
+         * @param cause the outage cause
+         * @return the durations of the outages that started in this period or null if there are none
+         */
+        public DurationSketch getSketch(int cause) {
+            return cause < sketches.length ? sketches[cause] : null;
+        }
+
+        void addCount(int cause, int n) {
+            if (cause >= count.length) {
+                count = Arrays.copyOf(count, cause + 1);
+            }
+            count[cause] += n;
+        }
+
+        /**
+         * @return the uptime in milliseconds
+         */
+        public long getUptime() {
+            return uptime;
+        }
+
+        /**
+         * @param cause the outage cause
+         * @return the downtime in milliseconds
+         */
+        public long getDowntime(int cause) {
+            return cause < downtime.length ? downtime[cause] : 0L;
+        }
+
+        /**
+         * @param cause the outage cause
+         * @return the number of outages that started in this period
+         */
+        public int getCount(int cause) {
+            return cause < count.length ? count[cause] : 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getConfigFileName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the configuration files of the profiles and applies a file to its controller when it changes.
+ *
+ * A file is a properties file with the settings of RuntimeConfig, for instance checkInterval=10000 or hosts=uva.nl,vu.nl; settings that are not in
+ * the file keep their value. A file that exists at the start is applied then. A file with an invalid setting is not applied at all. Changes made
+ * in the UI or with the API are not written to the file.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ConfigFileWatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigFileWatcher.class);
+    static final long WATCH_INTERVAL = 5_000L;
+    private final ProfileRegistry profiles;
+    // the modification time and size of the file last applied per profile
+    private final Map<String, String> applied = new HashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param profiles the profiles to watch the files of
+     */
+    public ConfigFileWatcher(ProfileRegistry profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * Check the files now and then every few seconds.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "monitorisp-config");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::checkAll, 0L, WATCH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop watching.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void checkAll() {
+        for (ISPController controller : profiles.getAll()) {
+            try {
+                check(controller, Paths.get(getConfigFileName(controller.getProfile())));
+            } catch (RuntimeException ex) {
+                LOGGER.error("The configuration file of profile {} cannot be checked", controller.getProfile(), ex);
+            }
+        }
+    }
+
+    /**
+     * Apply the file to the controller if it changed since it was last applied.
+     *
+     * @param controller the controller
+     * @param file the configuration file of its profile
+     * @return true if the file was applied
+     */
+    boolean check(ISPController controller, Path file) {
+        String stamp;
+        try {
+            stamp = Files.getLastModifiedTime(file).toMillis() + "/" + Files.size(file);
+        } catch (IOException ex) {
+            // there is no file
+            return false;
+        }
+        synchronized (applied) {
+            if (stamp.equals(applied.put(controller.getProfile(), stamp))) {
+                return false;
+            }
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException ex) {
+            LOGGER.error("The configuration file {} cannot be read: {}", file, ex.toString());
+            return false;
+        }
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            changes.put(name, properties.getProperty(name));
+        }
+        try {
+            controller.updateConfig(changes, -1L);
+            LOGGER.info("The configuration file {} is applied.", file);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            LOGGER.error("The configuration file {} is not applied: {}", file, ex.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+/**
+ * Is told by the controller when its state may have changed: after every connection check and when an outage is registered. The finer grained events
+ * are optional.
+ *
+ * The listener is called on the controller thread and must return quickly.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public interface ControllerListener {
+
+    /**
+     * The status or the outage history may have changed.
+     *
+     * @param controller the controller that changed
+     */
+    void stateChanged(ISPController controller);
+
+    /**
+     * A probe cycle has ended. Called before stateChanged.
+     *
+     * @param controller the controller
+     * @param time the end of the cycle
+     * @param success true if a host could be reached
+     * @param micros the duration of the cycle in microseconds
+     */
+    default void probeCycleEnded(ISPController controller, long time, boolean success, long micros) {
+    }
+
+    /**
+     * An outage is confirmed.
+     *
+     * @param controller the controller
+     * @param start the start of the outage
+     * @param cause the outage cause as known at the start
+     */
+    default void outageStarted(ISPController controller, long start, int cause) {
+    }
+
+    /**
+     * An outage is over.
+     *
+     * @param controller the controller
+     * @param start the start of the outage
+     * @param end the end of the outage
+     * @param cause the outage cause
+     */
+    default void outageEnded(ISPController controller, long start, long end, int cause) {
+    }
+}
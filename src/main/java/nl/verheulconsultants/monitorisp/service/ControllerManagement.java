@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.NUMBER_OF_CAUSES;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes the statistics and operations of the controller of a profile over JMX, as nl.verheulconsultants.monitorisp:type=Controller,profile=name.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ControllerManagement implements ControllerManagementMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ControllerManagement.class);
+    static final String DOMAIN = "nl.verheulconsultants.monitorisp";
+    private final ISPController controller;
+
+    /**
+     * @param controller the controller to manage
+     */
+    public ControllerManagement(ISPController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * @param profile the name of a profile
+     * @return the name of the MBean of the profile
+     * @throws JMException if the profile name cannot be part of an object name
+     */
+    static ObjectName getObjectName(String profile) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Controller,profile=" + profile);
+    }
+
+    /**
+     * Register the MBeans of the controllers with the platform MBean server. A MBean that cannot be registered is logged.
+     *
+     * @param controllers the controllers of the profiles
+     */
+    public static void registerAll(Iterable<ISPController> controllers) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ISPController c : controllers) {
+            try {
+                ObjectName name = getObjectName(c.getProfile());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new ControllerManagement(c), name);
+                }
+            } catch (JMException ex) {
+                LOGGER.error("The MBean of profile {} cannot be registered", c.getProfile(), ex);
+            }
+        }
+    }
+
+    /**
+     * Unregister the MBeans of the controllers.
+     *
+     * @param controllers the controllers of the profiles
+     */
+    public static void unregisterAll(Iterable<ISPController> controllers) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ISPController c : controllers) {
+            try {
+                ObjectName name = getObjectName(c.getProfile());
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException ex) {
+                LOGGER.error("The MBean of profile {} cannot be unregistered", c.getProfile(), ex);
+            }
+        }
+    }
+
+    @Override
+    public String getProfile() {
+        return controller.getProfile();
+    }
+
+    @Override
+    public long getSnapshotVersion() {
+        return controller.getStatusSnapshot().getVersion();
+    }
+
+    @Override
+    public boolean isChecking() {
+        return controller.getStatusSnapshot().isBusyCheckingConnections();
+    }
+
+    @Override
+    public boolean isInternetUp() {
+        return controller.getStatusSnapshot().isCanReachISP();
+    }
+
+    @Override
+    public long getSuccessfulChecks() {
+        return controller.getStatusSnapshot().getSuccessfulChecks();
+    }
+
+    @Override
+    public long getFailedChecks() {
+        return controller.getStatusSnapshot().getFailedChecks();
+    }
+
+    @Override
+    public long getNumberOfInterruptions() {
+        return controller.getStatusSnapshot().getNumberOfInterruptions();
+    }
+
+    @Override
+    public Map<String, Long> getUnavailabilityMillis() {
+        StatusSnapshot s = controller.getStatusSnapshot();
+        Map<String, Long> unavailability = new LinkedHashMap<>();
+        for (int cause = 0; cause < NUMBER_OF_CAUSES; cause++) {
+            unavailability.put(causeName(cause), s.getUnavailability(cause));
+        }
+        return unavailability;
+    }
+
+    @Override
+    public long getCurrentISPUnavailabilityMillis() {
+        return controller.getStatusSnapshot().getCurrentISPUnavailability();
+    }
+
+    @Override
+    public double getAvailabilityThisMonth() {
+        return controller.getStatusSnapshot().getAvailabilityThisMonth();
+    }
+
+    @Override
+    public long getCycles() {
+        return controller.getStatusSnapshot().getCycles();
+    }
+
+    @Override
+    public long getMeanCycleMicros() {
+        StatusSnapshot s = controller.getStatusSnapshot();
+        return s.getCycles() > 0L ? s.getCycleMicros() / s.getCycles() : 0L;
+    }
+
+    @Override
+    public long getProbeGaps() {
+        return controller.getStatusSnapshot().getProbeGaps();
+    }
+
+    @Override
+    public int getOutages() {
+        return controller.getStatusSnapshot().getOutages();
+    }
+
+    @Override
+    public long getProbeSamples() {
+        return controller.getStatusSnapshot().getProbeSamples();
+    }
+
+    @Override
+    public int getCheckInterval() {
+        return controller.getConfig().getCheckInterval();
+    }
+
+    @Override
+    public void pause() {
+        controller.stopTemporarily();
+    }
+
+    @Override
+    public void resume() {
+        controller.restart(controller.getConfig().getHosts());
+    }
+
+    @Override
+    public boolean probeNow() {
+        return controller.probeNow();
+    }
+
+    @Override
+    public void flush() {
+        controller.flush();
+    }
+
+    @Override
+    public long changeCheckInterval(int millis) {
+        return controller.updateConfig(Map.of(RuntimeConfig.CHECK_INTERVAL, Integer.toString(millis)), -1L).getVersion();
+    }
+}
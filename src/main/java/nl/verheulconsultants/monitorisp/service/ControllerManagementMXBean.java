@@ -0,0 +1,144 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.util.Map;
+
+/**
+ * The management interface of the controller of a profile. The attributes are read from the latest status snapshot, so polling them is cheap.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public interface ControllerManagementMXBean {
+
+    /**
+     * @return the name of the monitoring profile
+     */
+    String getProfile();
+
+    /**
+     * @return the sequence number of the status snapshot the attributes are read from
+     */
+    long getSnapshotVersion();
+
+    /**
+     * @return true if the controller is checking connections, false if it is paused or stopped
+     */
+    boolean isChecking();
+
+    /**
+     * @return true if the internet can be reached
+     */
+    boolean isInternetUp();
+
+    /**
+     * @return the number of successful connection checks with a host
+     */
+    long getSuccessfulChecks();
+
+    /**
+     * @return the number of failed connection checks with a host
+     */
+    long getFailedChecks();
+
+    /**
+     * @return the number of confirmed interruptions
+     */
+    long getNumberOfInterruptions();
+
+    /**
+     * @return the time the internet was unavailable per outage cause, in milliseconds
+     */
+    Map<String, Long> getUnavailabilityMillis();
+
+    /**
+     * @return the duration of the ongoing ISP outage in milliseconds, or 0
+     */
+    long getCurrentISPUnavailabilityMillis();
+
+    /**
+     * @return the ISP availability this month in percent
+     */
+    double getAvailabilityThisMonth();
+
+    /**
+     * @return the number of probe cycles since the start of the application
+     */
+    long getCycles();
+
+    /**
+     * @return the mean duration of a probe cycle in microseconds
+     */
+    long getMeanCycleMicros();
+
+    /**
+     * @return the number of probe gaps: the probe cycles stalled and the connection was not checked for a while
+     */
+    long getProbeGaps();
+
+    /**
+     * @return the number of outages in the history
+     */
+    int getOutages();
+
+    /**
+     * @return the number of probes kept in the probe log
+     */
+    long getProbeSamples();
+
+    /**
+     * @return the check interval in milliseconds
+     */
+    int getCheckInterval();
+
+    /**
+     * Stop checking until resume is called.
+     */
+    void pause();
+
+    /**
+     * Continue checking after a pause. The pause is registered as an outage with cause CONTROLLERDOWN.
+     */
+    void resume();
+
+    /**
+     * Start the next probe cycle now.
+     *
+     * @return true if a probe cycle is started
+     */
+    boolean probeNow();
+
+    /**
+     * Save the session data now.
+     */
+    void flush();
+
+    /**
+     * Change the check interval. The change is applied from the next probe cycle.
+     *
+     * @param millis the new interval in milliseconds
+     * @return the version of the new configuration
+     */
+    long changeCheckInterval(int millis);
+}
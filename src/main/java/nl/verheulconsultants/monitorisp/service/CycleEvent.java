@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event of a probe cycle: the hosts tried until one could be reached and the state of the link after the cycle.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+@Name("nl.verheulconsultants.monitorisp.Cycle")
+@Label("Probe Cycle")
+@Category("MonitorISP")
+@Description("A probe cycle of the controller")
+@StackTrace(false)
+final class CycleEvent extends jdk.jfr.Event {
+
+    @Label("Profile")
+    String profile;
+
+    @Label("Hosts Tried")
+    int hostsTried;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Link State")
+    @Description("The state of the link after the cycle: UP, SUSPECT_DOWN, DOWN or SUSPECT_UP")
+    String linkState;
+}
@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A mergeable streaming sketch of outage durations that answers quantile queries with a relative error of at most one percent.
+ *
+ * Durations are counted in logarithmic buckets; bucket i holds the durations in (GAMMA^(i-1), GAMMA^i] milliseconds. Two sketches are merged by adding their counts,
+ * so the quantiles of any period can be computed from the sketches of its sub periods without keeping the durations themselves.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class DurationSketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private transient int offset;
+    private transient int[] counts;
+    private transient long zeroCount;
+    private transient long count;
+    private transient long min;
+    private transient long max;
+
+    /**
+     * An empty sketch.
+     */
+    public DurationSketch() {
+        counts = new int[0];
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    /**
+     * Add a duration.
+     *
+     * @param millis the duration in milliseconds
+     */
+    public synchronized void add(long millis) {
+        if (millis <= 0L) {
+            zeroCount++;
+        } else {
+            increment(index(millis), 1);
+        }
+        count++;
+        min = Math.min(min, millis);
+        max = Math.max(max, millis);
+    }
+
+    /**
+     * Add all durations of another sketch to this one.
+     *
+     * @param other the sketch to merge
+     */
+    public void merge(DurationSketch other) {
+        int otherOffset;
+        int[] otherCounts;
+        long otherZeroCount;
+        long otherCount;
+        long otherMin;
+        long otherMax;
+        synchronized (other) {
+            if (other.count == 0L) {
+                return;
+            }
+            otherOffset = other.offset;
+            otherCounts = other.counts.clone();
+            otherZeroCount = other.zeroCount;
+            otherCount = other.count;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            zeroCount += otherZeroCount;
+            count += otherCount;
+            min = Math.min(min, otherMin);
+            max = Math.max(max, otherMax);
+            for (int i = 0; i < otherCounts.length; i++) {
+                if (otherCounts[i] != 0) {
+                    increment(otherOffset + i, otherCounts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of durations added
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimate a quantile.
+     *
+     * @param q the quantile between 0 and 1, for instance 0.5 for the median
+     * @return the estimated duration in milliseconds or 0 if the sketch is empty
+     */
+    public synchronized long getQuantile(double q) {
+        if (count == 0L) {
+            return 0L;
+        }
+        if (q <= 0.0) {
+            return min;
+        }
+        if (q >= 1.0) {
+            return max;
+        }
+        long rank = (long) (q * (count - 1));
+        if (rank < zeroCount) {
+            return 0L;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                long estimate = Math.round(2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1));
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    private static int index(long millis) {
+        return (int) Math.ceil(Math.log(millis) / LOG_GAMMA);
+    }
+
+    private void increment(int index, int n) {
+        if (counts.length == 0) {
+            offset = index;
+            counts = new int[1];
+        } else if (index < offset) {
+            int[] grown = new int[counts.length + offset - index];
+            System.arraycopy(counts, 0, grown, offset - index, counts.length);
+            counts = grown;
+            offset = index;
+        } else if (index >= offset + counts.length) {
+            counts = Arrays.copyOf(counts, index - offset + 1);
+        }
+        counts[index - offset] += n;
+    }
+
+    /**
+     * Write only the buckets that are not empty.
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeLong(count);
+        out.writeLong(zeroCount);
+        out.writeLong(min);
+        out.writeLong(max);
+        int used = 0;
+        for (int c : counts) {
+            if (c != 0) {
+                used++;
+            }
+        }
+        out.writeInt(used);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                out.writeShort(offset + i);
+                out.writeInt(counts[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        counts = new int[0];
+        count = in.readLong();
+        zeroCount = in.readLong();
+        min = in.readLong();
+        max = in.readLong();
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int index = in.readShort();
+            increment(index, in.readInt());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DurationSketch [count = " + getCount() + ", median = " + getQuantile(0.5) + ", p99 = " + getQuantile(0.99) + "]";
+    }
+}
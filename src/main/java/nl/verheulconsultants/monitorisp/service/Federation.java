@@ -0,0 +1,389 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.service.Utilities.NUMBER_OF_CAUSES;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exchanges the outage history with other MonitorISP instances, the peers, to tell an outage of the local line from an outage of the whole ISP.
+ *
+ * Every node serves its closed outages with their sequence number, the 1-based index in its history. A node polls each peer for the outages
+ * after the last sequence number it has and appends them to a copy of the peer history, so catching up after a partition transfers only what
+ * was missed. The epoch of a node is the start of its service; when it changes the history was replaced and the copy is fetched again.
+ *
+ * A local outage of the line (cause ISP or FLAPPING) that overlaps an outage of the line at a peer is shared; any other outage is site-local.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class Federation {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Federation.class);
+    /**
+     * The first word of the exchange format, followed by its version.
+     */
+    static final String FORMAT = "monitorisp-outages";
+    static final int FORMAT_VERSION = 1;
+    /**
+     * The maximum number of outages in one response.
+     */
+    public static final int MAX_BATCH = 1_000;
+    static final long POLL_INTERVAL = 30_000L;
+    static final int HTTP_TIMEOUT = 5_000;
+    // readBatch found a new history at the peer
+    static final int REFETCH = -1;
+    public static final String SHARED = "shared";
+    public static final String SITE_LOCAL = "site-local";
+    private final String node;
+    private final ISPController controller;
+    private final List<Peer> peers;
+    private ScheduledExecutorService executor;
+    private CloseableHttpClient client;
+
+    /**
+     * @param node the name of this node
+     * @param controller the controller whose history is exchanged
+     * @param peerUrls the base URLs of the peers, for instance http://site-b:8080
+     */
+    public Federation(String node, ISPController controller, List<String> peerUrls) {
+        this.node = node;
+        this.controller = controller;
+        List<Peer> list = new ArrayList<>();
+        for (String url : peerUrls) {
+            list.add(new Peer(url.endsWith("/") ? url.substring(0, url.length() - 1) : url));
+        }
+        peers = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return the name of this node
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @return the controller whose history is exchanged
+     */
+    public ISPController getController() {
+        return controller;
+    }
+
+    /**
+     * @return the peers
+     */
+    public List<Peer> getPeers() {
+        return peers;
+    }
+
+    /**
+     * Start polling the peers. Does nothing without peers.
+     */
+    public synchronized void start() {
+        if (peers.isEmpty() || executor != null) {
+            return;
+        }
+        RequestConfig config = RequestConfig.custom().setConnectTimeout(HTTP_TIMEOUT).setSocketTimeout(HTTP_TIMEOUT)
+                .setConnectionRequestTimeout(HTTP_TIMEOUT).build();
+        client = HttpClients.custom().setDefaultRequestConfig(config).build();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "monitorisp-federation");
+            t.setDaemon(true);
+            return t;
+        });
+        // give the peers that start together with this node time to come up
+        executor.scheduleWithFixedDelay(this::pollAll, HTTP_TIMEOUT, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        LOGGER.info("Node {} federates with peers {}", node, peers);
+    }
+
+    /**
+     * Stop polling the peers.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        try {
+            client.close();
+        } catch (IOException ex) {
+            LOGGER.debug("Closing the federation client failed: {}", ex.toString());
+        }
+        client = null;
+    }
+
+    private void pollAll() {
+        for (Peer peer : peers) {
+            try {
+                poll(peer, client);
+            } catch (IOException | RuntimeException ex) {
+                peer.lastError = ex.toString();
+                LOGGER.info("Peer {} cannot be polled: {}", peer.url, ex.toString());
+            }
+        }
+    }
+
+    /**
+     * Fetch the outages of a peer after the last one received, in batches until it is up to date.
+     *
+     * @param peer the peer
+     * @param client the HTTP client
+     * @throws IOException if the peer cannot be reached or the response is invalid
+     */
+    static void poll(Peer peer, CloseableHttpClient client) throws IOException {
+        int received;
+        do {
+            HttpGet get = new HttpGet(peer.url + "/api/federation/outages?since=" + peer.getSequence());
+            try (CloseableHttpResponse response = client.execute(get)) {
+                int status = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (status != 200 || entity == null) {
+                    throw new IOException("HTTP status " + status);
+                }
+                try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.US_ASCII)) {
+                    received = readBatch(peer, reader);
+                }
+            }
+        } while (received == MAX_BATCH || received == REFETCH);
+        peer.lastPoll = System.currentTimeMillis();
+        peer.lastError = null;
+    }
+
+    /**
+     * Write the outages after a sequence number in the exchange format: a header line with the format, its version, the node, the epoch and
+     * the number of outages of the node, then a line per outage with its sequence number, start, end, cause and number of interruptions.
+     *
+     * @param node the name of this node
+     * @param epoch the start of service of this node
+     * @param store the outage history
+     * @param since the last sequence number the peer has, 0 for all
+     * @param sb the builder
+     * @return the number of outages written
+     */
+    public static int writeBatch(String node, long epoch, OutageStore store, int since, StringBuilder sb) {
+        int n = store.size();
+        sb.append(FORMAT).append(' ').append(FORMAT_VERSION).append(' ').append(node).append(' ').append(epoch).append(' ').append(n).append('\n');
+        int count = 0;
+        for (int i = Math.max(0, since); i < n && count < MAX_BATCH; i++, count++) {
+            sb.append(i + 1).append(' ').append(store.getStart(i)).append(' ').append(store.getEnd(i)).append(' ')
+                    .append(store.getCause(i)).append(' ').append(store.getInterruptions(i)).append('\n');
+        }
+        return count;
+    }
+
+    /**
+     * Append the outages of a response to the copy of the peer history. When the epoch of the peer changed the copy is replaced.
+     *
+     * @param peer the peer
+     * @param in the response
+     * @return the number of outages read or REFETCH if the batch was of a previous history of the peer
+     * @throws IOException if the response is invalid
+     */
+    static int readBatch(Peer peer, Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        String[] header = split(reader.readLine(), 5);
+        if (!FORMAT.equals(header[0]) || parseLong(header[1]) != FORMAT_VERSION) {
+            throw new IOException("Unknown exchange format " + String.join(" ", header));
+        }
+        long epoch = parseLong(header[3]);
+        synchronized (peer) {
+            peer.node = header[2];
+            if (epoch != peer.epoch) {
+                boolean refetch = peer.history.size() > 0;
+                peer.epoch = epoch;
+                peer.history = new OutageStore();
+                if (refetch) {
+                    LOGGER.info("Peer {} has a new history; it is fetched again.", peer.node);
+                    return REFETCH;
+                }
+            }
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                String[] f = split(line, 5);
+                long seq = parseLong(f[0]);
+                int cause = (int) parseLong(f[3]);
+                if (cause < 0 || cause >= NUMBER_OF_CAUSES) {
+                    throw new IOException("Invalid cause in " + line);
+                }
+                OutageStore history = peer.history;
+                if (seq != history.size() + 1) {
+                    throw new IOException("Expected sequence number " + (history.size() + 1) + " instead of " + seq);
+                }
+                history.append(parseLong(f[1]), parseLong(f[2]), cause, (int) parseLong(f[4]));
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static String[] split(String line, int fields) throws IOException {
+        String[] f = line == null ? new String[0] : line.split(" ");
+        if (f.length != fields) {
+            throw new IOException("Invalid line " + line);
+        }
+        return f;
+    }
+
+    private static long parseLong(String s) throws IOException {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid number " + s, ex);
+        }
+    }
+
+    /**
+     * Find the peers that had an outage of the line at the same time as a local outage.
+     *
+     * @param store the local history
+     * @param i the index of the local outage
+     * @return the names of the peers, empty if the outage is site-local
+     */
+    public List<String> getSharedWith(OutageStore store, int i) {
+        if (!isLineOutage(store.getCause(i))) {
+            return List.of();
+        }
+        List<String> ret = new ArrayList<>(2);
+        for (Peer peer : peers) {
+            if (overlaps(peer.getHistory(), store.getStart(i), store.getEnd(i))) {
+                ret.add(peer.getNode());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param history an outage history
+     * @param start the start of an interval
+     * @param end the end of the interval
+     * @return true if an outage of the line in the history overlaps the interval
+     */
+    static boolean overlaps(OutageStore history, long start, long end) {
+        // the outages of a node follow each other, so their ends are ordered too
+        for (int j = history.indexOf(end) - 1; j >= 0 && history.getEnd(j) > start; j--) {
+            if (isLineOutage(history.getCause(j))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLineOutage(int cause) {
+        return cause == ISP || cause == FLAPPING;
+    }
+
+    /**
+     * A peer and the copy of its history.
+     */
+    public static final class Peer {
+
+        private final String url;
+        private String node;
+        private long epoch = 0L;
+        private volatile OutageStore history = new OutageStore();
+        private volatile long lastPoll = 0L;
+        private volatile String lastError;
+
+        Peer(String url) {
+            this.url = url;
+            this.node = url;
+        }
+
+        /**
+         * @return the base URL
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return the name the peer reported, its URL until it answered
+         */
+        public synchronized String getNode() {
+            return node;
+        }
+
+        /**
+         * @return the start of service of the peer, 0 until it answered
+         */
+        public synchronized long getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return the sequence number of the last outage received
+         */
+        public int getSequence() {
+            return history.size();
+        }
+
+        /**
+         * @return the copy of the history of the peer
+         */
+        public OutageStore getHistory() {
+            return history;
+        }
+
+        /**
+         * @return the time of the last successful poll, 0 if none
+         */
+        public long getLastPoll() {
+            return lastPoll;
+        }
+
+        /**
+         * @return the error of the last poll or null if it succeeded
+         */
+        public String getLastError() {
+            return lastError;
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+}
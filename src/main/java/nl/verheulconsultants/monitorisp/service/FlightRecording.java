@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A continuous flight recording of the service with the events of MonitorISP and the default JDK events, written to a file when it is stopped.
+ *
+ * The settings of the MonitorISP events are in the bundled monitorisp.jfc. The default JDK configuration has an overhead of about one percent.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class FlightRecording {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecording.class);
+    static final String SETTINGS = "monitorisp.jfc";
+    /**
+     * The recording keeps the last day of events, up to 100 MB.
+     */
+    static final Duration MAX_AGE = Duration.ofDays(1);
+    static final long MAX_SIZE = 100L * 1024 * 1024;
+    private Recording recording;
+
+    /**
+     * @return the settings of the default JDK configuration and the bundled MonitorISP settings
+     * @throws IOException if the settings cannot be read
+     * @throws ParseException if the settings are not valid
+     */
+    static Map<String, String> getSettings() throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        try (Reader reader = new InputStreamReader(FlightRecording.class.getResourceAsStream(SETTINGS), StandardCharsets.UTF_8)) {
+            settings.putAll(Configuration.create(reader).getSettings());
+        }
+        return settings;
+    }
+
+    /**
+     * Start recording. A recording that cannot be started is logged; the service runs without it.
+     *
+     * @param destination the file to write the recording to when it is stopped
+     * @return true if the recording is started
+     */
+    public synchronized boolean start(Path destination) {
+        if (recording != null) {
+            return true;
+        }
+        try {
+            Recording r = new Recording(getSettings());
+            r.setName("MonitorISP");
+            r.setToDisk(true);
+            r.setMaxAge(MAX_AGE);
+            r.setMaxSize(MAX_SIZE);
+            r.setDestination(destination);
+            r.start();
+            recording = r;
+            LOGGER.info("The flight recording is started and will be written to {}", destination);
+            return true;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException ex) {
+            LOGGER.error("The flight recording cannot be started", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Stop recording and write the recording to its destination.
+     */
+    public synchronized void stop() {
+        if (recording != null) {
+            try {
+                recording.stop();
+                LOGGER.info("The flight recording is written to {}", recording.getDestination());
+            } catch (IllegalStateException ex) {
+                LOGGER.error("The flight recording cannot be stopped", ex);
+            }
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -47,6 +47,14 @@ public class Host implements Serializable {
         this.hostAddress = hostAddress;
     }
 
+    /**
+     *
+     * @return the id of the host in the palette
+     */
+    public String getId() {
+        return id;
+    }
+
     /**
      *
      * @return the host address
@@ -29,66 +29,221 @@ package nl.verheulconsultants.monitorisp.service;
 
 import static nl.verheulconsultants.monitorisp.service.Utilities.isValidHostAddress;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.FLAPPING_ENDED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.FLAPPING_STARTED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.OUTAGE_ENDED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.OUTAGE_STARTED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.SUSPECT_DOWN;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.UP;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.stateName;
 import static nl.verheulconsultants.monitorisp.service.Utilities.CONTROLLERDOWN;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
 import static nl.verheulconsultants.monitorisp.service.Utilities.SERVICEDOWN;
 import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
 import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.service.Utilities.NUMBER_OF_CAUSES;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeName;
 import static nl.verheulconsultants.monitorisp.service.Utilities.millisToTime;
-import static nl.verheulconsultants.monitorisp.ui.WicketApplication.CONTROLLER;
 import org.apache.wicket.model.util.CollectionModel;
-import org.apache.wicket.model.util.ListModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The thread that checks if a given list of hosts on the Internet can be reached.
+ * The controller that checks if a given list of hosts on the Internet can be reached.
  *
- * If successful with one host it sleeps for 5 seconds to try again. If it cannot connect to any host in the list a disconnection is registered.
+ * If successful with one host it checks again after 5 seconds. If it cannot connect to any host in the list a disconnection is registered.
  * If in this case it cannot connect to the router either, the disconnection is registered as a local network failure.
  *
+ * The checks run as tasks on a scheduled executor, a thread of its own or the scheduler shared by all profiles. The tasks of a controller run
+ * one at a time. Every probe cycle is a task that schedules the next one; stop and exit are tasks too, so they run after the cycle in
+ * progress and never in the middle of one.
+ *
  * @author Erik Verheul <erik@verheulconsultants.nl>
  */
-public class ISPController extends Thread {
+public class ISPController {
     public final static int PORT = 80;
     public final static int TIMEOUT_5_SEC = 5_000;
     public final static int TIMEOUT_ONE_SEC = 1_000;
     public final static int TIMEOUT_900_MIL = 900;
+    public final static int CONFIRM_DOWN = 1;
+    public final static int CONFIRM_UP = 1;
+    public final static int FLAP_THRESHOLD = 5;
+    public final static long FLAP_WINDOW = 10 * 60 * 1_000L;
+    public final static long FLAP_QUIET = 5 * 60 * 1_000L;
+    /**
+     * The delay of the next check while an outage is suspected or ongoing.
+     */
+    public final static int RECHECK_DELAY = 500;
+    /**
+     * A probe cycle that starts later than this or than its interval, whichever is longer, is flagged as a probe gap.
+     */
+    public final static long PROBE_GAP_TOLERANCE = 5_000L;
     private static final Logger LOGGER = LoggerFactory.getLogger(ISPController.class);
-    private static final List<Host> HOSTS = new ArrayList<>();
     static final String NOROUTERADDRESS = "unknown";
-    private static long currentISPunavailability = 0L;
-    private static boolean canReachISP = true;
-    private static boolean busyCheckingConnections = false;
+    private long currentISPunavailability = 0L;
+    private volatile boolean canReachISP = true;
+    private volatile boolean busyCheckingConnections = false;
+    private final String profile;
+    private final Supplier<ScheduledExecutorService> scheduler;
+    private final Clock clock;
     private final MonitorISPData sessionData;
-    private ListModel<Host> selectedModel;
-    private boolean running = false;
-    // Note: do not try to make stop or exit static
-    private boolean stop = false;
-    private boolean exit = false;
-    private List<String> selectedHostNames;
+    private final ProbeSampleLog probeLog;
+    private final ProbeMetrics metrics;
+    private final ProbeEventLog probeEvents;
+    private final List<ControllerListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object statusLock = new Object();
+    private volatile StatusSnapshot status;
+    private long statusVersion = 0L;
+    private final Object selectionLock = new Object();
+    // the host lists are immutable and replaced as a whole, so a reader always sees a consistent list
+    private volatile List<Host> choices = List.of();
+    private volatile List<Host> selected = List.of();
+    private final Object lifecycleLock = new Object();
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean draining = false;
+    // the thread of the probe cycle in progress, the only task that awaitTermination interrupts
+    private final Object cycleThreadLock = new Object();
+    private Thread cycleThread;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> nextCycle;
+    // the intended start of the next cycle by the monotonic and the wall clock, and the delay it was scheduled with
+    private volatile long nextCycleDue = 0L;
+    private volatile long nextCycleDueMillis = 0L;
+    private volatile long nextCycleDelay = 0L;
+    // the start of the previous cycle, only used by the executor
+    private long lastCycleStart = 0L;
+    private volatile boolean running = false;
+    private boolean exiting = false;
+    private CountDownLatch exited;
+    // Note: do not try to make stop static
+    private volatile boolean stop = false;
+    // incremented at every stop; a cycle of an earlier generation neither runs nor schedules the next one
+    private volatile long generation = 0L;
+    private final Object configLock = new Object();
+    private volatile RuntimeConfig config = RuntimeConfig.DEFAULT;
+    // the configuration of the cycle in progress, only used by the executor
+    private RuntimeConfig cycleConfig = RuntimeConfig.DEFAULT;
     private long outageStart = 0L;
     private boolean simulateISPFailure;
     private boolean simulateCannotReachRouter;
     private boolean canConnectWithRouter;
     private long controllerDownTimeStamp = 0L;
+    private long uptimeMark = 0L;
+    private LinkStateMachine linkState;
+    private volatile LinkStateMachine newLinkState;
 
     /**
-     * The controller running as a thread to check if a number of hosts can be reached.
+     * A controller of the default profile with a thread of its own.
      */
     public ISPController() {
-        sessionData = new MonitorISPData();
-        selectedHostNames = new ArrayList<>();
+        this(ProfileRegistry.DEFAULT_PROFILE, null, ProbeSampleLog.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * A controller of a monitoring profile, with its own hosts, router, history and counters.
+     *
+     * @param profile the name of the profile
+     * @param scheduler supplies the scheduler shared with other profiles, or null to run on a thread of its own
+     * @param probeLogCapacity the number of probes kept in the probe log
+     */
+    public ISPController(String profile, Supplier<ScheduledExecutorService> scheduler, int probeLogCapacity) {
+        this(profile, scheduler, probeLogCapacity, Clock.SYSTEM);
+    }
+
+    /**
+     * A controller of a monitoring profile in the time of a clock. A {@link VirtualClock} goes with its own scheduler.
+     *
+     * @param profile the name of the profile
+     * @param scheduler supplies the scheduler shared with other profiles, or null to run on a thread of its own
+     * @param probeLogCapacity the number of probes kept in the probe log
+     * @param clock the clock of the probe cycles, the time stamps and the pause between hosts
+     */
+    public ISPController(String profile, Supplier<ScheduledExecutorService> scheduler, int probeLogCapacity, Clock clock) {
+        this.profile = profile;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        sessionData = new MonitorISPData(profile, clock);
+        probeLog = new ProbeSampleLog(probeLogCapacity);
+        metrics = new ProbeMetrics(profile);
+        probeEvents = new ProbeEventLog(profile);
         simulateISPFailure = false;
         simulateCannotReachRouter = false;
+        linkState = new LinkStateMachine(CONFIRM_DOWN, CONFIRM_UP, FLAP_THRESHOLD, FLAP_WINDOW, FLAP_QUIET);
+    }
+
+    /**
+     * @return the name of the monitoring profile of this controller
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Set the thresholds of the outage detection. They take effect at the first check while the line is up and not flapping.
+     *
+     * @param confirmDown the number of consecutive failed checks to confirm an outage
+     * @param confirmUp the number of consecutive successful checks to confirm a recovery
+     * @param flapThreshold the number of outages within the flap window that makes the line flapping
+     * @param flapWindow the flap window in milliseconds
+     * @param flapQuiet the time in milliseconds the line must be up to end a flapping episode
+     */
+    public void setOutageDetection(int confirmDown, int confirmUp, int flapThreshold, long flapWindow, long flapQuiet) {
+        newLinkState = new LinkStateMachine(confirmDown, confirmUp, flapThreshold, flapWindow, flapQuiet);
+        LOGGER.info("The outage detection is set to confirm down after {} and up after {} checks, flapping at {} outages in {} ms until {} ms quiet",
+                confirmDown, confirmUp, flapThreshold, flapWindow, flapQuiet);
+    }
+
+    /**
+     * Add a listener to be told about status changes and new outages.
+     *
+     * @param listener the listener
+     */
+    public void addListener(ControllerListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(ControllerListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireStateChanged() {
+        publishStatus();
+        fire(listener -> listener.stateChanged(this));
+    }
+
+    private void fire(Consumer<ControllerListener> event) {
+        for (ControllerListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("A controller listener failed", ex);
+            }
+        }
     }
 
     /**
@@ -100,10 +255,17 @@ public class ISPController extends Thread {
     }
 
     /**
-     * @return the selected hosts.
+     * @return the selected hosts, a read-only list
      */
     public List<Host> getSelected() {
-        return sessionData.selected;
+        return selected;
+    }
+
+    /**
+     * @return all hosts that can be selected, a read-only list
+     */
+    public List<Host> getChoices() {
+        return choices;
     }
 
     /**
@@ -111,66 +273,70 @@ public class ISPController extends Thread {
      * @param newHostName
      */
     public void addChoice(String newHostName) {
-        Collection<Host> hostsLocal = CONTROLLER.getPaletteModel().getObject();
-        hostsLocal.add(new Host(Integer.toString(hostsLocal.size()), newHostName));
-        CONTROLLER.getPaletteModel().setObject(hostsLocal);
+        synchronized (selectionLock) {
+            List<Host> newChoices = new ArrayList<>(choices);
+            newChoices.add(new Host(Integer.toString(newChoices.size()), newHostName));
+            setHosts(newChoices, selected);
+        }
         saveSessionData();
     }
 
     /**
-     * Set the selected hosts.
-     * @param iterator
+     * Set the selected hosts. The next probe cycle uses the new selection; the cycle in progress finishes with the previous one.
+     *
+     * @param hosts the hosts to check
      */
-    public void setSelected(Iterator<Host> iterator) {
-        selectedHostNames.clear();
-        sessionData.selected.clear();
-        while (iterator.hasNext()) {
-            Host host = iterator.next();
-            // update the current host selection
-            selectedHostNames.add(host.getHostAddress());
-            // update the session data for persistance between sessions
-            sessionData.selected.add(host);
+    public void setSelected(Collection<Host> hosts) {
+        synchronized (selectionLock) {
+            setHosts(choices, hosts);
+            setConfig(c -> c.withHosts(getAddresses(selected), c.getVersion() + 1));
         }
-        LOGGER.info("The selection contains now {} hosts: {}", sessionData.selected.size(), sessionData.selected);
+        LOGGER.info("The selection contains now {} hosts: {}", selected.size(), selected);
         saveSessionData();
     }
 
+    /**
+     * Remove the hosts that are not selected from the choices.
+     */
     public void removeAvailableHosts() {
-        Collection<Host> allHosts = CONTROLLER.getPaletteModel().getObject();
-        Collection<Host> selectedHosts = CONTROLLER.getSelected();
-        LOGGER.info("allHosts = {}", allHosts);
-        LOGGER.info("selectedHosts = {}", selectedHosts);
-        Collection<Host> toRemove = new ArrayList();
-        for (Host host : allHosts) {
-            System.out.println("host = " + host);
-            if (!selectedHosts.contains(host)) {
-                toRemove.add(host);
-            }
+        synchronized (selectionLock) {
+            List<Host> newChoices = new ArrayList<>(choices);
+            newChoices.retainAll(selected);
+            LOGGER.info("The choices are reduced from {} to {} hosts", choices.size(), newChoices.size());
+            setHosts(newChoices, selected);
         }
-        toRemove.forEach(host -> {
-            allHosts.remove(host);
-        });
         saveSessionData();
     }
 
-    private void saveSessionData() {
-        if (CONTROLLER.getSessionData().saveData()) {
-            LOGGER.info("Session data is saved.");
-        }
-    }
-
     /**
-     * @return the model of the selected hosts.
+     * Replace the host lists by read-only copies and hand new lists to the session data to save.
      */
-    public ListModel<Host> getSelectedModel() {
-        return selectedModel;
+    private void setHosts(Collection<Host> newChoices, Collection<Host> newSelected) {
+        choices = List.copyOf(newChoices);
+        selected = List.copyOf(newSelected);
+        sessionData.paletteModel = new CollectionModel<>(choices);
+        sessionData.selected = new ArrayList<>(selected);
     }
 
     /**
-     * @return the palette model with all choices.
+     * @param hosts the hosts
+     * @return the addresses of the hosts, a read-only list
      */
-    public CollectionModel<Host> getPaletteModel() {
-        return sessionData.paletteModel;
+    private static List<String> getAddresses(Collection<Host> hosts) {
+        List<String> addresses = new ArrayList<>(hosts.size());
+        for (Host host : hosts) {
+            addresses.add(host.getHostAddress());
+        }
+        return Collections.unmodifiableList(addresses);
+    }
+
+    private void saveSessionData() {
+        long start = System.nanoTime();
+        boolean saved = sessionData.saveData();
+        metrics.getSaveDuration().record((System.nanoTime() - start) / 1_000);
+        if (saved) {
+            LOGGER.info("Session data is saved.");
+        }
     }
 
     /**
@@ -180,18 +346,25 @@ public class ISPController extends Thread {
      */
     public boolean initWithPreviousSessionData() {
         if (sessionData.loadData()) {
-            selectedModel = new ListModel<>(sessionData.selected);
+            synchronized (selectionLock) {
+                setHosts(sessionData.paletteModel.getObject(), sessionData.selected);
+            }
+            // data of a version without runtime configuration get the default settings
+            RuntimeConfig loaded = null == sessionData.config ? RuntimeConfig.DEFAULT : sessionData.config;
+            setConfig(c -> loaded.withHosts(getAddresses(selected), loaded.getVersion()).withRouterAddress(sessionData.routerAddress, loaded.getVersion()));
             LOGGER.info("Previous session data are loaded successfully.");
             LOGGER.info("The timestamp read is {}.", new Date(sessionData.timeStamp).toString());
-            LOGGER.info("The choices (selected and non-selected) contain now {} hosts: {}", sessionData.paletteModel.getObject().size(), sessionData.paletteModel.getObject());
-            LOGGER.info("The selection contains now {} hosts: {}", sessionData.selected.size(), sessionData.selected);
+            LOGGER.info("The choices (selected and non-selected) contain now {} hosts: {}", choices.size(), choices);
+            LOGGER.info("The selection contains now {} hosts: {}", selected.size(), selected);
             LOGGER.info("The history contains now {} records", getOutagesSize());
+            publishStatus();
             return true;
         }
         // Initiate with default values.          
         LOGGER.warn("Previous session data could not be read. The choices are initiated with default values.");
         sessionData.timeStamp = 0L;
         initWithDefaults();
+        publishStatus();
         return false;
     }
 
@@ -199,21 +372,12 @@ public class ISPController extends Thread {
      * Default initialization. Three known hosts to check connections. One dummy host is added to the choices to test failed connections.
      */
     public void initWithDefaults() {
-        HOSTS.clear();
-        HOSTS.add(new Host("0", "willfailconnection.com"));
         Host uva = new Host("1", "uva.nl");
-        HOSTS.add(uva);
         Host xs4all = new Host("2", "xs4all.nl");
-        HOSTS.add(xs4all);
         Host vu = new Host("3", "vu.nl");
-        HOSTS.add(vu);
-        sessionData.paletteModel = new CollectionModel<>(HOSTS);
-
-        sessionData.selected.clear();
-        sessionData.selected.add(uva);
-        sessionData.selected.add(xs4all);
-        sessionData.selected.add(vu);
-        selectedModel = new ListModel<>(sessionData.selected);
+        synchronized (selectionLock) {
+            setHosts(List.of(new Host("0", "willfailconnection.com"), uva, xs4all, vu), List.of(uva, xs4all, vu));
+        }
     }
 
     /**
@@ -222,7 +386,7 @@ public class ISPController extends Thread {
      * @return true if running.
      */
     public boolean isRunning() {
-        return running && this.isAlive();
+        return running;
     }
 
     /**
@@ -238,8 +402,26 @@ public class ISPController extends Thread {
      * Stop checking connections temporarily.
      */
     public void stopTemporarily() {
-        LOGGER.info("The controller thread is temporarely stopped.");
-        stop = true;
+        LOGGER.info("The controller of profile {} is temporarely stopped.", profile);
+        synchronized (lifecycleLock) {
+            if (!running || exiting) {
+                return;
+            }
+            stop = true;
+            generation++;
+            cancelNextCycle();
+            submit(this::endChecking);
+        }
+    }
+
+    /**
+     * The controller is stopped, temporarily or to exit, or not started. Unlike isBusyCheckingConnections this is set at once, not when the cycle in
+     * progress has ended.
+     *
+     * @return true if stopped
+     */
+    public boolean isStopped() {
+        return !running || stop;
     }
 
     /**
@@ -248,66 +430,217 @@ public class ISPController extends Thread {
      * @param hosts
      */
     public void restart(List<String> hosts) {
-        LOGGER.info("The controller thread is restarted.");
-        this.selectedHostNames = hosts;
-        handleControllerWasDown();
-        stop = false;
+        LOGGER.info("The controller of profile {} is restarted.", profile);
+        synchronized (lifecycleLock) {
+            if (!running || exiting || !stop) {
+                return;
+            }
+            setConfig(c -> c.withHosts(hosts, c.getVersion() + 1));
+            stop = false;
+            long current = generation;
+            submit(() -> {
+                handleControllerWasDown();
+                beginChecking(current);
+            });
+        }
     }
 
     /**
-     * Stop the service thread completely.
+     * Start checking connections with the selected hosts. Does nothing if the controller is running.
      */
-    public void exitService() {
-        LOGGER.info("The controller thread exit was called.");
-        stop = true;
-        exit = true;
-    }
-
-    @Override
-    public void run() {
-        running = true;
-        stop = false;
-        LOGGER.info("The controller has started.");
-
-        /**
-         * Outer loop is always loping unless exit = true. Note that the event that the controller was not running is registered. There are two causes: 1. The controller was
-         * stopped in the UI and restarted. 2. The service was down and restarted.
-         */
-        do {
-            if (!selectedHostNames.isEmpty()) {
-                innerLoop(selectedHostNames);
+    public void start() {
+        synchronized (lifecycleLock) {
+            if (running) {
+                return;
+            }
+            if (scheduler != null) {
+                executor = scheduler.get();
             } else {
-                LOGGER.warn("Cannot run the service with an empty selection list");
-                exit = true;
-                break;
+                executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "monitorisp-controller");
+                    // do not keep the JVM alive if the application is not stopped properly
+                    t.setDaemon(true);
+                    return t;
+                });
             }
-            // wait for instructions to restart or to exitService completely
-            sleepMillisFixed(TIMEOUT_ONE_SEC);
-        } while (!exit);
+            running = true;
+            exiting = false;
+            stop = false;
+            exited = new CountDownLatch(1);
+            long current = generation;
+            submit(() -> beginChecking(current));
+        }
+        LOGGER.info("The controller of profile {} has started.", profile);
+    }
 
-        running = false;
+    /**
+     * Stop the service completely. The cycle in progress is finished; see awaitTermination.
+     */
+    public void exitService() {
+        LOGGER.info("The controller exit of profile {} was called.", profile);
+        synchronized (lifecycleLock) {
+            if (!running || exiting) {
+                return;
+            }
+            exiting = true;
+            stop = true;
+            generation++;
+            cancelNextCycle();
+            submit(() -> {
+                endChecking();
+                // the summary of endChecking is written too
+                probeEvents.close();
+                synchronized (lifecycleLock) {
+                    running = false;
+                    if (scheduler == null) {
+                        executor.shutdown();
+                    }
+                }
+                exited.countDown();
+            });
+        }
     }
 
-    private void handleServiceWasDown() {
-        long start = sessionData.lastContactWithAnyHost;
-        long now = System.currentTimeMillis();
+    /**
+     * Wait until the controller has exited after exitService. If it takes too long the probe cycle in progress is interrupted, not a task of
+     * another profile on a shared scheduler.
+     *
+     * @param timeout the maximum time to wait in milliseconds
+     * @return true if the controller has exited
+     */
+    public boolean awaitTermination(long timeout) {
+        CountDownLatch latch;
+        synchronized (lifecycleLock) {
+            latch = exited;
+        }
+        if (latch == null) {
+            return true;
+        }
         try {
-            sessionData.outages.add(new OutageListItem(sessionData.outages.size(), start, now, now - start, SERVICEDOWN));
-            LOGGER.info("Service was down is registered");
-        } catch (java.lang.UnsupportedOperationException ex) {
-            LOGGER.error("Could not register that Service was down, the exception is {}", ex);
+            if (latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            LOGGER.warn("The controller of profile {} did not exit within {} ms and is interrupted.", profile, timeout);
+            synchronized (cycleThreadLock) {
+                if (cycleThread != null) {
+                    cycleThread.interrupt();
+                }
+            }
+            return latch.await(TIMEOUT_ONE_SEC, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Run a task after the tasks submitted before. The tasks of this controller run one at a time, also on a shared scheduler with more threads.
+     */
+    private void submit(Runnable task) {
+        synchronized (tasks) {
+            tasks.add(task);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        executor.execute(this::drainTasks);
+    }
+
+    private void drainTasks() {
+        while (true) {
+            Runnable task;
+            synchronized (tasks) {
+                task = tasks.poll();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOGGER.error("A task of the controller of profile {} failed", profile, ex);
+            }
+            // an interrupt is meant for the task that was running
+            Thread.interrupted();
+        }
+    }
+
+    private void cancelNextCycle() {
+        if (nextCycle != null) {
+            // a cycle in progress is not interrupted; it sees the stop flag
+            nextCycle.cancel(false);
+            nextCycle = null;
+        }
+    }
+
+    /**
+     * A shorter check interval does not wait for the end of the longer interval in progress.
+     */
+    private boolean advanceNextCycle(long delay) {
+        synchronized (lifecycleLock) {
+            if (nextCycle != null && nextCycle.getDelay(TimeUnit.MILLISECONDS) > delay && nextCycle.cancel(false)) {
+                nextCycle = null;
+                scheduleNextCycle(delay, generation);
+                return true;
+            }
+            return false;
         }
     }
 
+    /**
+     * Start the next probe cycle now instead of at the end of the interval.
+     *
+     * @return true if a probe cycle is started, false if the controller is not checking or a cycle is in progress
+     */
+    public boolean probeNow() {
+        return advanceNextCycle(0L);
+    }
+
+    /**
+     * Save the session data now. While the controller is running the data are saved between two probe cycles.
+     */
+    public void flush() {
+        synchronized (lifecycleLock) {
+            if (running) {
+                submit(this::saveSessionData);
+                return;
+            }
+        }
+        saveSessionData();
+    }
+
+    /**
+     * Schedule the next probe cycle of a generation. A cycle that was in progress at a stop does not continue after a restart.
+     */
+    private void scheduleNextCycle(long delay, long cycleGeneration) {
+        synchronized (lifecycleLock) {
+            if (!stop && running && cycleGeneration == generation) {
+                nextCycleDue = clock.nanoTime() + delay * 1_000_000L;
+                nextCycleDueMillis = clock.currentTimeMillis() + delay;
+                nextCycleDelay = delay;
+                nextCycle = executor.schedule(() -> submit(() -> checkCycle(cycleGeneration)), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void handleServiceWasDown() {
+        long start = sessionData.lastContactWithAnyHost;
+        long now = clock.currentTimeMillis();
+        sessionData.history.append(start, now, SERVICEDOWN);
+        sessionData.rollup.addOutage(start, now, SERVICEDOWN);
+        LOGGER.info("Service was down is registered");
+        fireStateChanged();
+    }
+
     private void handleControllerWasDown() {
         long start = controllerDownTimeStamp;
-        long now = System.currentTimeMillis();
-        try {
-            sessionData.outages.add(new OutageListItem(sessionData.outages.size(), start, now, now - start, CONTROLLERDOWN));
-            LOGGER.info("Controller was down is registered");
-        } catch (java.lang.UnsupportedOperationException ex) {
-            LOGGER.error("Could not register that Controller was down, the exception is {}", ex);
-        }
+        long now = clock.currentTimeMillis();
+        sessionData.history.append(start, now, CONTROLLERDOWN);
+        sessionData.rollup.addOutage(start, now, CONTROLLERDOWN);
+        LOGGER.info("Controller was down is registered");
+        fireStateChanged();
     }
 
     /**
@@ -326,72 +659,291 @@ public class ISPController extends Thread {
      */
     public void setRouterAddress(String address) {
         sessionData.routerAddress = address;
+        setConfig(c -> c.withRouterAddress(address, c.getVersion() + 1));
+        publishStatus();
+    }
+
+    /**
+     * @return the current configuration
+     */
+    public RuntimeConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Change the configuration. The next probe cycle uses the new configuration; the checks are not interrupted. Hosts that are not in the
+     * choices yet are added to them and the selection is set to the hosts.
+     *
+     * @param changes the new values by name, see RuntimeConfig
+     * @param expectedVersion the version the changes are based on or -1 to change any version
+     * @return the new configuration
+     * @throws IllegalArgumentException if a name is unknown or a value is not valid
+     * @throws IllegalStateException if the configuration is not of the expected version
+     */
+    public RuntimeConfig updateConfig(Map<String, String> changes, long expectedVersion) {
+        RuntimeConfig newConfig;
+        synchronized (selectionLock) {
+            synchronized (configLock) {
+                if (expectedVersion >= 0L && expectedVersion != config.getVersion()) {
+                    throw new IllegalStateException("The configuration has version " + config.getVersion() + ", not " + expectedVersion);
+                }
+                newConfig = config.with(changes, config.getVersion() + 1);
+                config = newConfig;
+                sessionData.config = newConfig;
+                sessionData.routerAddress = newConfig.getRouterAddress();
+            }
+            if (changes.containsKey(RuntimeConfig.HOSTS)) {
+                List<Host> newChoices = new ArrayList<>(choices);
+                List<Host> newSelected = new ArrayList<>();
+                for (String address : newConfig.getHosts()) {
+                    Host host = newChoices.stream().filter(h -> address.equals(h.getHostAddress())).findFirst().orElse(null);
+                    if (host == null) {
+                        host = new Host(Integer.toString(newChoices.size()), address);
+                        newChoices.add(host);
+                    }
+                    newSelected.add(host);
+                }
+                setHosts(newChoices, newSelected);
+            }
+        }
+        LOGGER.info("The configuration of profile {} is changed to {}", profile, newConfig);
+        advanceNextCycle(newConfig.getCheckInterval());
+        saveSessionData();
+        publishStatus();
+        return newConfig;
+    }
+
+    private void setConfig(UnaryOperator<RuntimeConfig> change) {
+        synchronized (configLock) {
+            config = change.apply(config);
+            sessionData.config = config;
+        }
     }
 
     /**
      * @return the number of registered outages.
      */
     public int getOutagesSize() {
-        return sessionData.outages.size();
+        return sessionData.history.size();
     }
 
     /**
      * @return the last registered outage or null if none are available.
      */
     public OutageListItem getLastOutage() {
-        if (null == sessionData.outages || sessionData.outages.isEmpty()) {
-            return null;
-        } else {
-            return sessionData.outages.get(sessionData.outages.size() - 1);
+        return sessionData.history.getLast();
+    }
+
+    /**
+     * Start the probe cycles. Runs on the executor.
+     */
+    private void beginChecking(long cycleGeneration) {
+        if (cycleGeneration != generation) {
+            // stopped again before this start could run
+            return;
+        }
+        if (config.getHosts().isEmpty()) {
+            LOGGER.warn("Cannot run the service with an empty selection list");
+            exitService();
+            return;
+        }
+        uptimeMark = clock.currentTimeMillis();
+        nextCycleDue = 0L;
+        lastCycleStart = 0L;
+        checkCycle(cycleGeneration);
+    }
+
+    /**
+     * Run a probe cycle and schedule the next one. Runs on the executor.
+     */
+    private void checkCycle(long cycleGeneration) {
+        if (stop || cycleGeneration != generation) {
+            return;
+        }
+        measureStart();
+        synchronized (cycleThreadLock) {
+            cycleThread = Thread.currentThread();
+        }
+        try {
+            probeCycle();
+        } catch (RuntimeException ex) {
+            // an exception would cancel the schedule
+            LOGGER.error("The probe cycle failed", ex);
+        } finally {
+            synchronized (cycleThreadLock) {
+                cycleThread = null;
+                // an interrupt that came too late for this cycle must not hit the next task of the thread
+                Thread.interrupted();
+            }
         }
+        // check again soon while the state is not stable
+        scheduleNextCycle(linkState.isStable() ? cycleConfig.getCheckInterval() : cycleConfig.getRecheckDelay(), cycleGeneration);
     }
 
     /**
-     * Inner loop checking if connections to the hosts are possible.
+     * Measure how late this probe cycle starts and how long the interval since the previous cycle was. A cycle that starts much too late is a
+     * probe gap: the connection was not checked in that time, so an outage may be missed. Runs on the executor.
+     */
+    private void measureStart() {
+        long now = clock.nanoTime();
+        if (nextCycleDue != 0L) {
+            long lagMicros = Math.max(0L, now - nextCycleDue) / 1_000L;
+            metrics.getStartLag().record(lagMicros);
+            // the monotonic clock may stand still while the machine is suspended; the wall clock does not
+            long lagMillis = Math.max(lagMicros / 1_000L, clock.currentTimeMillis() - nextCycleDueMillis);
+            if (lagMillis > Math.max(PROBE_GAP_TOLERANCE, nextCycleDelay)) {
+                metrics.recordProbeGap(nextCycleDueMillis, lagMillis);
+                LOGGER.warn("Probe gap: the probe cycle of profile {} started {} late. The connection was not checked in that time.",
+                        profile, millisToTime(lagMillis));
+            }
+        }
+        if (lastCycleStart != 0L) {
+            metrics.getIntervalDrift().record(Math.max(0L, (now - lastCycleStart) / 1_000L - nextCycleDelay * 1_000L));
+        }
+        lastCycleStart = now;
+    }
+
+    /**
+     * One probe cycle checking if connections to the hosts are possible.
      *
-     * When looping busyCheckingConnections == true. Registers the periods when no connections could be made. Will return at an exitService or stop.
-     */
-    private void innerLoop(List<String> selectedURLs) {
-        long loopStart;
-        while (!exit && !stop) {
-            busyCheckingConnections = true;
-            loopStart = System.currentTimeMillis();
-            if (checkISP(selectedURLs)) {
-                // Success, ISP can be connected               
-                canReachISP = true;
-                sessionData.lastContactWithAnyHost = System.currentTimeMillis();
-                currentISPunavailability = 0L;
-                if (outageStart > 0L) {
-                    long outageEnd = sessionData.lastContactWithAnyHost;
-                    sessionData.outages.add(new OutageListItem(sessionData.outages.size(), outageStart,
-                            outageEnd, outageEnd - outageStart, canConnectWithRouter ? ISP : INTERNAL));
-                    outageStart = 0L;
-                }
-                canConnectWithRouter = true;
-            } else {
-                if (canReachISP) {
-                    // Connection failed first time after successful connections
-                    sessionData.numberOfInterruptions++;
-                    outageStart = loopStart;
-                    canConnectWithRouter = canConnectRouter();
-                    LOGGER.info("canConnectWithRouter is set to {} and will be set to true at the first successful connection.", canConnectWithRouter);
-                }
-                canReachISP = false;
-                sessionData.lastFail = System.currentTimeMillis();
-                // update the current unavailability
-                currentISPunavailability = sessionData.lastFail - outageStart;
+     * While cycling busyCheckingConnections == true. Registers the periods when no connections could be made, as confirmed by the link state machine.
+     */
+    private void probeCycle() {
+        busyCheckingConnections = true;
+        CycleEvent cycleEvent = new CycleEvent();
+        cycleEvent.begin();
+        applyConfig();
+        if (null != newLinkState && linkState.isStable() && !linkState.isFlapping()) {
+            linkState = newLinkState;
+            newLinkState = null;
+        }
+        long loopStart = clock.currentTimeMillis();
+        long cycleStart = clock.nanoTime();
+        long probes = sessionData.successfulChecks + sessionData.failedChecks;
+        boolean success = checkISP(cycleConfig.getHosts());
+        if (Thread.currentThread().isInterrupted()) {
+            // the controller is shut down during the cycle; the result is not valid
+            return;
+        }
+        long cycleMicros = (clock.nanoTime() - cycleStart) / 1_000;
+        metrics.getCycleDuration().record(cycleMicros);
+        long now = clock.currentTimeMillis();
+        if (success) {
+            sessionData.lastContactWithAnyHost = now;
+        } else {
+            sessionData.lastFail = now;
+        }
+        int events = linkState.onProbe(success, success ? now : loopStart);
+        if ((events & OUTAGE_STARTED) != 0) {
+            // Connection failure confirmed after successful connections
+            sessionData.numberOfInterruptions++;
+            outageStart = linkState.getOutageStart();
+            canConnectWithRouter = canConnectRouter();
+            LOGGER.info("canConnectWithRouter is set to {} and will be set to true at the first successful connection.", canConnectWithRouter);
+            sessionData.rollup.addUptime(uptimeMark, outageStart);
+            int cause = canConnectWithRouter ? ISP : INTERNAL;
+            sessionData.rollup.openOutage(outageStart, cause);
+            recordOutage("open", outageStart, 0L, cause);
+            fire(listener -> listener.outageStarted(this, outageStart, cause));
+            if ((events & FLAPPING_STARTED) != 0) {
+                LOGGER.info("The line is flapping; the next outages are registered as one episode.");
             }
-            // wait to check the ISP connection again
-            sleepMillisSliced(TIMEOUT_5_SEC);
         }
+        if ((events & OUTAGE_ENDED) != 0) {
+            registerOutageEnd(linkState.getOutageEnd());
+        }
+        if (success && linkState.isStable()) {
+            sessionData.rollup.addUptime(uptimeMark, now);
+            uptimeMark = now;
+        }
+        if ((events & FLAPPING_ENDED) != 0) {
+            registerFlappingEpisode(linkState.getEpisodeEnd());
+        }
+        canReachISP = linkState.getState() == UP || linkState.getState() == SUSPECT_DOWN;
+        // update the current unavailability
+        currentISPunavailability = outageStart > 0L ? now - outageStart : 0L;
+        fire(listener -> listener.probeCycleEnded(this, now, success, cycleMicros));
+        fireStateChanged();
+        cycleEvent.end();
+        if (cycleEvent.shouldCommit()) {
+            cycleEvent.profile = profile;
+            cycleEvent.hostsTried = (int) (sessionData.successfulChecks + sessionData.failedChecks - probes);
+            cycleEvent.success = success;
+            cycleEvent.linkState = stateName(linkState.getState());
+            cycleEvent.commit();
+        }
+    }
 
+    private void recordOutage(String transition, long start, long end, int cause) {
+        OutageEvent event = new OutageEvent();
+        if (event.isEnabled()) {
+            event.profile = profile;
+            event.transition = transition;
+            event.start = start;
+            event.end = end;
+            event.cause = causeName(cause);
+            event.commit();
+        }
+    }
+
+    /**
+     * Register the end of the probe cycles. Runs on the executor after the last cycle.
+     */
+    private void endChecking() {
+        if (outageStart > 0L || linkState.isFlapping()) {
+            // the outage ends with the checks; the rollup must not count it on while the checks are stopped or after an exit
+            resetLinkState(clock.currentTimeMillis());
+        }
         if (busyCheckingConnections) {
-            controllerDownTimeStamp = System.currentTimeMillis();
+            controllerDownTimeStamp = clock.currentTimeMillis();
             LOGGER.info("The controller has stopped.\n");
             LOGGER.info("{} Connection checks are executed, {} were successful.",
                     sessionData.successfulChecks + sessionData.failedChecks, sessionData.successfulChecks);
         }
         busyCheckingConnections = false;
+        probeEvents.summarize(clock.currentTimeMillis());
+        fireStateChanged();
+    }
+
+    /**
+     * The outage is over. A single outage is registered in the history but an outage of a flapping line is only added to the rollup; the history gets the whole episode.
+     */
+    private void registerOutageEnd(long outageEnd) {
+        int cause = canConnectWithRouter ? ISP : INTERNAL;
+        sessionData.rollup.closeOutage(outageEnd, cause);
+        recordOutage("close", outageStart, outageEnd, cause);
+        if (!linkState.isFlapping()) {
+            sessionData.history.append(outageStart, outageEnd, cause);
+        }
+        long start = outageStart;
+        fire(listener -> listener.outageEnded(this, start, outageEnd, cause));
+        outageStart = 0L;
+        uptimeMark = outageEnd;
+        canConnectWithRouter = true;
+    }
+
+    private void registerFlappingEpisode(long episodeEnd) {
+        sessionData.history.append(linkState.getEpisodeStart(), episodeEnd, FLAPPING, linkState.getSubEvents());
+        LOGGER.info("A flapping episode with {} interruptions is registered.", linkState.getSubEvents());
+    }
+
+    /**
+     * Start again with a link state machine in the up state. An open outage and a flapping episode end now; a line still down is detected again by the
+     * next checks.
+     */
+    private void resetLinkState(long now) {
+        long episodeEnd = linkState.getEpisodeEnd();
+        if (outageStart > 0L) {
+            registerOutageEnd(now);
+            episodeEnd = now;
+        }
+        if (linkState.isFlapping() && episodeEnd > 0L) {
+            // do not lose the episode so far
+            registerFlappingEpisode(episodeEnd);
+        }
+        linkState = linkState.reset();
+        currentISPunavailability = 0L;
+        canReachISP = true;
     }
 
     /**
@@ -400,8 +952,8 @@ public class ISPController extends Thread {
      * @param hosts
      */
     public void doInBackground(List<String> hosts) {
-        LOGGER.info("The controller thread is created and started.");
-        this.selectedHostNames = hosts;
+        LOGGER.info("The controller is created and started.");
+        setConfig(c -> c.withHosts(hosts, c.getVersion() + 1));
         handleServiceWasDown();
         start();
     }
@@ -411,13 +963,13 @@ public class ISPController extends Thread {
             return false;
         }
         // if the router address is not set we can not exclude internal network failure
-        if (NOROUTERADDRESS.equalsIgnoreCase(sessionData.routerAddress)) {
+        if (NOROUTERADDRESS.equalsIgnoreCase(cycleConfig.getRouterAddress())) {
             LOGGER.warn("The router address is not set. The internal network error detection is omitted");
             return true;
         }
         // if the router address is not a valid address we can not exclude internal network failure
-        if (!isValidHostAddress(sessionData.routerAddress)) {
-            LOGGER.warn("The router address {} is not valid. The internal network error detection is omitted", sessionData.routerAddress);
+        if (!isValidHostAddress(cycleConfig.getRouterAddress())) {
+            LOGGER.warn("The router address {} is not valid. The internal network error detection is omitted", cycleConfig.getRouterAddress());
             return true;
         }
         return checkRouter();
@@ -451,6 +1003,16 @@ public class ISPController extends Thread {
         simulateCannotReachRouter = yesNo;
     }
 
+    /**
+     * Continue with the latest configuration. Runs on the executor at the start of a probe cycle.
+     */
+    void applyConfig() {
+        if (cycleConfig != config) {
+            cycleConfig = config;
+            LOGGER.info("The probe cycles of profile {} continue with configuration {}", profile, cycleConfig);
+        }
+    }
+
     /**
      * Try to connect to any host in the list. This method will return almost immediately when the first host can be reached or take max nrOfHosts x 1900 mS.
      *
@@ -458,28 +1020,30 @@ public class ISPController extends Thread {
      * @return true if a host can be contacted and false if not one host from the list can be reached.
      */
     boolean checkISP(List<String> hURLs) {
-        LOGGER.info("checkISP is executed");
+        // the probe results are in the probe event log; the log of the application follows the state changes
+        LOGGER.debug("checkISP is executed");
         boolean hostFound = false;
         if (simulateISPFailure) {
-            LOGGER.info("Failed ISP check SIMULATED");
+            LOGGER.debug("Failed ISP check SIMULATED");
         } else {
-            try {
-                for (String host : hURLs) {
-                    LOGGER.info("checkISP: testing host {}", host);
-                    // test a TCP connection with the destination host and a time-out.
-                    if (testConnection(host, PORT, TIMEOUT_900_MIL)) {
-                        hostFound = true;
-                        sessionData.successfulChecks++;
-                        // when successfull there is no need to try the other selectedHostsURLs
-                        break;
-                    } else {
-                        sessionData.failedChecks++;
-                        // wait 1 second before contacting the next host in the list
-                        sleepMillisFixed(TIMEOUT_ONE_SEC);
-                    }
+            // the list is never changed; a new selection is a new list
+            for (String host : hURLs) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // the controller is shut down
+                    break;
+                }
+                LOGGER.debug("checkISP: testing host {}", host);
+                // test a TCP connection with the destination host and a time-out.
+                if (probe(host, cycleConfig.getProbeTimeout())) {
+                    hostFound = true;
+                    sessionData.successfulChecks++;
+                    // when successfull there is no need to try the other selectedHostsURLs
+                    break;
+                } else {
+                    sessionData.failedChecks++;
+                    // wait a moment before contacting the next host in the list
+                    pause(cycleConfig.getHostPause());
                 }
-            } catch (java.util.ConcurrentModificationException ex) {
-                LOGGER.info("This exception can occur while changing the selected hosts; this test is skipped {}", ex);
             }
         }
         return hostFound;
@@ -491,7 +1055,33 @@ public class ISPController extends Thread {
      * @return true if the router can be reached
      */
     private boolean checkRouter() {
-        return testConnection(sessionData.routerAddress, PORT, TIMEOUT_ONE_SEC);
+        return probe(cycleConfig.getRouterAddress(), cycleConfig.getRouterTimeout());
+    }
+
+    /**
+     * Test a connection and add the result to the probe samples and the probe event log.
+     */
+    private boolean probe(String host, int timeout) {
+        ProbeEvent event = new ProbeEvent();
+        event.begin();
+        long start = clock.nanoTime();
+        String error = testConnection(host, cycleConfig.getPort(), timeout, event);
+        boolean ok = error == null;
+        long rtt = (clock.nanoTime() - start) / 1_000;
+        long now = clock.currentTimeMillis();
+        probeLog.add(now, host, rtt, ok);
+        probeEvents.record(now, host, error, rtt);
+        metrics.recordProbe(host, rtt);
+        event.end();
+        if (event.shouldCommit()) {
+            event.profile = profile;
+            event.host = host;
+            event.port = cycleConfig.getPort();
+            event.success = ok;
+            event.rtt = rtt;
+            event.commit();
+        }
+        return ok;
     }
 
     /**
@@ -499,155 +1089,155 @@ public class ISPController extends Thread {
      *
      * @see http://www.mindchasers.com/topics/ping.htm
      * @param
-     * @return true is a connection could be made within the time-out interval
+     * @return null if a connection could be made within the time-out interval, otherwise the reason it failed
      */
-    private static boolean testConnection(String host, Integer port, int timeout) {
+    private static String testConnection(String host, Integer port, int timeout, ProbeEvent event) {
         InetAddress inetAddress;
         InetSocketAddress socketAddress;
+        long resolveStart = System.nanoTime();
         try {
             inetAddress = InetAddress.getByName(host);
+            event.dnsTime = System.nanoTime() - resolveStart;
         } catch (UnknownHostException e) {
-            LOGGER.info("The host {} is unknown. Cause = {}", new Object[]{host, e});
-            return false;
+            event.dnsTime = System.nanoTime() - resolveStart;
+            LOGGER.debug("The host {} is unknown. Cause = {}", host, e.toString());
+            return "UnknownHostException: " + host;
         }
 
         try {
             socketAddress = new InetSocketAddress(inetAddress, port);
         } catch (IllegalArgumentException e) {
-            LOGGER.info("The port {} can not be valid. Cause = {}", new Object[]{port, e});
-            return false;
+            LOGGER.debug("The port {} can not be valid. Cause = {}", port, e.toString());
+            return "IllegalArgumentException: " + e.getMessage();
         }
 
         // Open the channel, set it to blocking, initiate connect
         try (SocketChannel sc = SocketChannel.open()) {
             sc.configureBlocking(true);
             sc.socket().connect(socketAddress, timeout);
-            return true;
+            return null;
         } catch (IOException e) {
-            LOGGER.info("{}/{} cannot be reached. The cause is {}", new Object[]{host, inetAddress.getHostAddress(), e});
-            return false;
+            LOGGER.debug("{}/{} cannot be reached. The cause is {}", host, inetAddress.getHostAddress(), e.toString());
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
         }
     }
 
-    public static final int NUMBER_OF_SLYCES = 10;
-
     /**
-     * Put this thread to sleep for ms milliseconds. Slice the sleep to exitService fast in case of a stop or exitService. Sleep only one slice while an outage is ongoing.
+     * Wait a fixed time of ms milliseconds by the clock. An interrupt is kept for the caller to see.
      *
-     * @param ms the maximum sleep time
+     * @param ms the fixed sleep time
      */
-    private void sleepMillisSliced(long ms) {
-        long slice = ms / NUMBER_OF_SLYCES;
-        for (int i = 0; i < NUMBER_OF_SLYCES && !exit && !stop; i++) {
-            try {
-                Thread.sleep(slice);
-                if (!canReachISP) {
-                    break;
-                }
-            } catch (java.util.concurrent.CancellationException | java.lang.InterruptedException ex) {
-                LOGGER.info("A thread sleep was interrupted because of {}", ex);
-            }
+    private void pause(long ms) {
+        try {
+            clock.sleep(ms);
+        } catch (InterruptedException ex) {
+            LOGGER.info("A thread sleep was interrupted because of {}", ex.toString());
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Put this thread to sleep for a fixed time of ms milliseconds.
+     * The status as formatted for display. The list is shared and must not be changed.
      *
-     * @param ms the fixed sleep time
+     * @return a list of status data.
      */
-    private static void sleepMillisFixed(long ms) {
-        try {
-            Thread.sleep(ms);
-        } catch (java.util.concurrent.CancellationException | java.lang.InterruptedException ex) {
-            LOGGER.info("A thread sleep was interrupted because of {}", ex);
-        }
+    public List getStatusData() {
+        return getStatusSnapshot().getItems();
     }
 
     /**
-     * These data are refreshed every 5 seconds by Wicket Javascript.
+     * Get the latest status. This is a read of a reference; the snapshot is created by the controller after every check.
      *
-     * @return a list of status date.
+     * @return the latest status snapshot
      */
-    public List getStatusData() {
-        List ret = new ArrayList();
-
-        StatusListItem x0 = new StatusListItem();
-        x0.name = "Start of service";
-        x0.value = new Date(sessionData.startOfService).toString();
-        x0.index = 1;
-        ret.add(x0);
-
-        StatusListItem x1 = new StatusListItem();
-        x1.name = "Last contact with any host";
-        x1.value = new Date(sessionData.lastContactWithAnyHost).toString();
-        x1.index = x0.index + 1;
-        ret.add(x1);
-
-        StatusListItem x2 = new StatusListItem();
-        x2.name = "Last fail";
-        if (sessionData.lastFail > 0) {
-            x2.value = new Date(sessionData.lastFail).toString();
-        } else {
-            x2.value = "No failure yet";
-        }
-        x2.index = x1.index + 1;
-        ret.add(x2);
-
-        StatusListItem x3 = new StatusListItem();
-        x3.name = "Number of interruptions";
-        x3.value = Long.toString(sessionData.numberOfInterruptions);
-        x3.index = x2.index + 1;
-        ret.add(x3);
-
-        StatusListItem x4 = new StatusListItem();
-        x4.name = "Failed checks";
-        x4.value = Long.toString(sessionData.failedChecks);
-        x4.index = x3.index + 1;
-        ret.add(x4);
-
-        StatusListItem x5 = new StatusListItem();
-        x5.name = "Successful checks";
-        x5.value = Long.toString(sessionData.successfulChecks);
-        x5.index = x4.index + 1;
-        ret.add(x5);
-
-        StatusListItem x6 = new StatusListItem();
-        x6.name = "Current ISP unavailability";
-        x6.value = millisToTime(currentISPunavailability);
-        x6.index = x5.index + 1;
-        ret.add(x6);
-
-        StatusListItem x7 = new StatusListItem();
-        x7.name = "Total ISP unavailability";
-        x7.value = millisToTime(getTotalISPUnavailability());
-        x7.index = x6.index + 1;
-        ret.add(x7);
-
-        StatusListItem x8 = new StatusListItem();
-        x8.name = "Outage caused internal";
-        if (NOROUTERADDRESS.equals(sessionData.routerAddress)) {
-            x8.value = "Cannot say, router address unknown";
-        } else {
-            if (busyCheckingConnections) {
-                x8.value = Boolean.toString(!canConnectWithRouter);
+    public StatusSnapshot getStatusSnapshot() {
+        StatusSnapshot snapshot = status;
+        if (snapshot == null) {
+            publishStatus();
+            snapshot = status;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Create and publish a new status snapshot.
+     */
+    void publishStatus() {
+        synchronized (statusLock) {
+            StatusSnapshot s = new StatusSnapshot();
+            long now = clock.currentTimeMillis();
+            s.version = ++statusVersion;
+            s.timeStamp = now;
+            s.startOfService = sessionData.startOfService;
+            s.lastContactWithAnyHost = sessionData.lastContactWithAnyHost;
+            s.lastFail = sessionData.lastFail;
+            s.numberOfInterruptions = sessionData.numberOfInterruptions;
+            s.failedChecks = sessionData.failedChecks;
+            s.successfulChecks = sessionData.successfulChecks;
+            s.currentISPUnavailability = currentISPunavailability;
+            s.unavailability = new long[NUMBER_OF_CAUSES];
+            for (int cause = 0; cause < NUMBER_OF_CAUSES; cause++) {
+                // the rollup includes the ongoing outage and the outages coalesced in flapping episodes
+                s.unavailability[cause] = sessionData.rollup.getDowntime(0L, now, cause);
+            }
+            s.totalISPUnavailability = s.unavailability[ISP];
+            s.availabilityThisMonth = sessionData.rollup.getAvailability(sessionData.rollup.getStartOfMonth(), now);
+            s.busyCheckingConnections = busyCheckingConnections;
+            s.canReachISP = canReachISP;
+            s.outages = sessionData.history.size();
+            s.probeGaps = metrics.getProbeGaps();
+            s.lastProbeGap = metrics.getLastProbeGap();
+            s.cycles = metrics.getCycleDuration().getCount();
+            s.cycleMicros = metrics.getCycleDuration().getSum();
+            s.probeSamples = Math.min(probeLog.getWritten(), probeLog.getCapacity());
+
+            List<StatusListItem> ret = new ArrayList<>(14);
+            ret.add(new StatusListItem(1, "Start of service", new Date(s.startOfService).toString()));
+            ret.add(new StatusListItem(2, "Last contact with any host", new Date(s.lastContactWithAnyHost).toString()));
+            ret.add(new StatusListItem(3, "Last fail", s.lastFail > 0 ? new Date(s.lastFail).toString() : "No failure yet"));
+            ret.add(new StatusListItem(4, "Number of interruptions", Long.toString(s.numberOfInterruptions)));
+            ret.add(new StatusListItem(5, "Failed checks", Long.toString(s.failedChecks)));
+            ret.add(new StatusListItem(6, "Successful checks", Long.toString(s.successfulChecks)));
+            ret.add(new StatusListItem(7, "Current ISP unavailability", millisToTime(s.currentISPUnavailability)));
+            ret.add(new StatusListItem(8, "Total ISP unavailability", millisToTime(s.totalISPUnavailability)));
+
+            String internal;
+            if (NOROUTERADDRESS.equals(sessionData.routerAddress)) {
+                internal = "Cannot say, router address unknown";
             } else {
-                x8.value = "Cannot say, conroller is not running";
+                if (s.busyCheckingConnections) {
+                    internal = Boolean.toString(!canConnectWithRouter);
+                } else {
+                    internal = "Cannot say, conroller is not running";
+                }
             }
-        }
-        x8.index = x7.index + 1;
-        ret.add(x8);
+            ret.add(new StatusListItem(9, "Outage caused internal", internal));
+            ret.add(new StatusListItem(10, "INTERNET UP?",
+                    s.busyCheckingConnections ? Boolean.toString(s.canReachISP) : "UNKNOWN, conroller is not running"));
+            ret.add(new StatusListItem(11, "ISP availability this month", String.format("%.3f %%", s.availabilityThisMonth)));
 
-        StatusListItem x9 = new StatusListItem();
-        x9.name = "INTERNET UP?";
-        if (busyCheckingConnections) {
-            x9.value = Boolean.toString(canReachISP);
-        } else {
-            x9.value = "UNKNOWN, conroller is not running";
+            DurationSketch durations = sessionData.rollup.getDurationSketch(sessionData.rollup.getStartOfMonth(), now, ISP);
+            ret.add(new StatusListItem(12, "ISP outage duration median / p99 this month", durations.getCount() > 0
+                    ? millisToTime(durations.getQuantile(0.5)) + " / " + millisToTime(durations.getQuantile(0.99)) : "No outages yet"));
+            ret.add(new StatusListItem(13, "Probe gaps", s.probeGaps > 0
+                    ? s.probeGaps + ", the last at " + new Date(s.lastProbeGap) + ", " + millisToTime(metrics.getProbeGapMillis()) + " in total"
+                    : "None"));
+            ret.add(new StatusListItem(14, "Probe start lag / interval drift p99", metrics.getStartLag().getCount() > 0
+                    ? bucketToString(metrics.getStartLag().getQuantile(0.99)) + " / " + bucketToString(metrics.getIntervalDrift().getQuantile(0.99))
+                    : "Not measured yet"));
+
+            s.items = Collections.unmodifiableList(ret);
+            status = s;
         }
-        x9.index = x8.index + 1;
-        ret.add(x9);
+    }
 
-        return ret;
+    private static String bucketToString(long micros) {
+        if (micros == Long.MAX_VALUE) {
+            return "over 10 sec";
+        }
+        return micros < 1_000_000L
+                ? "up to " + BigDecimal.valueOf(micros, 3).stripTrailingZeros().toPlainString() + " ms"
+                : "up to " + BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString() + " sec";
     }
 
     /**
@@ -656,17 +1246,35 @@ public class ISPController extends Thread {
      * @return the full list
      */
     public List getOutageDataReversedOrder() {
-        return ReversedView.of(sessionData.outages);
+        return ReversedView.of(sessionData.history.asList());
     }
 
-    private long getTotalISPUnavailability() {
-        long sumOutages = 0L;
-        for (OutageListItem item : sessionData.outages) {
-            if (item.cause == ISP) {
-                sumOutages += item.getDuration();
-            }
-        }
-        return sumOutages + currentISPunavailability;
+    /**
+     * @return the most recent connection checks
+     */
+    public ProbeSampleLog getProbeLog() {
+        return probeLog;
+    }
+
+    /**
+     * @return the timing telemetry of the probes
+     */
+    public ProbeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the outage history
+     */
+    public OutageStore getHistory() {
+        return sessionData.history;
+    }
+
+    /**
+     * @return the availability rollup per hour, day and month
+     */
+    public AvailabilityRollup getRollup() {
+        return sessionData.rollup;
     }
 
 }
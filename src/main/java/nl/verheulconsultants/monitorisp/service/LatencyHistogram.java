@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+/**
+ * A histogram of durations with fixed buckets, kept in primitive counters. Recording does not allocate.
+ *
+ * The buckets and the output follow the Prometheus text exposition format, with the durations in seconds.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class LatencyHistogram {
+
+    /**
+     * The upper bounds of the buckets in microseconds, from 1 ms to 10 s.
+     */
+    static final long[] BOUNDS = {1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+        1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L};
+    private static final String[] LE = {"0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5",
+        "1", "2.5", "5", "10"};
+    private final long[] counts = new long[BOUNDS.length + 1];
+    private long sum = 0L;
+    private long count = 0L;
+
+    /**
+     * Record a duration.
+     *
+     * @param micros the duration in microseconds
+     */
+    public synchronized void record(long micros) {
+        int i = 0;
+        while (i < BOUNDS.length && micros > BOUNDS[i]) {
+            i++;
+        }
+        counts[i]++;
+        sum += micros;
+        count++;
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded durations in microseconds
+     */
+    public synchronized long getSum() {
+        return sum;
+    }
+
+    /**
+     * Estimate a quantile by the upper bound of the bucket it is in.
+     *
+     * @param q the quantile, for instance 0.99
+     * @return the upper bound in microseconds, Long.MAX_VALUE if it is above the last bound or 0 if nothing is recorded
+     */
+    public synchronized long getQuantile(double q) {
+        if (count == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(q * count));
+        long cumulative = 0L;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return BOUNDS[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Append the buckets, the sum and the count as Prometheus samples.
+     *
+     * @param sb the builder
+     * @param name the metric name without suffix
+     * @param labels the formatted labels, for instance profile="default",host="uva.nl", or null if there are no labels
+     */
+    public synchronized void appendTo(StringBuilder sb, String name, String labels) {
+        long cumulative = 0L;
+        for (int i = 0; i <= BOUNDS.length; i++) {
+            cumulative += counts[i];
+            sb.append(name).append("_bucket{");
+            if (labels != null) {
+                sb.append(labels).append(',');
+            }
+            sb.append("le=\"").append(i < BOUNDS.length ? LE[i] : "+Inf").append("\"} ").append(cumulative).append('\n');
+        }
+        sb.append(name).append("_sum");
+        appendLabels(sb, labels);
+        appendSeconds(sb.append(' '), sum).append('\n');
+        sb.append(name).append("_count");
+        appendLabels(sb, labels);
+        sb.append(' ').append(count).append('\n');
+    }
+
+    private static void appendLabels(StringBuilder sb, String labels) {
+        if (labels != null) {
+            sb.append('{').append(labels).append('}');
+        }
+    }
+
+    /**
+     * Append a duration in seconds with six decimals, without formatting a double.
+     *
+     * @param sb the builder
+     * @param micros the duration in microseconds
+     * @return the builder
+     */
+    public static StringBuilder appendSeconds(StringBuilder sb, long micros) {
+        sb.append(micros / 1_000_000L).append('.');
+        long fraction = micros % 1_000_000L;
+        for (long d = 100_000L; d > fraction && d > 1L; d /= 10L) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+}
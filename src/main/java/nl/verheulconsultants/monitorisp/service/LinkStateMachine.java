@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+/**
+ * Hysteresis state machine that turns the results of the connection checks into outages.
+ *
+ * A down state is only confirmed after confirmDown consecutive failed checks and an up state after confirmUp consecutive successful checks. When flapThreshold
+ * outages start within flapWindow the line is flapping: the following outages are coalesced into one episode that ends when the line stayed up for flapQuiet.
+ * Each call to {@link #onProbe(boolean, long)} returns the events it caused as bit flags; the times of the events can be read with the getters.
+ *
+ * The machine is not thread safe; it is driven by the controller thread only.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class LinkStateMachine {
+
+    /**
+     * The line is up.
+     */
+    public static final int UP = 0;
+
+    /**
+     * Checks failed but the outage is not confirmed yet.
+     */
+    public static final int SUSPECT_DOWN = 1;
+
+    /**
+     * The line is down.
+     */
+    public static final int DOWN = 2;
+
+    /**
+     * Checks succeeded but the recovery is not confirmed yet.
+     */
+    public static final int SUSPECT_UP = 3;
+
+    private static final String[] STATE_NAMES = {"UP", "SUSPECT_DOWN", "DOWN", "SUSPECT_UP"};
+
+    /**
+     * An outage is confirmed.
+     */
+    public static final int OUTAGE_STARTED = 1;
+
+    /**
+     * A recovery is confirmed.
+     */
+    public static final int OUTAGE_ENDED = 1 << 1;
+
+    /**
+     * The line started flapping.
+     */
+    public static final int FLAPPING_STARTED = 1 << 2;
+
+    /**
+     * The line is stable again; the flapping episode can be registered.
+     */
+    public static final int FLAPPING_ENDED = 1 << 3;
+
+    private final int confirmDown;
+    private final int confirmUp;
+    private final long flapWindow;
+    private final long flapQuiet;
+    private final long[] recentStarts;
+    private int recentCount = 0;
+    private int state = UP;
+    private int streak = 0;
+    private long firstOfStreak = 0L;
+    private long outageStart = 0L;
+    private long outageEnd = 0L;
+    private boolean flapping = false;
+    private long episodeStart = 0L;
+    private long episodeEnd = 0L;
+    private int subEvents = 0;
+
+    /**
+     * A state machine with the given thresholds.
+     *
+     * @param confirmDown the number of consecutive failed checks to confirm an outage
+     * @param confirmUp the number of consecutive successful checks to confirm a recovery
+     * @param flapThreshold the number of outages within the flap window that makes the line flapping
+     * @param flapWindow the flap window in milliseconds
+     * @param flapQuiet the time in milliseconds the line must be up to end a flapping episode
+     */
+    public LinkStateMachine(int confirmDown, int confirmUp, int flapThreshold, long flapWindow, long flapQuiet) {
+        if (confirmDown < 1 || confirmUp < 1 || flapThreshold < 2) {
+            throw new IllegalArgumentException("The confirm thresholds must be at least 1 and the flap threshold at least 2");
+        }
+        this.confirmDown = confirmDown;
+        this.confirmUp = confirmUp;
+        this.flapWindow = flapWindow;
+        this.flapQuiet = flapQuiet;
+        this.recentStarts = new long[flapThreshold];
+    }
+
+    /**
+     * Get the name of a state for machine readable output.
+     *
+     * @param state the state
+     * @return the name, for instance SUSPECT_DOWN, or UNKNOWN
+     */
+    public static String stateName(int state) {
+        return state >= 0 && state < STATE_NAMES.length ? STATE_NAMES[state] : "UNKNOWN";
+    }
+
+    /**
+     * @return a new state machine in the up state with the same thresholds
+     */
+    public LinkStateMachine reset() {
+        return new LinkStateMachine(confirmDown, confirmUp, recentStarts.length, flapWindow, flapQuiet);
+    }
+
+    /**
+     * Process the result of a connection check.
+     *
+     * @param success true if any host could be reached
+     * @param time the time of the check
+     * @return the events as a combination of OUTAGE_STARTED, OUTAGE_ENDED, FLAPPING_STARTED and FLAPPING_ENDED or 0 if nothing changed
+     */
+    public int onProbe(boolean success, long time) {
+        int events = 0;
+        switch (state) {
+            case UP:
+                if (success) {
+                    events |= checkQuiet(time);
+                } else {
+                    startStreak(time);
+                    state = SUSPECT_DOWN;
+                    events |= confirmDown();
+                }
+                break;
+            case SUSPECT_DOWN:
+                if (success) {
+                    state = UP;
+                    events |= checkQuiet(time);
+                } else {
+                    streak++;
+                    events |= confirmDown();
+                }
+                break;
+            case DOWN:
+                if (success) {
+                    startStreak(time);
+                    state = SUSPECT_UP;
+                    events |= confirmUp();
+                }
+                break;
+            default:
+                if (success) {
+                    streak++;
+                    events |= confirmUp();
+                } else {
+                    state = DOWN;
+                }
+        }
+        return events;
+    }
+
+    private void startStreak(long time) {
+        streak = 1;
+        firstOfStreak = time;
+    }
+
+    private int confirmDown() {
+        if (streak < confirmDown) {
+            return 0;
+        }
+        state = DOWN;
+        outageStart = firstOfStreak;
+        outageEnd = 0L;
+        int events = OUTAGE_STARTED;
+        if (flapping) {
+            subEvents++;
+        } else if (registerStart(outageStart)) {
+            flapping = true;
+            episodeStart = outageStart;
+            subEvents = 1;
+            events |= FLAPPING_STARTED;
+        }
+        return events;
+    }
+
+    private int confirmUp() {
+        if (streak < confirmUp) {
+            return 0;
+        }
+        state = UP;
+        outageEnd = firstOfStreak;
+        if (flapping) {
+            episodeEnd = outageEnd;
+        }
+        return OUTAGE_ENDED;
+    }
+
+    private int checkQuiet(long time) {
+        if (flapping && time - episodeEnd >= flapQuiet) {
+            flapping = false;
+            recentCount = 0;
+            return FLAPPING_ENDED;
+        }
+        return 0;
+    }
+
+    /**
+     * Remember the start of an outage.
+     *
+     * @return true if the oldest of the last flapThreshold outages started within the flap window
+     */
+    private boolean registerStart(long start) {
+        if (recentCount == recentStarts.length) {
+            System.arraycopy(recentStarts, 1, recentStarts, 0, recentCount - 1);
+            recentCount--;
+        }
+        recentStarts[recentCount++] = start;
+        return recentCount == recentStarts.length && start - recentStarts[0] <= flapWindow;
+    }
+
+    /**
+     * @return UP, SUSPECT_DOWN, DOWN or SUSPECT_UP
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return true if the line is up and no outage is suspected
+     */
+    public boolean isStable() {
+        return state == UP;
+    }
+
+    /**
+     * @return true while the line is flapping; the outages are coalesced into the episode
+     */
+    public boolean isFlapping() {
+        return flapping;
+    }
+
+    /**
+     * @return the start of the last confirmed outage
+     */
+    public long getOutageStart() {
+        return outageStart;
+    }
+
+    /**
+     * @return the end of the last confirmed outage or 0 if it is ongoing
+     */
+    public long getOutageEnd() {
+        return outageEnd;
+    }
+
+    /**
+     * @return the start of the current or last flapping episode
+     */
+    public long getEpisodeStart() {
+        return episodeStart;
+    }
+
+    /**
+     * @return the end of the last outage in the current or last flapping episode
+     */
+    public long getEpisodeEnd() {
+        return episodeEnd;
+    }
+
+    /**
+     * @return the number of outages in the current or last flapping episode
+     */
+    public int getSubEvents() {
+        return subEvents;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkStateMachine [state = " + state + ", flapping = " + flapping + ", subEvents = " + subEvents + "]";
+    }
+}
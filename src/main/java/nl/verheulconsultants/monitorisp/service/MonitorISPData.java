@@ -31,7 +31,6 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import static nl.verheulconsultants.monitorisp.service.ISPController.NOROUTERADDRESS;
 import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
 import org.apache.wicket.model.util.CollectionModel;
@@ -47,12 +46,16 @@ public class MonitorISPData implements Serializable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MonitorISPData.class);
     private static final long serialVersionUID = 1L;
-    private MonitorISPData dataRead;
+    private transient MonitorISPData dataRead;
+    private transient String profile;
+    private transient Clock clock;
 
     CollectionModel<Host> paletteModel;
     List<Host> selected;
     String routerAddress;
-    List<OutageListItem> outages;
+    // the outage list of previous versions, only read to convert it to the outage store
+    private List<OutageListItem> outages;
+    OutageStore history;
     long startOfService;
     long lastContactWithAnyHost;
     long lastFail;
@@ -60,23 +63,39 @@ public class MonitorISPData implements Serializable {
     long failedChecks;
     long successfulChecks;
     long timeStamp;
+    AvailabilityRollup rollup;
+    RuntimeConfig config;
 
     /**
-     * A DAO for saving and loading all session data in one go.
+     * A DAO for saving and loading all session data of a profile in one go.
      *
+     * @param profile the name of the profile
      */
-    MonitorISPData() {
+    MonitorISPData(String profile) {
+        this(profile, Clock.SYSTEM);
+    }
+
+    /**
+     * A DAO for saving and loading all session data of a profile in one go.
+     *
+     * @param profile the name of the profile
+     * @param clock the clock of the time stamps
+     */
+    MonitorISPData(String profile, Clock clock) {
+        this.profile = profile;
+        this.clock = clock;
         paletteModel = new CollectionModel<>();
         selected = new ArrayList<>();
         routerAddress = NOROUTERADDRESS;
-        outages = new CopyOnWriteArrayList<>();
-        startOfService = System.currentTimeMillis();
+        history = new OutageStore();
+        startOfService = clock.currentTimeMillis();
         lastContactWithAnyHost = 0L;
         lastFail = 0L;
         numberOfInterruptions = 0L;
         failedChecks = 0L;
         successfulChecks = 0L;
         timeStamp = 0L;
+        rollup = new AvailabilityRollup(startOfService, clock);
         LOGGER.info("MonitorISPData is initialized");
     }
 
@@ -86,7 +105,7 @@ public class MonitorISPData implements Serializable {
                 && !paletteModel.getObject().isEmpty()
                 && null != selected && !selected.isEmpty()
                 && null != routerAddress
-                && null != outages
+                && null != history
                 && startOfService > 0L
                 && timeStamp > 0L) {
             return true;
@@ -96,7 +115,7 @@ public class MonitorISPData implements Serializable {
                     paletteModel.getObject().size(),
                     selected,
                     routerAddress,
-                    outages,
+                    history,
                     startOfService,
                     timeStamp);
             return false;
@@ -109,7 +128,7 @@ public class MonitorISPData implements Serializable {
                 && !dataRead.paletteModel.getObject().isEmpty()
                 && !dataRead.selected.isEmpty()
                 && null != dataRead.routerAddress
-                && null != dataRead.outages
+                && (null != dataRead.history || null != dataRead.outages)
                 && dataRead.startOfService > 0L
                 && dataRead.timeStamp > 0L) {
             return true;
@@ -119,7 +138,7 @@ public class MonitorISPData implements Serializable {
                     dataRead.paletteModel.getObject().size(),
                     dataRead.selected,
                     dataRead.routerAddress,
-                    dataRead.outages,
+                    null != dataRead.history ? dataRead.history : dataRead.outages,
                     dataRead.startOfService,
                     dataRead.timeStamp);
             return false;
@@ -132,15 +151,23 @@ public class MonitorISPData implements Serializable {
      * @return true is successful
      */
     public boolean saveData() {
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        boolean saved = writeData();
+        event.record(profile, "save", getSessionDataFileName(profile), saved);
+        return saved;
+    }
+
+    private boolean writeData() {
         LOGGER.info("Save all data of the current session.");
-        timeStamp = System.currentTimeMillis();
+        timeStamp = clock.currentTimeMillis();
         if (allSet()) {
-            try (FileOutputStream fout = new FileOutputStream(getSessionDataFileName());
+            try (FileOutputStream fout = new FileOutputStream(getSessionDataFileName(profile));
                     ObjectOutputStream oos = new ObjectOutputStream(fout)) {
                 oos.writeObject(this);
                 return true;
             } catch (IOException ex) {
-                LOGGER.error("The application data can not be saved in file {}. The exception is {}", getSessionDataFileName(), ex);
+                LOGGER.error("The application data can not be saved in file {}. The exception is {}", getSessionDataFileName(profile), ex);
                 return false;
             }
         } else {
@@ -155,15 +182,29 @@ public class MonitorISPData implements Serializable {
      * @return true if data is read successful
      */
     public boolean loadData() {
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        boolean loaded = readData();
+        event.record(profile, "load", getSessionDataFileName(profile), loaded);
+        return loaded;
+    }
+
+    private boolean readData() {
         LOGGER.info("Read all data of the previous session.");
-        try (FileInputStream fin = new FileInputStream(getSessionDataFileName());
+        try (FileInputStream fin = new FileInputStream(getSessionDataFileName(profile));
                 ObjectInputStream ois = new ObjectInputStream(fin)) {
             dataRead = (MonitorISPData) ois.readObject();
             if (allRead()) {
                 this.paletteModel = dataRead.paletteModel;
                 this.selected = dataRead.selected;
                 this.routerAddress = dataRead.routerAddress;
-                this.outages = dataRead.outages;
+                if (null == dataRead.history) {
+                    // data of a version with an outage list; convert to columns
+                    this.history = OutageStore.of(dataRead.outages);
+                    LOGGER.info("The outage list of {} records is converted to the outage store.", history.size());
+                } else {
+                    this.history = dataRead.history;
+                }
                 this.startOfService = dataRead.startOfService;
                 this.lastContactWithAnyHost = dataRead.lastContactWithAnyHost;
                 this.lastFail = dataRead.lastFail;
@@ -171,13 +212,24 @@ public class MonitorISPData implements Serializable {
                 this.failedChecks = dataRead.failedChecks;
                 this.successfulChecks = dataRead.successfulChecks;
                 this.timeStamp = dataRead.timeStamp;
+                if (null == dataRead.rollup) {
+                    // data of a version without rollups; rebuild from the history
+                    this.rollup = AvailabilityRollup.rebuild(history, startOfService, lastContactWithAnyHost, clock);
+                    LOGGER.info("The availability rollup is rebuilt from {} outages.", history.size());
+                } else {
+                    this.rollup = dataRead.rollup;
+                    this.rollup.setClock(clock);
+                    // saved during an outage: it lasted at least until the save; a new session does not continue it
+                    this.rollup.closeStaleOutage(timeStamp);
+                }
+                this.config = dataRead.config;
                 return true;
             } else {
                 LOGGER.error("Not all expected data was read.");
                 return false;
             }
         } catch (IOException ex) {
-            LOGGER.error("An IO error occurred reading file {}. The exception is {}", getSessionDataFileName(), ex);
+            LOGGER.error("An IO error occurred reading file {}. The exception is {}", getSessionDataFileName(profile), ex);
             return false;
         } catch (ClassNotFoundException ex2) {
             LOGGER.error("Unexpected internal error with exception {}", ex2);
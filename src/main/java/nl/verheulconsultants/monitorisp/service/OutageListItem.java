@@ -26,6 +26,7 @@ package nl.verheulconsultants.monitorisp.service;
 import java.io.Serializable;
 import java.util.Date;
 import static nl.verheulconsultants.monitorisp.service.Utilities.CONTROLLERDOWN;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
 import static nl.verheulconsultants.monitorisp.service.Utilities.SERVICEDOWN;
 import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
 import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
@@ -44,13 +45,19 @@ public class OutageListItem implements Serializable {
     long outageEnd;
     long duration;
     int cause;
+    int interruptions;
 
     OutageListItem(int index, long start, long end, long duration, int cause) {
+        this(index, start, end, duration, cause, 1);
+    }
+
+    OutageListItem(int index, long start, long end, long duration, int cause, int interruptions) {
         this.index = index;
         this.outageStart = start;
         this.outageEnd = end;
         this.duration = duration;
         this.cause = cause;
+        this.interruptions = interruptions;
     }
 
     /**
@@ -98,6 +105,15 @@ public class OutageListItem implements Serializable {
         return cause;
     }
 
+    /**
+     * Return the number of interruptions in this outage; more than 1 for a flapping episode.
+     *
+     * @return the number of interruptions
+     */
+    public int getInterruptions() {
+        return Math.max(1, interruptions);
+    }
+
     /**
      * Return the cause type of an outage as string.
      *
@@ -112,7 +128,9 @@ public class OutageListItem implements Serializable {
             case SERVICEDOWN:
                 return "service was down";
             case CONTROLLERDOWN:
-                return "controller was stopped";
+                return "controller was stopped";
+            case FLAPPING:
+                return "flapping line, " + getInterruptions() + " interruptions";
             default:
                 return "unknown outage type";
         }
@@ -0,0 +1,454 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage of the outage history in growable primitive arrays, about 17 bytes per outage.
+ *
+ * Coalesced outages, like a flapping episode, carry the number of interruptions they contain. These counts are rare and kept in a separate sparse table that is
+ * sorted by outage index.
+ *
+ * There is a single writer: appends are serialized and amortized O(1). Readers never lock: a reader first reads the size and then the columns, so it always sees at
+ * least that many completely written outages, even when the arrays are grown concurrently.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutageStore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 64;
+    private transient volatile Columns columns;
+    private transient volatile int size;
+    private transient volatile SubEvents subEvents;
+    private transient volatile int subEventsSize;
+
+    /**
+     * An empty store.
+     */
+    public OutageStore() {
+        columns = new Columns(INITIAL_CAPACITY);
+        subEvents = new SubEvents(0);
+    }
+
+    /**
+     * Convert the outage list of a previous version.
+     *
+     * @param outages the outages in chronological order
+     * @return a new store with the same outages
+     */
+    static OutageStore of(List<OutageListItem> outages) {
+        OutageStore store = new OutageStore();
+        for (OutageListItem item : outages) {
+            store.append(item.outageStart, item.outageEnd, item.cause);
+        }
+        return store;
+    }
+
+    /**
+     * Append a closed outage.
+     *
+     * @param start the start of the outage
+     * @param end the end of the outage
+     * @param cause the cause of the outage
+     */
+    public void append(long start, long end, int cause) {
+        append(start, end, cause, 1);
+    }
+
+    /**
+     * Append a closed outage that coalesces a number of interruptions.
+     *
+     * @param start the start of the first interruption
+     * @param end the end of the last interruption
+     * @param cause the cause of the outage
+     * @param interruptions the number of interruptions
+     */
+    public synchronized void append(long start, long end, int cause, int interruptions) {
+        int n = size;
+        if (interruptions != 1) {
+            int m = subEventsSize;
+            SubEvents s = subEvents;
+            if (m == s.index.length) {
+                s = s.grow(Math.max(4, m * 2));
+                subEvents = s;
+            }
+            s.index[m] = n;
+            s.count[m] = interruptions;
+            subEventsSize = m + 1;
+        }
+        Columns c = columns;
+        if (n == c.start.length) {
+            c = c.grow(n + (n >> 1));
+            columns = c;
+        }
+        c.start[n] = start;
+        c.end[n] = end;
+        c.cause[n] = (byte) cause;
+        // publish the new outage
+        size = n + 1;
+    }
+
+    /**
+     * @return the number of outages
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The history only grows, so the number of outages identifies its version.
+     *
+     * @return a number that changes when an outage is added
+     */
+    public long getVersion() {
+        return size;
+    }
+
+    /**
+     * Find the first outage that starts at or after a time. The outages are appended in order of their start.
+     *
+     * @param time the time to search
+     * @return the index of the outage or size() if there is none
+     */
+    public int indexOf(long time) {
+        int n = size;
+        Columns c = columns;
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (c.start[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param i the index of the outage
+     * @return the start of the outage
+     */
+    public long getStart(int i) {
+        checkIndex(i);
+        return columns.start[i];
+    }
+
+    /**
+     * @param i the index of the outage
+     * @return the end of the outage
+     */
+    public long getEnd(int i) {
+        checkIndex(i);
+        return columns.end[i];
+    }
+
+    /**
+     * @param i the index of the outage
+     * @return the cause of the outage
+     */
+    public int getCause(int i) {
+        checkIndex(i);
+        return columns.cause[i];
+    }
+
+    /**
+     * @param i the index of the outage
+     * @return the number of interruptions coalesced in the outage, 1 for a plain outage
+     */
+    public int getInterruptions(int i) {
+        checkIndex(i);
+        int m = subEventsSize;
+        SubEvents s = subEvents;
+        int found = Arrays.binarySearch(s.index, 0, m, i);
+        return found >= 0 ? s.count[found] : 1;
+    }
+
+    /**
+     * @param i the index of the outage
+     * @return a new list item with the outage data
+     */
+    public OutageListItem get(int i) {
+        checkIndex(i);
+        Columns c = columns;
+        return new OutageListItem(i, c.start[i], c.end[i], c.end[i] - c.start[i], c.cause[i], getInterruptions(i));
+    }
+
+    /**
+     * @return the last outage or null if the store is empty
+     */
+    public OutageListItem getLast() {
+        int n = size;
+        return n == 0 ? null : get(n - 1);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+        }
+    }
+
+    /**
+     * Sum the durations of all outages with a given cause without creating objects.
+     *
+     * @param cause the outage cause
+     * @return the total duration in milliseconds
+     */
+    public long getTotalDuration(int cause) {
+        long sum = 0L;
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            if (cursor.getCause() == cause) {
+                sum += cursor.getDuration();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return a cursor over the outages present at this moment
+     */
+    public Cursor cursor() {
+        int n = size;
+        int m = subEventsSize;
+        return new Cursor(columns, n, subEvents, m);
+    }
+
+    /**
+     * A view for the UI that creates a list item only for the rows that are actually read.
+     *
+     * @return a read-only list backed by this store
+     */
+    public List<OutageListItem> asList() {
+        return new ListView();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Cursor cursor = cursor();
+        out.writeInt(cursor.limit);
+        while (cursor.next()) {
+            out.writeLong(cursor.getStart());
+            out.writeLong(cursor.getEnd());
+            out.writeByte(cursor.getCause());
+        }
+        int m = subEventsSize;
+        SubEvents s = subEvents;
+        int written = 0;
+        while (written < m && s.index[written] < cursor.limit) {
+            written++;
+        }
+        out.writeInt(written);
+        for (int i = 0; i < written; i++) {
+            out.writeInt(s.index[i]);
+            out.writeInt(s.count[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        Columns c = new Columns(Math.max(INITIAL_CAPACITY, n));
+        for (int i = 0; i < n; i++) {
+            c.start[i] = in.readLong();
+            c.end[i] = in.readLong();
+            c.cause[i] = in.readByte();
+        }
+        int m = in.readInt();
+        SubEvents s = new SubEvents(m);
+        for (int i = 0; i < m; i++) {
+            s.index[i] = in.readInt();
+            s.count[i] = in.readInt();
+        }
+        subEvents = s;
+        subEventsSize = m;
+        columns = c;
+        size = n;
+    }
+
+    @Override
+    public String toString() {
+        return "OutageStore [size = " + size + "]";
+    }
+
+    private static final class Columns {
+
+        final long[] start;
+        final long[] end;
+        final byte[] cause;
+
+        Columns(int capacity) {
+            start = new long[capacity];
+            end = new long[capacity];
+            cause = new byte[capacity];
+        }
+
+        private Columns(long[] start, long[] end, byte[] cause) {
+            this.start = start;
+            this.end = end;
+            this.cause = cause;
+        }
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(start, capacity), Arrays.copyOf(end, capacity), Arrays.copyOf(cause, capacity));
+        }
+    }
+
+    private static final class SubEvents {
+
+        final int[] index;
+        final int[] count;
+
+        SubEvents(int capacity) {
+            index = new int[capacity];
+            count = new int[capacity];
+        }
+
+        private SubEvents(int[] index, int[] count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        SubEvents grow(int capacity) {
+            return new SubEvents(Arrays.copyOf(index, capacity), Arrays.copyOf(count, capacity));
+        }
+    }
+
+    /**
+     * A flyweight to walk the outages in chronological order without creating an object per outage.
+     */
+    public static final class Cursor {
+
+        private final Columns columns;
+        private final int limit;
+        private final SubEvents subEvents;
+        private final int subEventsLimit;
+        private int index = -1;
+
+        private Cursor(Columns columns, int limit, SubEvents subEvents, int subEventsLimit) {
+            this.columns = columns;
+            this.limit = limit;
+            this.subEvents = subEvents;
+            this.subEventsLimit = subEventsLimit;
+        }
+
+        /**
+         * Move to the next outage.
+         *
+         * @return false if there are no more outages
+         */
+        public boolean next() {
+            if (index + 1 < limit) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Move to an outage.
+         *
+         * @param i the index of the outage
+         */
+        public void moveTo(int i) {
+            if (i < 0 || i >= limit) {
+                throw new IndexOutOfBoundsException("Index " + i + ", limit " + limit);
+            }
+            index = i;
+        }
+
+        /**
+         * @return the number of outages this cursor can visit
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * @return the index of the current outage
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the start of the current outage
+         */
+        public long getStart() {
+            return columns.start[index];
+        }
+
+        /**
+         * @return the end of the current outage
+         */
+        public long getEnd() {
+            return columns.end[index];
+        }
+
+        /**
+         * @return the duration of the current outage
+         */
+        public long getDuration() {
+            return columns.end[index] - columns.start[index];
+        }
+
+        /**
+         * @return the cause of the current outage
+         */
+        public int getCause() {
+            return columns.cause[index];
+        }
+
+        /**
+         * @return the number of interruptions coalesced in the current outage
+         */
+        public int getInterruptions() {
+            int found = Arrays.binarySearch(subEvents.index, 0, subEventsLimit, index);
+            return found >= 0 ? subEvents.count[found] : 1;
+        }
+    }
+
+    private final class ListView extends AbstractList<OutageListItem> implements RandomAccess {
+
+        @Override
+        public OutageListItem get(int i) {
+            return OutageStore.this.get(i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
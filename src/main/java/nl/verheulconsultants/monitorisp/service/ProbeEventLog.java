@@ -0,0 +1,276 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import static nl.verheulconsultants.monitorisp.service.Utilities.appendJsonString;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getProbeEventLogFileName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A structured log of the probes as NDJSON, written by a thread of its own. A probe only compares its result with the previous one of the host.
+ *
+ * A line is written when the result of a host changes: it connects after failing, fails after connecting or fails for another reason. The
+ * identical results in between are counted and summarized in one line, so the size of the log follows the state changes and not the number of
+ * probes:
+ * <pre>
+ * {"time":"2021-06-01T12:00:05Z","profile":"default","host":"uva.nl","event":"fail","error":"ConnectException: Connection refused","rttMicros":1200}
+ * {"time":"2021-06-01T12:09:55Z","profile":"default","host":"uva.nl","event":"repeated","times":118,"until":"2021-06-01T12:09:50Z"}
+ * {"time":"2021-06-01T12:09:55Z","profile":"default","host":"uva.nl","event":"ok","rttMicros":9800}
+ * </pre>
+ * When the queue is full a line is dropped and the number of dropped lines is written later. The file is rotated at 10 MB, keeping one backup.
+ * The writer thread is started by the first line and stopped by close, after it has written the lines queued before.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProbeEventLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProbeEventLog.class);
+    static final int QUEUE_CAPACITY = 4_096;
+    static final long MAX_FILE_SIZE = 10L * 1024 * 1024;
+    static final long CLOSE_TIMEOUT = 5_000L;
+    // queued by close to stop the writer after the lines before it
+    private static final Line END = new Line(0L, null, null, 0L);
+    private final String profile;
+    private final Path file;
+    private final BlockingQueue<Line> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    // the last result per host, only used by the controller thread
+    private final Map<String, HostState> hosts = new HashMap<>();
+    private Thread writer;
+
+    /**
+     * The log of a profile in its file in the application directory.
+     *
+     * @param profile the name of the profile
+     */
+    public ProbeEventLog(String profile) {
+        this(profile, null);
+    }
+
+    /**
+     * @param profile the name of the profile
+     * @param file the file to write to, or null for the file of the profile in the application directory
+     */
+    ProbeEventLog(String profile, Path file) {
+        this.profile = profile;
+        this.file = file;
+    }
+
+    /**
+     * Record a probe. To be called by the controller thread only.
+     *
+     * @param time the time of the probe
+     * @param host the host that was probed
+     * @param error the reason the connection failed or null if it succeeded
+     * @param rttMicros the time to connect or to fail in microseconds
+     */
+    public void record(long time, String host, String error, long rttMicros) {
+        HostState state = hosts.get(host);
+        if (state != null && (error == null ? state.error == null : error.equals(state.error))) {
+            state.repeats++;
+            state.last = time;
+            return;
+        }
+        if (state != null && state.repeats > 0) {
+            enqueue(new Line(time, host, state));
+        }
+        enqueue(new Line(time, host, error, rttMicros));
+        hosts.put(host, new HostState(error, time));
+    }
+
+    /**
+     * Summarize the repeated results of every host, for instance when the checks stop. To be called by the controller thread only.
+     *
+     * @param time the time of the summary
+     */
+    public void summarize(long time) {
+        for (Map.Entry<String, HostState> e : hosts.entrySet()) {
+            if (e.getValue().repeats > 0) {
+                enqueue(new Line(time, e.getKey(), e.getValue()));
+            }
+        }
+        hosts.clear();
+    }
+
+    /**
+     * Write the lines that are queued and stop the writer thread. A line recorded later, after a restart of the checks, starts a new writer.
+     * To be called by the controller thread only.
+     */
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            // waits while the queue is full; the writer is emptying it
+            queue.put(END);
+            writer.join(CLOSE_TIMEOUT);
+            if (writer.isAlive()) {
+                LOGGER.warn("The probe events of profile {} are not written within {} ms", profile, CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    private void enqueue(Line line) {
+        if (!queue.offer(line)) {
+            dropped.incrementAndGet();
+        }
+        synchronized (this) {
+            if (writer == null) {
+                writer = new Thread(this::write, "monitorisp-probe-events-" + profile);
+                writer.setDaemon(true);
+                writer.start();
+            }
+        }
+    }
+
+    private void write() {
+        List<Line> batch = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        try {
+            boolean end = false;
+            while (!end) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                sb.setLength(0);
+                for (Line line : batch) {
+                    if (line == END) {
+                        end = true;
+                    } else {
+                        line.appendTo(sb, profile);
+                    }
+                }
+                long lost = dropped.getAndSet(0L);
+                if (lost > 0L) {
+                    appendHead(sb, System.currentTimeMillis(), profile, null, "dropped").append(",\"lines\":").append(lost).append("}\n");
+                }
+                batch.clear();
+                if (sb.length() > 0) {
+                    writeText(sb);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeText(CharSequence text) {
+        Path path = file != null ? file : Paths.get(getProbeEventLogFileName(profile));
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            if (Files.exists(path) && Files.size(path) > MAX_FILE_SIZE) {
+                Files.move(path, path.resolveSibling(path.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.append(text);
+            }
+        } catch (IOException ex) {
+            LOGGER.error("The probe events cannot be written to {}", path, ex);
+        }
+    }
+
+    private static StringBuilder appendHead(StringBuilder sb, long time, String profile, String host, String event) {
+        sb.append("{\"time\":\"").append(Instant.ofEpochMilli(time)).append("\",\"profile\":");
+        appendJsonString(sb, profile);
+        if (host != null) {
+            appendJsonString(sb.append(",\"host\":"), host);
+        }
+        return sb.append(",\"event\":\"").append(event).append('"');
+    }
+
+    private static final class HostState {
+
+        final String error;
+        long repeats;
+        long last;
+
+        HostState(String error, long time) {
+            this.error = error;
+            this.last = time;
+        }
+    }
+
+    private static final class Line {
+
+        final long time;
+        final String host;
+        final String error;
+        final long rttMicros;
+        // the number of repeated results summarized and the time of the last one, or 0 if this is a probe
+        final long repeats;
+        final long until;
+
+        Line(long time, String host, String error, long rttMicros) {
+            this.time = time;
+            this.host = host;
+            this.error = error;
+            this.rttMicros = rttMicros;
+            this.repeats = 0L;
+            this.until = 0L;
+        }
+
+        Line(long time, String host, HostState state) {
+            this.time = time;
+            this.host = host;
+            this.error = state.error;
+            this.rttMicros = 0L;
+            this.repeats = state.repeats;
+            this.until = state.last;
+        }
+
+        void appendTo(StringBuilder sb, String profile) {
+            if (repeats > 0L) {
+                appendHead(sb, time, profile, host, "repeated").append(",\"times\":").append(repeats);
+                sb.append(",\"until\":\"").append(Instant.ofEpochMilli(until)).append("\"}\n");
+                return;
+            }
+            appendHead(sb, time, profile, host, error == null ? "ok" : "fail");
+            if (error != null) {
+                appendJsonString(sb.append(",\"error\":"), error);
+            }
+            sb.append(",\"rttMicros\":").append(rttMicros).append("}\n");
+        }
+    }
+}
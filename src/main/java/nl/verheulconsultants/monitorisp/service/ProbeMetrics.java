@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The timing telemetry of the controller: the duration of every probe per host, of every probe cycle and of saving the session data, and how
+ * late the probe cycles start.
+ *
+ * The metrics are kept in memory only and restart with the application.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProbeMetrics {
+
+    private final String labels;
+    private final Map<String, String> probeLabels = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> probeDurations = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> probeDurationsView = Collections.unmodifiableMap(probeDurations);
+    private final LatencyHistogram cycleDuration = new LatencyHistogram();
+    private final LatencyHistogram saveDuration = new LatencyHistogram();
+    private final LatencyHistogram startLag = new LatencyHistogram();
+    private final LatencyHistogram intervalDrift = new LatencyHistogram();
+    private long probeGaps;
+    private long probeGapMillis;
+    private long lastProbeGap;
+
+    /**
+     * The metrics of a profile.
+     *
+     * @param profile the name of the profile, a valid label value
+     */
+    public ProbeMetrics(String profile) {
+        labels = "profile=\"" + profile + "\"";
+    }
+
+    /**
+     * Record the duration of a probe.
+     *
+     * @param host the host probed
+     * @param micros the time to connect or to fail in microseconds
+     */
+    public void recordProbe(String host, long micros) {
+        LatencyHistogram histogram = probeDurations.get(host);
+        if (histogram == null) {
+            probeLabels.computeIfAbsent(host, h -> labels + ",host=\"" + h + "\"");
+            histogram = probeDurations.computeIfAbsent(host, h -> new LatencyHistogram());
+        }
+        histogram.record(micros);
+    }
+
+    /**
+     * @return the Prometheus labels of the profile, formatted once
+     */
+    public String getLabels() {
+        return labels;
+    }
+
+    /**
+     * @param host a host that was probed
+     * @return the Prometheus labels of the profile and the host, formatted once
+     */
+    public String getProbeLabels(String host) {
+        return probeLabels.get(host);
+    }
+
+    /**
+     * @return the probe durations per host
+     */
+    public Map<String, LatencyHistogram> getProbeDurations() {
+        return probeDurationsView;
+    }
+
+    /**
+     * @return the durations of the probe cycles, from the first probe until a host answered or all hosts failed
+     */
+    public LatencyHistogram getCycleDuration() {
+        return cycleDuration;
+    }
+
+    /**
+     * @return the durations of saving the session data
+     */
+    public LatencyHistogram getSaveDuration() {
+        return saveDuration;
+    }
+
+    /**
+     * @return the time from the intended start of a probe cycle until it started
+     */
+    public LatencyHistogram getStartLag() {
+        return startLag;
+    }
+
+    /**
+     * @return the time the interval between the starts of two probe cycles was longer than the check interval
+     */
+    public LatencyHistogram getIntervalDrift() {
+        return intervalDrift;
+    }
+
+    /**
+     * Record a probe gap: the probe cycles stalled and the connection was not checked for a while.
+     *
+     * @param start the intended start of the late probe cycle
+     * @param millis the time the probe cycle started late
+     */
+    public synchronized void recordProbeGap(long start, long millis) {
+        probeGaps++;
+        probeGapMillis += millis;
+        lastProbeGap = start;
+    }
+
+    /**
+     * @return the number of probe gaps
+     */
+    public synchronized long getProbeGaps() {
+        return probeGaps;
+    }
+
+    /**
+     * @return the total time of the probe gaps in milliseconds
+     */
+    public synchronized long getProbeGapMillis() {
+        return probeGapMillis;
+    }
+
+    /**
+     * @return the start of the last probe gap or 0 if there was none
+     */
+    public synchronized long getLastProbeGap() {
+        return lastProbeGap;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A fixed-size ring buffer with the most recent connection checks (probes) in primitive columns, about 15 bytes per probe.
+ *
+ * The probe samples are not saved with the session data. There is a single writer, the controller thread. Readers do not lock; a reader validates after reading
+ * a sample that the writer did not reach its slot in the meantime. The oldest slot is never read as it may be being overwritten.
+ *
+ * The validation relies on two orderings. The writer publishes sample n with a volatile write of the count and fences before it stores sample n + 1, so the
+ * stores into a slot can not be seen before the publication of the previous sample. The reader fences after reading a sample and before reading the count.
+ * A count that still shows the slot of the sample as valid was therefore read before any store of the sample that overwrites it could be seen.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProbeSampleLog {
+
+    /**
+     * The default number of probes kept: about a week of probes at the normal check interval.
+     */
+    public static final int DEFAULT_CAPACITY = 131_072;
+    private final long[] time;
+    private final int[] rttMicros;
+    private final short[] host;
+    private final byte[] success;
+    private final Map<String, Short> hostIndex = new HashMap<>();
+    private volatile String[] hostNames = new String[0];
+    private volatile long written = 0L;
+
+    /**
+     * A log with the default capacity.
+     */
+    public ProbeSampleLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * A log with a given capacity.
+     *
+     * @param capacity the number of probes kept
+     */
+    public ProbeSampleLog(int capacity) {
+        time = new long[capacity];
+        rttMicros = new int[capacity];
+        host = new short[capacity];
+        success = new byte[capacity];
+    }
+
+    /**
+     * Add a probe. To be called by the controller thread only.
+     *
+     * @param timestamp the time of the probe
+     * @param hostName the host that was probed
+     * @param rtt the time to connect or to fail in microseconds
+     * @param ok true if the connection succeeded
+     */
+    public void add(long timestamp, String hostName, long rtt, boolean ok) {
+        long n = written;
+        // the stores into the slot must not be seen before the publication of the previous sample
+        VarHandle.storeStoreFence();
+        int slot = (int) (n % time.length);
+        time[slot] = timestamp;
+        rttMicros[slot] = (int) Math.min(Integer.MAX_VALUE, rtt);
+        host[slot] = indexOf(hostName);
+        success[slot] = ok ? (byte) 1 : (byte) 0;
+        // publish the sample
+        written = n + 1;
+    }
+
+    private short indexOf(String hostName) {
+        Short index = hostIndex.get(hostName);
+        if (null == index) {
+            String[] names = hostNames;
+            if (names.length == Short.MAX_VALUE) {
+                return (short) (names.length - 1);
+            }
+            index = (short) names.length;
+            hostIndex.put(hostName, index);
+            String[] grown = Arrays.copyOf(names, names.length + 1);
+            grown[index] = hostName;
+            hostNames = grown;
+        }
+        return index;
+    }
+
+    /**
+     * @return the total number of probes added, including those overwritten
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return the number of probes kept
+     */
+    public int getCapacity() {
+        return time.length;
+    }
+
+    /**
+     * @return a reader positioned before the oldest probe still kept
+     */
+    public Reader reader() {
+        long end = written;
+        return new Reader(oldestValid(end), end);
+    }
+
+    private long oldestValid(long n) {
+        return Math.max(0L, n - time.length + 1);
+    }
+
+    /**
+     * A flyweight that walks the probes present at its creation from old to new.
+     */
+    public final class Reader {
+
+        private long sequence;
+        private final long end;
+        private long sampleTime;
+        private int sampleRtt;
+        private short sampleHost;
+        private boolean sampleSuccess;
+
+        private Reader(long start, long end) {
+            this.sequence = start - 1;
+            this.end = end;
+        }
+
+        /**
+         * Move to the next probe. Probes that are overwritten while reading are skipped.
+         *
+         * @return false if there are no more probes
+         */
+        public boolean next() {
+            while (++sequence < end) {
+                int slot = (int) (sequence % time.length);
+                sampleTime = time[slot];
+                sampleRtt = rttMicros[slot];
+                sampleHost = host[slot];
+                sampleSuccess = success[slot] == 1;
+                // the sample must be read before the validation
+                VarHandle.acquireFence();
+                long oldest = oldestValid(written);
+                if (sequence >= oldest) {
+                    return true;
+                }
+                // overwritten by the writer, jump to the oldest probe kept
+                sequence = oldest - 1;
+            }
+            return false;
+        }
+
+        /**
+         * @return the sequence number of the probe
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the time of the probe
+         */
+        public long getTime() {
+            return sampleTime;
+        }
+
+        /**
+         * @return the time to connect or to fail in microseconds
+         */
+        public int getRttMicros() {
+            return sampleRtt;
+        }
+
+        /**
+         * @return the host that was probed
+         */
+        public String getHost() {
+            return hostNames[sampleHost];
+        }
+
+        /**
+         * @return true if the connection succeeded
+         */
+        public boolean isSuccess() {
+            return sampleSuccess;
+        }
+    }
+}
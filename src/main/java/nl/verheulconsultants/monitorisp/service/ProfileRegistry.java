@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The monitoring profiles of the application. Every profile has a controller with its own hosts, router, history and counters.
+ *
+ * The controllers share one scheduler. The tasks of a controller never run concurrently, the probes of different profiles can. A probe blocks
+ * its thread while connecting and pausing between hosts, so the scheduler has a thread per profile, up to MAX_SCHEDULER_THREADS; otherwise the
+ * failing hosts of a few profiles would delay the cycles of all others. The default profile always exists and stores its session data where
+ * previous versions did.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProfileRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileRegistry.class);
+    /**
+     * The profile of previous versions and of the home page.
+     */
+    public static final String DEFAULT_PROFILE = "default";
+    static final int MAX_SCHEDULER_THREADS = 128;
+    // the other profiles keep a shorter probe log
+    static final int PROFILE_PROBE_LOG_CAPACITY = 16_384;
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+    private final Map<String, ISPController> controllers = new ConcurrentSkipListMap<>();
+    private final Collection<ISPController> controllersView = Collections.unmodifiableCollection(controllers.values());
+    private final Object schedulerLock = new Object();
+    private ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * The registry with the default profile.
+     */
+    public ProfileRegistry() {
+        controllers.put(DEFAULT_PROFILE, new ISPController(DEFAULT_PROFILE, this::getScheduler, ProbeSampleLog.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * A profile name is used in URLs, file names and metric labels.
+     *
+     * @param name the name
+     * @return true if the name has 1 to 32 letters, digits, '-' or '_'
+     */
+    public static boolean isValidName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    /**
+     * @return the controller of the default profile
+     */
+    public ISPController getDefault() {
+        return controllers.get(DEFAULT_PROFILE);
+    }
+
+    /**
+     * @param name the name of the profile
+     * @return the controller of the profile or null if there is no such profile
+     */
+    public ISPController get(String name) {
+        return name == null ? null : controllers.get(name);
+    }
+
+    /**
+     * Create a profile if it does not exist yet. The controller is not started.
+     *
+     * @param name the name of the profile
+     * @return the controller of the profile
+     * @throws IllegalArgumentException if the name is not valid
+     */
+    public ISPController create(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid profile name " + name);
+        }
+        ISPController controller = controllers.computeIfAbsent(name, n -> {
+            LOGGER.info("Profile {} is created.", n);
+            return new ISPController(n, this::getScheduler, PROFILE_PROBE_LOG_CAPACITY);
+        });
+        synchronized (schedulerLock) {
+            if (scheduler != null) {
+                scheduler.setCorePoolSize(getSchedulerThreads());
+            }
+        }
+        return controller;
+    }
+
+    /**
+     * @return the number of threads of the scheduler: one per profile, up to the maximum
+     */
+    int getSchedulerThreads() {
+        return Math.min(controllers.size(), MAX_SCHEDULER_THREADS);
+    }
+
+    /**
+     * @return the controllers of all profiles, ordered by name
+     */
+    public Collection<ISPController> getAll() {
+        return controllersView;
+    }
+
+    /**
+     * @return the names of all profiles, ordered
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(controllers.keySet());
+    }
+
+    /**
+     * Exit all controllers and stop the shared scheduler. A controller started later gets a new scheduler.
+     *
+     * @param timeout the maximum time to wait for every controller in milliseconds
+     */
+    public void shutdown(long timeout) {
+        for (ISPController controller : controllers.values()) {
+            controller.exitService();
+        }
+        for (ISPController controller : controllers.values()) {
+            if (!controller.awaitTermination(timeout)) {
+                LOGGER.warn("The controller of profile {} did not exit.", controller.getProfile());
+            }
+        }
+        synchronized (schedulerLock) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+    }
+
+    /**
+     * The scheduler is created at the first start of any controller.
+     */
+    ScheduledExecutorService getScheduler() {
+        synchronized (schedulerLock) {
+            if (scheduler == null) {
+                AtomicInteger count = new AtomicInteger();
+                ThreadFactory factory = r -> {
+                    Thread t = new Thread(r, "monitorisp-controller-" + count.incrementAndGet());
+                    // do not keep the JVM alive if the application is not stopped properly
+                    t.setDaemon(true);
+                    return t;
+                };
+                scheduler = new ScheduledThreadPoolExecutor(getSchedulerThreads(), factory);
+            }
+            return scheduler;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static nl.verheulconsultants.monitorisp.service.ISPController.NOROUTERADDRESS;
+import static nl.verheulconsultants.monitorisp.service.Utilities.isValidHostAddress;
+
+/**
+ * The settings of the controller that can be changed while it is running: the intervals, the time-outs, the port, the router and the hosts to check.
+ *
+ * A configuration is never changed; a change makes a new configuration with a higher version. The controller takes the configuration at the start
+ * of every probe cycle, so a change applies from the next cycle without interrupting the checks.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public final class RuntimeConfig implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    public static final String CHECK_INTERVAL = "checkInterval";
+    public static final String RECHECK_DELAY = "recheckDelay";
+    public static final String PROBE_TIMEOUT = "probeTimeout";
+    public static final String HOST_PAUSE = "hostPause";
+    public static final String ROUTER_TIMEOUT = "routerTimeout";
+    public static final String PORT = "port";
+    public static final String ROUTER_ADDRESS = "routerAddress";
+    public static final String HOSTS = "hosts";
+    static final int MIN_MILLIS = 100;
+    static final int MAX_MILLIS = 3_600_000;
+    /**
+     * The settings of previous versions.
+     */
+    public static final RuntimeConfig DEFAULT = new RuntimeConfig();
+    private long version = 0L;
+    private int checkInterval = ISPController.TIMEOUT_5_SEC;
+    private int recheckDelay = ISPController.RECHECK_DELAY;
+    private int probeTimeout = ISPController.TIMEOUT_900_MIL;
+    private int hostPause = ISPController.TIMEOUT_ONE_SEC;
+    private int routerTimeout = ISPController.TIMEOUT_ONE_SEC;
+    private int port = ISPController.PORT;
+    private String routerAddress = NOROUTERADDRESS;
+    private List<String> hosts = List.of();
+
+    private RuntimeConfig() {
+    }
+
+    private RuntimeConfig copy(long newVersion) {
+        RuntimeConfig c = new RuntimeConfig();
+        c.version = newVersion;
+        c.checkInterval = checkInterval;
+        c.recheckDelay = recheckDelay;
+        c.probeTimeout = probeTimeout;
+        c.hostPause = hostPause;
+        c.routerTimeout = routerTimeout;
+        c.port = port;
+        c.routerAddress = routerAddress;
+        c.hosts = hosts;
+        return c;
+    }
+
+    /**
+     * Make a configuration with changed settings, as entered by a user. Settings that are not in the changes keep their value.
+     *
+     * @param changes the new values by name, the hosts comma separated
+     * @param newVersion the version of the new configuration
+     * @return the new configuration
+     * @throws IllegalArgumentException if a name is unknown or a value is not valid
+     */
+    public RuntimeConfig with(Map<String, String> changes, long newVersion) {
+        RuntimeConfig c = copy(newVersion);
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String value = e.getValue().trim();
+            switch (e.getKey()) {
+                case CHECK_INTERVAL:
+                    c.checkInterval = parseMillis(e.getKey(), value);
+                    break;
+                case RECHECK_DELAY:
+                    c.recheckDelay = parseMillis(e.getKey(), value);
+                    break;
+                case PROBE_TIMEOUT:
+                    c.probeTimeout = parseMillis(e.getKey(), value);
+                    break;
+                case HOST_PAUSE:
+                    c.hostPause = parseMillis(e.getKey(), value);
+                    break;
+                case ROUTER_TIMEOUT:
+                    c.routerTimeout = parseMillis(e.getKey(), value);
+                    break;
+                case PORT:
+                    c.port = parseInt(e.getKey(), value, 1, 65_535);
+                    break;
+                case ROUTER_ADDRESS:
+                    if (!NOROUTERADDRESS.equals(value) && !isValidHostAddress(value)) {
+                        throw new IllegalArgumentException("Invalid router address " + value);
+                    }
+                    c.routerAddress = value;
+                    break;
+                case HOSTS:
+                    List<String> list = new ArrayList<>();
+                    for (String host : value.split(",", -1)) {
+                        if (!isValidHostAddress(host.trim())) {
+                            throw new IllegalArgumentException("Invalid host " + host);
+                        }
+                        list.add(host.trim());
+                    }
+                    c.hosts = List.copyOf(list);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting " + e.getKey());
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @param newHosts the hosts to check
+     * @param newVersion the version of the new configuration
+     * @return a configuration with other hosts
+     */
+    RuntimeConfig withHosts(List<String> newHosts, long newVersion) {
+        RuntimeConfig c = copy(newVersion);
+        c.hosts = List.copyOf(newHosts);
+        return c;
+    }
+
+    /**
+     * @param address the router address, not checked
+     * @param newVersion the version of the new configuration
+     * @return a configuration with another router address
+     */
+    RuntimeConfig withRouterAddress(String address, long newVersion) {
+        RuntimeConfig c = copy(newVersion);
+        c.routerAddress = address;
+        return c;
+    }
+
+    private static int parseMillis(String name, String value) {
+        return parseInt(name, value, MIN_MILLIS, MAX_MILLIS);
+    }
+
+    private static int parseInt(String name, String value, int min, int max) {
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number " + value + " for " + name, ex);
+        }
+        if (n < min || n > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+        }
+        return n;
+    }
+
+    /**
+     * @return the settings by name, in the form accepted by with
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put(CHECK_INTERVAL, Integer.toString(checkInterval));
+        map.put(RECHECK_DELAY, Integer.toString(recheckDelay));
+        map.put(PROBE_TIMEOUT, Integer.toString(probeTimeout));
+        map.put(HOST_PAUSE, Integer.toString(hostPause));
+        map.put(ROUTER_TIMEOUT, Integer.toString(routerTimeout));
+        map.put(PORT, Integer.toString(port));
+        map.put(ROUTER_ADDRESS, routerAddress);
+        map.put(HOSTS, String.join(",", hosts));
+        return map;
+    }
+
+    /**
+     * @return the version, higher for a newer configuration
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the time between two probe cycles in milliseconds
+     */
+    public int getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * @return the time between two probe cycles while an outage or a recovery is not confirmed yet, in milliseconds
+     */
+    public int getRecheckDelay() {
+        return recheckDelay;
+    }
+
+    /**
+     * @return the connect time-out of a host in milliseconds
+     */
+    public int getProbeTimeout() {
+        return probeTimeout;
+    }
+
+    /**
+     * @return the wait before the next host after a host failed, in milliseconds
+     */
+    public int getHostPause() {
+        return hostPause;
+    }
+
+    /**
+     * @return the connect time-out of the router in milliseconds
+     */
+    public int getRouterTimeout() {
+        return routerTimeout;
+    }
+
+    /**
+     * @return the port to connect to
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the router address or "unknown"
+     */
+    public String getRouterAddress() {
+        return routerAddress;
+    }
+
+    /**
+     * @return the hosts to check, a read-only list
+     */
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    @Override
+    public String toString() {
+        return "version " + version + " " + toMap();
+    }
+}
@@ -34,6 +34,15 @@ public class StatusListItem {
     String value;
     int index;
 
+    StatusListItem() {
+    }
+
+    StatusListItem(int index, String name, String value) {
+        this.index = index;
+        this.name = name;
+        this.value = value;
+    }
+
     /**
      *
      * @return the name of the status value
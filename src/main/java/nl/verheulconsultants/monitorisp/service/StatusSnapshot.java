@@ -0,0 +1,210 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.util.List;
+
+/**
+ * The status of the monitor at one moment, formatted once and shared by all pages and interfaces.
+ *
+ * The controller creates a new snapshot after every connection check and on every change of state; a snapshot is never
+ * changed after it is published.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public final class StatusSnapshot {
+
+    long version;
+    long timeStamp;
+    long startOfService;
+    long lastContactWithAnyHost;
+    long lastFail;
+    long numberOfInterruptions;
+    long failedChecks;
+    long successfulChecks;
+    long currentISPUnavailability;
+    long totalISPUnavailability;
+    long[] unavailability;
+    double availabilityThisMonth;
+    boolean busyCheckingConnections;
+    boolean canReachISP;
+    int outages;
+    long probeGaps;
+    long lastProbeGap;
+    long cycles;
+    long cycleMicros;
+    long probeSamples;
+    List<StatusListItem> items;
+
+    StatusSnapshot() {
+    }
+
+    /**
+     * @return the sequence number of this snapshot, higher for a newer snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the time this snapshot was taken
+     */
+    public long getTimeStamp() {
+        return timeStamp;
+    }
+
+    /**
+     * @return the time the service was started
+     */
+    public long getStartOfService() {
+        return startOfService;
+    }
+
+    /**
+     * @return the time of the last successful check
+     */
+    public long getLastContactWithAnyHost() {
+        return lastContactWithAnyHost;
+    }
+
+    /**
+     * @return the time of the last failed check or 0 if none failed
+     */
+    public long getLastFail() {
+        return lastFail;
+    }
+
+    /**
+     * @return the number of outages detected
+     */
+    public long getNumberOfInterruptions() {
+        return numberOfInterruptions;
+    }
+
+    /**
+     * @return the number of failed connection checks
+     */
+    public long getFailedChecks() {
+        return failedChecks;
+    }
+
+    /**
+     * @return the number of successful connection checks
+     */
+    public long getSuccessfulChecks() {
+        return successfulChecks;
+    }
+
+    /**
+     * @return the duration of the ongoing outage in milliseconds or 0
+     */
+    public long getCurrentISPUnavailability() {
+        return currentISPUnavailability;
+    }
+
+    /**
+     * @return the total ISP unavailability in milliseconds
+     */
+    public long getTotalISPUnavailability() {
+        return totalISPUnavailability;
+    }
+
+    /**
+     * @param cause the outage cause
+     * @return the total unavailability with this cause since the start of the service in milliseconds, including an ongoing outage
+     */
+    public long getUnavailability(int cause) {
+        return cause >= 0 && cause < unavailability.length ? unavailability[cause] : 0L;
+    }
+
+    /**
+     * @return the ISP availability this month in percent
+     */
+    public double getAvailabilityThisMonth() {
+        return availabilityThisMonth;
+    }
+
+    /**
+     * @return true if the controller is checking connections
+     */
+    public boolean isBusyCheckingConnections() {
+        return busyCheckingConnections;
+    }
+
+    /**
+     * @return true if the ISP could be reached at the last check
+     */
+    public boolean isCanReachISP() {
+        return canReachISP;
+    }
+
+    /**
+     * @return the number of outages in the history
+     */
+    public int getOutages() {
+        return outages;
+    }
+
+    /**
+     * @return the number of times the probe cycles stalled and the connection was not checked for a while
+     */
+    public long getProbeGaps() {
+        return probeGaps;
+    }
+
+    /**
+     * @return the start of the last probe gap or 0 if there was none
+     */
+    public long getLastProbeGap() {
+        return lastProbeGap;
+    }
+
+    /**
+     * @return the number of probe cycles since the start of the application
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return the total duration of these probe cycles in microseconds
+     */
+    public long getCycleMicros() {
+        return cycleMicros;
+    }
+
+    /**
+     * @return the number of probes kept in the probe log
+     */
+    public long getProbeSamples() {
+        return probeSamples;
+    }
+
+    /**
+     * @return the status formatted for display, read-only
+     */
+    public List<StatusListItem> getItems() {
+        return items;
+    }
+}
@@ -23,6 +23,7 @@
  */
 package nl.verheulconsultants.monitorisp.service;
 
+import java.io.File;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.Enumeration;
@@ -49,6 +50,11 @@ public class Utilities {
     private static final String TESTHOMEDIR = "C:\\MonitorISP\\test\\";
     private static String sessionDataFileName = APPHOMEDIR + "MonitorISPData.bin";
 
+    /**
+     * The system property with the directory of the probe event logs, if not the directory of the session data. The tests write them to target.
+     */
+    public static final String PROBE_EVENT_DIR_PROPERTY = "monitorisp.probeEventDir";
+
     /**
      *
      */
@@ -69,6 +75,65 @@ public class Utilities {
      */
     public static final int CONTROLLERDOWN = 3;
 
+    /**
+     * A flapping episode: a burst of short outages coalesced into one.
+     */
+    public static final int FLAPPING = 4;
+
+    /**
+     * The number of outage causes above.
+     */
+    public static final int NUMBER_OF_CAUSES = 5;
+
+    private static final String[] CAUSE_NAMES = {"ISP", "INTERNAL", "SERVICEDOWN", "CONTROLLERDOWN", "FLAPPING"};
+
+    /**
+     * Get a short name of an outage cause for machine readable output.
+     *
+     * @param cause the outage cause
+     * @return the name, for instance ISP, or UNKNOWN
+     */
+    public static String causeName(int cause) {
+        return cause >= 0 && cause < CAUSE_NAMES.length ? CAUSE_NAMES[cause] : "UNKNOWN";
+    }
+
+    /**
+     * Get an outage cause by its short name or number.
+     *
+     * @param name the name as returned by causeName or the cause number
+     * @return the cause or -1 if the name is unknown
+     */
+    public static int causeOf(String name) {
+        for (int i = 0; i < CAUSE_NAMES.length; i++) {
+            if (CAUSE_NAMES[i].equalsIgnoreCase(name) || Integer.toString(i).equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append a string as a quoted and escaped JSON string.
+     *
+     * @param sb the builder to append to
+     * @param value the string
+     * @return the builder
+     */
+    public static StringBuilder appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
     /**
      *
      * @return
@@ -77,6 +142,48 @@ public class Utilities {
         return sessionDataFileName;
     }
 
+    /**
+     * The session data of the default profile are stored in the file of previous versions, every other profile in a file of its own.
+     *
+     * @param profile the name of the profile
+     * @return the path
+     */
+    public static String getSessionDataFileName(String profile) {
+        if (ProfileRegistry.DEFAULT_PROFILE.equals(profile)) {
+            return sessionDataFileName;
+        }
+        return sessionDataFileName.substring(0, sessionDataFileName.length() - ".bin".length()) + "-" + profile + ".bin";
+    }
+
+    /**
+     * The runtime configuration of the default profile is read from monitorisp.properties in the application directory, of every other profile
+     * from a file of its own.
+     *
+     * @param profile the name of the profile
+     * @return the path
+     */
+    public static String getConfigFileName(String profile) {
+        String dir = sessionDataFileName.substring(0, sessionDataFileName.length() - "MonitorISPData.bin".length());
+        return ProfileRegistry.DEFAULT_PROFILE.equals(profile) ? dir + "monitorisp.properties" : dir + "monitorisp-" + profile + ".properties";
+    }
+
+    /**
+     * The probe events of the default profile are written to probe-events.ndjson in the application directory or the directory set by
+     * {@link #PROBE_EVENT_DIR_PROPERTY}, of every other profile to a file of its own.
+     *
+     * @param profile the name of the profile
+     * @return the path
+     */
+    public static String getProbeEventLogFileName(String profile) {
+        String dir = System.getProperty(PROBE_EVENT_DIR_PROPERTY);
+        if (dir != null) {
+            dir = dir.endsWith("/") || dir.endsWith("\\") ? dir : dir + File.separator;
+        } else {
+            dir = sessionDataFileName.substring(0, sessionDataFileName.length() - "MonitorISPData.bin".length());
+        }
+        return ProfileRegistry.DEFAULT_PROFILE.equals(profile) ? dir + "probe-events.ndjson" : dir + "probe-events-" + profile + ".ndjson";
+    }
+
     /**
      * Set a test directory for storing the session data.
      */
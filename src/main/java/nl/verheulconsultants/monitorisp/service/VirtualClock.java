@@ -0,0 +1,303 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock for simulations. Time stands still until it is advanced; then the tasks of its scheduler run on the calling thread in the order of their
+ * due time, with the clock set to that time. A sleep advances the clock at once. So weeks of probe cycles take as long as the work they do.
+ *
+ * A controller in a simulation uses this clock and its scheduler:
+ * <pre>
+ * VirtualClock clock = new VirtualClock(start);
+ * ISPController controller = new ISPController(profile, clock::getScheduler, capacity, clock);
+ * controller.start();
+ * clock.advance(7 * 24 * 3_600_000L);
+ * </pre>
+ * Everything the controller does is a task, so exitService must be followed by an advance before awaitTermination.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class VirtualClock implements Clock {
+
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+    private final Scheduler scheduler = new Scheduler();
+    private long millis;
+    private long nanos = 0L;
+    private long sequence = 0L;
+    private boolean shutdown = false;
+
+    /**
+     * @param start the wall clock time to start at, in milliseconds since the epoch
+     */
+    public VirtualClock(long start) {
+        millis = start;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return millis;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return nanos;
+    }
+
+    /**
+     * Advance the clock without running the tasks that become due; they run late, as on a busy thread.
+     *
+     * @param ms the time to wait
+     */
+    @Override
+    public synchronized void sleep(long ms) {
+        setTime(millis + Math.max(0L, ms));
+    }
+
+    private void setTime(long time) {
+        nanos += (time - millis) * 1_000_000L;
+        millis = time;
+    }
+
+    /**
+     * @return the scheduler that runs its tasks in the time of this clock
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Advance the clock and run the tasks that become due.
+     *
+     * @param ms the time to advance in milliseconds
+     */
+    public void advance(long ms) {
+        advanceTo(currentTimeMillis() + ms);
+    }
+
+    /**
+     * Advance the clock to a time and run the tasks that are due by then, also the tasks they schedule.
+     *
+     * @param time the time to advance to; a time in the past only runs the tasks that are due
+     */
+    public void advanceTo(long time) {
+        while (true) {
+            Task<?> task;
+            synchronized (this) {
+                task = queue.peek();
+                if (task == null || task.due > time) {
+                    if (time > millis) {
+                        setTime(time);
+                    }
+                    return;
+                }
+                queue.poll();
+                if (task.due > millis) {
+                    setTime(task.due);
+                }
+            }
+            task.run();
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting to run
+     */
+    public synchronized int getPendingTasks() {
+        return queue.size();
+    }
+
+    private synchronized <V> Task<V> enqueue(Task<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The scheduler of the virtual clock is shut down");
+        }
+        queue.add(task);
+        return task;
+    }
+
+    private synchronized void remove(Task<?> task) {
+        queue.remove(task);
+    }
+
+    private synchronized long due(long delay, TimeUnit unit) {
+        return millis + Math.max(0L, unit.toMillis(delay));
+    }
+
+    /**
+     * A task with its due time. A periodic task has a positive period at a fixed rate or a negative one with a fixed delay.
+     */
+    private class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        private long due;
+        private final long period;
+        private final long seq;
+
+        Task(Callable<V> callable, long due, long period) {
+            super(callable);
+            this.due = due;
+            this.period = period;
+            synchronized (VirtualClock.this) {
+                seq = sequence++;
+            }
+        }
+
+        Task(Runnable runnable, long due, long period) {
+            super(runnable, null);
+            this.due = due;
+            this.period = period;
+            synchronized (VirtualClock.this) {
+                seq = sequence++;
+            }
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0L;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof Task) {
+                Task<?> t = (Task<?>) other;
+                int c = Long.compare(due, t.due);
+                return c != 0 ? c : Long.compare(seq, t.seq);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset()) {
+                due = period > 0L ? due + period : currentTimeMillis() - period;
+                try {
+                    enqueue(this);
+                } catch (RejectedExecutionException ex) {
+                    cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                remove(this);
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * The scheduler that queues its tasks in the virtual time. It has no threads of its own.
+     */
+    private class Scheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return enqueue(new Task<>(command, due(delay, unit), 0L));
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return enqueue(new Task<>(callable, due(delay, unit), 0L));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            if (unit.toMillis(period) <= 0L) {
+                throw new IllegalArgumentException("The period must be at least a millisecond");
+            }
+            return enqueue(new Task<>(command, due(initialDelay, unit), unit.toMillis(period)));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            if (unit.toMillis(delay) <= 0L) {
+                throw new IllegalArgumentException("The delay must be at least a millisecond");
+            }
+            return enqueue(new Task<>(command, due(initialDelay, unit), -unit.toMillis(delay)));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            schedule(command, 0L, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void shutdown() {
+            synchronized (VirtualClock.this) {
+                shutdown = true;
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            synchronized (VirtualClock.this) {
+                shutdown = true;
+                List<Runnable> pending = new ArrayList<>(queue);
+                queue.clear();
+                return pending;
+            }
+        }
+
+        @Override
+        public boolean isShutdown() {
+            synchronized (VirtualClock.this) {
+                return shutdown;
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            synchronized (VirtualClock.this) {
+                return shutdown && queue.isEmpty();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            // nothing runs unless the clock is advanced
+            return isTerminated();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import nl.verheulconsultants.monitorisp.service.StatusListItem;
+import static nl.verheulconsultants.monitorisp.service.Utilities.millisToTime;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+/**
+ * A read-only, bookmarkable view on the status, the timeline and the most recent outages. The page is stateless: rendering it does not
+ * create a session and nothing is written to the page store. The browser reloads the page every 'refresh' seconds. The page shows the
+ * default profile at /dashboard and another monitoring profile at /dashboard/name.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class DashboardPage extends BasePage {
+
+    private static final long serialVersionUID = 1L;
+    static final int DEFAULT_REFRESH_SECONDS = 15;
+    static final int MIN_REFRESH_SECONDS = 5;
+    static final int OUTAGE_ROWS = 25;
+    private static final int TIMELINE_MONTHS = 12;
+    private static final int TIMELINE_DAYS = 7;
+    private final String profile;
+
+    /**
+     * The constructor.
+     *
+     * @param parameters the page parameters, optional 'refresh' in seconds and 'profile'
+     */
+    public DashboardPage(PageParameters parameters) {
+        super();
+        profile = parameters.get("profile").toOptionalString();
+        ISPController controller = getController(profile);
+        if (controller == null) {
+            throw new AbortWithHttpErrorCodeException(404, "Unknown profile " + profile);
+        }
+        add(new Label("profile", controller.getProfile()));
+        int refresh = Math.max(MIN_REFRESH_SECONDS, parameters.get("refresh").toInt(DEFAULT_REFRESH_SECONDS));
+        add(new WebMarkupContainer("refresh").add(AttributeModifier.replace("content", Integer.toString(refresh))));
+
+        // the models are detached after the render, the page holds no data between requests
+        IModel<List<StatusListItem>> statusModel = new LoadableDetachableModel<List<StatusListItem>>() {
+            @Override
+            protected List<StatusListItem> load() {
+                return getController(profile).getStatusData();
+            }
+        };
+        add(new ListView<StatusListItem>("statusListView", statusModel) {
+            @Override
+            protected void populateItem(ListItem<StatusListItem> item) {
+                StatusListItem sli = item.getModelObject();
+                item.add(new Label("Index", sli.getIndex()));
+                item.add(new Label("Name", sli.getName()));
+                item.add(new Label("Value", sli.getValue()));
+            }
+        });
+
+        AvailabilityRollup rollup = controller.getRollup();
+        add(new TimelineTiles("monthTiles", profile, rollup, AvailabilityRollup.DAY, TIMELINE_MONTHS));
+        add(new TimelineTiles("dayTiles", profile, rollup, AvailabilityRollup.HOUR, TIMELINE_DAYS));
+
+        IModel<List<OutageListItem>> outageModel = new LoadableDetachableModel<List<OutageListItem>>() {
+            @Override
+            protected List<OutageListItem> load() {
+                return getRecentOutages(getController(profile).getHistory(), OUTAGE_ROWS);
+            }
+        };
+        add(new ListView<OutageListItem>("outageListView", outageModel) {
+            @Override
+            protected void populateItem(ListItem<OutageListItem> item) {
+                OutageListItem oli = item.getModelObject();
+                item.add(new Label("index", oli.getIndex()));
+                item.add(new Label("start", oli.getStart()));
+                item.add(new Label("end", oli.getEnd()));
+                item.add(new Label("duration", millisToTime(oli.getDuration())));
+                item.add(new Label("cause", oli.getOutageCauseAsString()));
+            }
+        });
+    }
+
+    /**
+     * Get the most recent outages, the newest first.
+     *
+     * @param store the outage history
+     * @param max the maximum number of outages to return
+     * @return the outages
+     */
+    static List<OutageListItem> getRecentOutages(OutageStore store, int max) {
+        int size = store.size();
+        List<OutageListItem> ret = new ArrayList<>(Math.min(size, max));
+        for (int i = size - 1; i >= 0 && ret.size() < max; i--) {
+            ret.add(store.get(i));
+        }
+        return ret;
+    }
+}
@@ -23,22 +23,35 @@
  */
 package nl.verheulconsultants.monitorisp.ui;
 
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
 import nl.verheulconsultants.monitorisp.service.Host;
 import java.util.ArrayList;
 import static nl.verheulconsultants.monitorisp.service.Utilities.*;
+import java.util.HashMap;
 import java.util.List;
-import java.time.Duration;
+import java.util.Map;
 import nl.verheulconsultants.monitorisp.service.ISPController;
 import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.RuntimeConfig;
 import nl.verheulconsultants.monitorisp.service.StatusListItem;
 import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.ajax.AjaxRequestTarget;
-import org.apache.wicket.ajax.AjaxSelfUpdatingTimerBehavior;
 import org.apache.wicket.ajax.form.AjaxFormComponentUpdatingBehavior;
 import org.apache.wicket.ajax.markup.html.form.AjaxButton;
+import org.apache.wicket.extensions.ajax.markup.html.repeater.data.table.AjaxFallbackDefaultDataTable;
 import org.apache.wicket.extensions.markup.html.form.palette.Palette;
 import org.apache.wicket.extensions.markup.html.form.palette.component.Recorder;
 import org.apache.wicket.extensions.markup.html.form.palette.theme.DefaultTheme;
+import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulator;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.AbstractColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.PropertyColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.ChoiceFilteredPropertyColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.FilterForm;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.FilterToolbar;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Button;
@@ -49,10 +62,15 @@ import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.panel.FeedbackPanel;
+import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.protocol.ws.api.WebSocketBehavior;
+import org.apache.wicket.protocol.ws.api.WebSocketRequestHandler;
+import org.apache.wicket.protocol.ws.api.message.IWebSocketPushMessage;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
 import org.apache.wicket.util.io.IClusterable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,7 +95,14 @@ public final class HomePage extends BasePage {
     private final InputRouterAddress address;
     private TextField<String> routerAddress;
     private final Form<?> formRouter;
-    private static final int AJAX_UPDATE_INTERVAL = 5;
+    private final Form<?> formConfig;
+    // the settings of the runtime configuration that can be changed in the configuration form
+    private static final String[] CONFIG_FIELDS = {RuntimeConfig.CHECK_INTERVAL, RuntimeConfig.RECHECK_DELAY, RuntimeConfig.PROBE_TIMEOUT,
+        RuntimeConfig.HOST_PAUSE, RuntimeConfig.ROUTER_TIMEOUT, RuntimeConfig.PORT};
+    private final Map<String, String> configChanges = new HashMap<>();
+    private static final int OUTAGE_ROWS_PER_PAGE = 25;
+    private static final int TIMELINE_MONTHS = 12;
+    private static final int TIMELINE_DAYS = 7;
     private String startStopLabelText = "Stop";
 
     /**
@@ -90,23 +115,35 @@ public final class HomePage extends BasePage {
 
         ///////////////////////// Select hosts to test against ////////////////
         IChoiceRenderer<Host> renderer = new ChoiceRenderer<>("hostAddress", "id");
-        palette = new Palette<>("palette1", CONTROLLER.getSelectedModel(), CONTROLLER.getPaletteModel(), renderer, 10, true) {
+        // the controller keeps read-only host lists; the palette sets a new selection through the model
+        IModel<List<Host>> selectedModel = new IModel<List<Host>>() {
+            @Override
+            public List<Host> getObject() {
+                return CONTROLLER.getSelected();
+            }
+
+            @Override
+            public void setObject(List<Host> hosts) {
+                CONTROLLER.setSelected(hosts);
+            }
+        };
+        IModel<List<Host>> choicesModel = () -> CONTROLLER.getChoices();
+        palette = new Palette<>("palette1", selectedModel, choicesModel, renderer, 10, true) {
             @Override
             protected Recorder newRecorderComponent() {
               Recorder recorder = super.newRecorderComponent();
               recorder.add(new AjaxFormComponentUpdatingBehavior("change") {
                 @Override
                 protected void onUpdate(AjaxRequestTarget target) {
-                  processInput(); // let Palette process input too
+                  processInput(); // let Palette process input too, this updates the selection
                   LOGGER.info("The selection is changed by the user to {}", getValue());
-                  CONTROLLER.setSelected(getSelectedChoices());
                 }
               });
               return recorder;
             }
         };
         palette.add(new DefaultTheme());
-        LOGGER.info("The palette is initiated with choices {}.", CONTROLLER.getPaletteModel());
+        LOGGER.info("The palette is initiated with choices {}.", CONTROLLER.getChoices());
         LOGGER.info("The palette is initiated with selection {}.", CONTROLLER.getSelected());
 
         formSelectHosts = new Form<Void>("paletteForm") {
@@ -132,7 +169,8 @@ public final class HomePage extends BasePage {
             @Override
             protected void onSubmit(AjaxRequestTarget target) {
                 if (CONTROLLER != null) {
-                    if (CONTROLLER.isBusyCheckingConnections()) {
+                    // the stop is known at once; the controller is busy until the cycle in progress has ended
+                    if (!CONTROLLER.isStopped()) {
                         CONTROLLER.stopTemporarily();
                         LOGGER.info("The service is stopped temporarily.");
                         startStopLabelText = "Start";
@@ -195,6 +233,37 @@ public final class HomePage extends BasePage {
         formRouter.add(routerAddress);
         add(formRouter);
 
+        //////////////////////// Change the runtime configuration /////////////
+        //the probe cycles continue; the next cycle uses the new configuration
+        formConfig = new Form<Void>("configForm") {
+            @Override
+            protected void onSubmit() {
+                try {
+                    RuntimeConfig config = CONTROLLER.updateConfig(configChanges, -1L);
+                    LOGGER.info("The user changed the configuration to {}", config);
+                } catch (IllegalArgumentException ex) {
+                    error(ex.getMessage());
+                }
+                configChanges.clear();
+            }
+        };
+        for (String name : CONFIG_FIELDS) {
+            formConfig.add(new TextField<>(name, new IModel<String>() {
+                @Override
+                public String getObject() {
+                    return CONTROLLER.getConfig().toMap().get(name);
+                }
+
+                @Override
+                public void setObject(String value) {
+                    if (value != null && !value.equals(getObject())) {
+                        configChanges.put(name, value);
+                    }
+                }
+            }));
+        }
+        add(formConfig);
+
         //////////////// feedback panel for showing errors etc. ////////////////
         add(new FeedbackPanel("feedback"));
 
@@ -212,56 +281,78 @@ public final class HomePage extends BasePage {
             protected void populateItem(final ListItem item) {
                 StatusListItem sli = (StatusListItem) item.getModelObject();
                 item.add(new Label("Name", sli.getName()));
-                item.add(new Label("Value", sli.getValue()));
+                item.add(new Label("Value", sli.getValue()).add(AttributeModifier.replace("data-status-index", sli.getIndex())));
                 item.add(new Label("Index", sli.getIndex()));
             }
         };
 
-        //encapsulate the ListView in a WebMarkupContainer in order for it to update
+        //the values are updated by the StatusPublisher pushing the changes over the WebSocket connection
         WebMarkupContainer statusListContainer = new WebMarkupContainer("statusContainer");
-        //generate a markup-id so the contents can be updated through an AJAX call
-        statusListContainer.setOutputMarkupId(true);
-        statusListContainer.add(new AjaxSelfUpdatingTimerBehavior(Duration.ofSeconds(AJAX_UPDATE_INTERVAL)));
         // add the list view to the container
         statusListContainer.add(statusListView);
         // finally add the container to the page
         add(statusListContainer);
 
-        //get the list of items to display from provider (database, etc)
-        //in the form of a LoadableDetachableModel
-        IModel listOutageViewModel = new LoadableDetachableModel() {
+        //////////////////////// Display availability timeline ////////////////
+        //the tiles are rendered as SVG by the TimelineResource; past tiles come from its cache
+        //the live tiles are reloaded by HomePage.js when a new outage is pushed
+        add(new TimelineTiles("monthTiles", CONTROLLER.getRollup(), AvailabilityRollup.DAY, TIMELINE_MONTHS));
+        add(new TimelineTiles("dayTiles", CONTROLLER.getRollup(), AvailabilityRollup.HOUR, TIMELINE_DAYS));
+
+        //////////////////////// Display outage history ///////////////////////
+        //the provider reads only the rows of the visible page from the outage store
+        OutageDataProvider outageProvider = new OutageDataProvider();
+        List<String> causeNames = new ArrayList<>();
+        for (int cause = 0; cause < NUMBER_OF_CAUSES; cause++) {
+            causeNames.add(causeName(cause));
+        }
+        List<IColumn<OutageListItem, String>> outageColumns = new ArrayList<>();
+        outageColumns.add(new PropertyColumn<>(Model.of("index"), "index"));
+        outageColumns.add(new PropertyColumn<>(Model.of("start"), OutageDataProvider.START, "start"));
+        outageColumns.add(new PropertyColumn<>(Model.of("end"), "end"));
+        outageColumns.add(new AbstractColumn<OutageListItem, String>(Model.of("duration"), OutageDataProvider.DURATION) {
             @Override
-            protected Object load() {
-                return CONTROLLER.getOutageDataReversedOrder();
+            public void populateItem(Item<ICellPopulator<OutageListItem>> cellItem, String componentId, IModel<OutageListItem> rowModel) {
+                cellItem.add(new Label(componentId, millisToTime(rowModel.getObject().getDuration())));
             }
-        };
+        });
+        outageColumns.add(new ChoiceFilteredPropertyColumn<OutageListItem, String, String>(Model.of("outage cause"), OutageDataProvider.CAUSE,
+                "causeName", Model.ofList(causeNames)) {
+            @Override
+            public void populateItem(Item<ICellPopulator<OutageListItem>> cellItem, String componentId, IModel<OutageListItem> rowModel) {
+                cellItem.add(new Label(componentId, rowModel.getObject().getOutageCauseAsString()));
+            }
+        });
 
-        ListView outageListView = new ListView("outageListView", listOutageViewModel) {
+        FilterForm<OutageFilter> outageFilterForm = new FilterForm<>("outageFilterForm", outageProvider);
+        AjaxFallbackDefaultDataTable<OutageListItem, String> outageTable
+                = new AjaxFallbackDefaultDataTable<>("outageTable", outageColumns, outageProvider, OUTAGE_ROWS_PER_PAGE);
+        outageTable.addTopToolbar(new FilterToolbar(outageTable, outageFilterForm));
+        //new outages pushed by the StatusPublisher are inserted only in the first page of the default view
+        outageTable.add(AttributeModifier.replace("data-live-rows", () -> outageTable.getCurrentPage() == 0 && outageProvider.isDefaultView()
+                ? Integer.toString(OUTAGE_ROWS_PER_PAGE) : null));
+        outageFilterForm.add(outageTable);
+        add(outageFilterForm);
+
+        add(new WebSocketBehavior() {
             @Override
-            protected void populateItem(final ListItem item) {
-                OutageListItem olu = (OutageListItem) item.getModelObject();
-                item.add(new Label("Index", olu.getIndex()));
-                item.add(new Label("Start", olu.getStart()));
-                item.add(new Label("End", olu.getEnd()));
-                item.add(new Label("Duration", millisToTime(olu.getDuration())));
-                item.add(new Label("OutageCausedInternal", olu.getOutageCauseAsString()));
+            protected void onPush(WebSocketRequestHandler handler, IWebSocketPushMessage message) {
+                if (message instanceof StatusPushMessage) {
+                    handler.push(((StatusPushMessage) message).getJson());
+                }
             }
-        };
+        });
+    }
 
-        //encapsulate the ListView in a WebMarkupContainer in order for it to update
-        WebMarkupContainer outageListContainer = new WebMarkupContainer("outageContainer");
-        //generate a markup-id so the contents can be updated through an AJAX call
-        outageListContainer.setOutputMarkupId(true);
-        outageListContainer.add(new AjaxSelfUpdatingTimerBehavior(Duration.ofSeconds(AJAX_UPDATE_INTERVAL)));
-        // add the list view to the container
-        outageListContainer.add(outageListView);
-        // finally add the container to the page
-        add(outageListContainer);
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        response.render(JavaScriptHeaderItem.forReference(new JavaScriptResourceReference(HomePage.class, "HomePage.js")));
     }
 
     private void startRunning() {
         if (CONTROLLER.isRunning()) {
-            if (!CONTROLLER.isBusyCheckingConnections()) {
+            if (CONTROLLER.isStopped()) {
                 CONTROLLER.restart(getAddresses(CONTROLLER.getSelected()));
                 LOGGER.info("The service is restarted for checking connections with hosts {}", CONTROLLER.getSelected());
             } else {
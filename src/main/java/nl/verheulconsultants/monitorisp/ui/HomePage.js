@@ -0,0 +1,36 @@
+/*
+ * Apply the status and outage changes pushed by the server over the WebSocket connection of the home page.
+ */
+(function () {
+    "use strict";
+
+    Wicket.Event.subscribe("/websocket/message", function (jqEvent, message) {
+        var delta = JSON.parse(message);
+        (delta.status || []).forEach(function (status) {
+            var cell = document.querySelector("[data-status-index='" + status.index + "']");
+            if (cell) {
+                cell.textContent = status.value;
+            }
+        });
+        // only the first page in the default order is kept up to date, other views are rendered on request
+        var table = document.querySelector("table[data-live-rows]");
+        if (table && delta.outages) {
+            var body = table.tBodies[0];
+            var maxRows = parseInt(table.getAttribute("data-live-rows"), 10);
+            delta.outages.forEach(function (outage) {
+                var row = body.insertRow(0);
+                [outage.index, outage.start, outage.end, outage.duration, outage.cause].forEach(function (value) {
+                    row.insertCell(-1).textContent = value;
+                });
+            });
+            while (body.rows.length > maxRows) {
+                body.deleteRow(-1);
+            }
+        }
+        if (delta.outages) {
+            document.querySelectorAll("img[data-live-tile]").forEach(function (tile) {
+                tile.src = tile.src.replace(/&reload=\d+$/, "") + "&reload=" + Date.now();
+            });
+        }
+    });
+})();
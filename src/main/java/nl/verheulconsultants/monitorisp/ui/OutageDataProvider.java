@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.causeOf;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.IFilterStateLocator;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+/**
+ * Supplies one page of outages at a time to the outage table, read directly from the outage store.
+ *
+ * In the default order (newest first, no filter) a page is addressed by position, so the cost of a page does not
+ * depend on the length of the history. A cause filter or another sort order selects the row numbers from the
+ * primitive columns once and reuses them until the history grows.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutageDataProvider extends SortableDataProvider<OutageListItem, String> implements IFilterStateLocator<OutageFilter> {
+
+    private static final long serialVersionUID = 1L;
+    static final String START = "start";
+    static final String DURATION = "duration";
+    static final String CAUSE = "cause";
+    private OutageFilter filter = new OutageFilter();
+    private transient OutageStore rowsStore;
+    private transient int rowsSize;
+    private transient String rowsKey;
+    private transient int[] rows;
+
+    /**
+     * Show the most recent outage first.
+     */
+    public OutageDataProvider() {
+        setSort(START, SortOrder.DESCENDING);
+    }
+
+    /**
+     * @return the outage history to show
+     */
+    protected OutageStore getStore() {
+        return getController().getHistory();
+    }
+
+    /**
+     * @return true if the newest outages are shown first without a filter
+     */
+    public boolean isDefaultView() {
+        SortParam<String> sort = getSort();
+        return (filter == null || filter.getCauseName() == null)
+                && (sort == null || (START.equals(sort.getProperty()) && !sort.isAscending()));
+    }
+
+    @Override
+    public Iterator<? extends OutageListItem> iterator(long first, long count) {
+        OutageStore store = getStore();
+        int[] selection = select(store);
+        long size = selection == null ? store.size() : selection.length;
+        boolean descending = getSort() == null || !getSort().isAscending();
+        long last = Math.min(first + count, size);
+        List<OutageListItem> page = new ArrayList<>((int) Math.max(0, last - first));
+        for (long k = first; k < last; k++) {
+            int position = (int) (descending ? size - 1 - k : k);
+            page.add(store.get(selection == null ? position : selection[position]));
+        }
+        return page.iterator();
+    }
+
+    @Override
+    public long size() {
+        OutageStore store = getStore();
+        int[] selection = select(store);
+        return selection == null ? store.size() : selection.length;
+    }
+
+    @Override
+    public IModel<OutageListItem> model(OutageListItem object) {
+        return Model.of(object);
+    }
+
+    @Override
+    public OutageFilter getFilterState() {
+        return filter;
+    }
+
+    @Override
+    public void setFilterState(OutageFilter state) {
+        filter = state;
+    }
+
+    /**
+     * Select the row numbers to show in ascending sort order.
+     *
+     * @param store the outage history
+     * @return the row numbers or null if all rows are shown in their natural order
+     */
+    private int[] select(OutageStore store) {
+        String causeName = filter == null ? null : filter.getCauseName();
+        int cause = causeName == null ? -1 : causeOf(causeName);
+        SortParam<String> sort = getSort();
+        String property = sort == null ? START : sort.getProperty();
+        if (cause < 0 && START.equals(property)) {
+            return null;
+        }
+
+        int n = store.size();
+        String key = cause + "/" + property;
+        if (rows != null && rowsStore == store && rowsSize == n && key.equals(rowsKey)) {
+            return rows;
+        }
+
+        int matches = 0;
+        for (int i = 0; i < n; i++) {
+            if (cause < 0 || store.getCause(i) == cause) {
+                matches++;
+            }
+        }
+        int[] selection = new int[matches];
+        int k = 0;
+        for (int i = 0; i < n && k < matches; i++) {
+            if (cause < 0 || store.getCause(i) == cause) {
+                selection[k++] = i;
+            }
+        }
+        if (DURATION.equals(property)) {
+            selection = IntStream.of(selection).boxed()
+                    .sorted((a, b) -> Long.compare(store.getEnd(a) - store.getStart(a), store.getEnd(b) - store.getStart(b)))
+                    .mapToInt(Integer::intValue).toArray();
+        } else if (CAUSE.equals(property)) {
+            selection = IntStream.of(selection).boxed()
+                    .sorted((a, b) -> Integer.compare(store.getCause(a), store.getCause(b)))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        rowsStore = store;
+        rowsSize = n;
+        rowsKey = key;
+        rows = selection;
+        return selection;
+    }
+}
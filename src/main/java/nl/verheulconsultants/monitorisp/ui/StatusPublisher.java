@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.ControllerListener;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import nl.verheulconsultants.monitorisp.service.StatusListItem;
+import static nl.verheulconsultants.monitorisp.service.Utilities.appendJsonString;
+import static nl.verheulconsultants.monitorisp.service.Utilities.millisToTime;
+import org.apache.wicket.Application;
+import org.apache.wicket.protocol.ws.WebSocketSettings;
+import org.apache.wicket.protocol.ws.api.WebSocketPushBroadcaster;
+import org.apache.wicket.protocol.ws.api.registry.IWebSocketConnectionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pushes the changes of the status and the new outages to all open pages over their WebSocket connection.
+ *
+ * The delta is computed once per controller event and the same text is sent to every page, so the work does not grow with
+ * the number of viewers beyond the sending itself.
+ *
+ * The message looks like {"status":[{"index":7,"value":"00:00:05"}],"outages":[{"index":12,"start":...}]}.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class StatusPublisher implements ControllerListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatusPublisher.class);
+    /**
+     * At most this many new outages are pushed at once; a page shows no more anyway.
+     */
+    static final int MAX_PUSHED_OUTAGES = 25;
+    private final Application application;
+    private String[] lastValues = new String[0];
+    private int lastOutages = -1;
+
+    /**
+     * @param application the application whose pages are updated
+     */
+    public StatusPublisher(Application application) {
+        this.application = application;
+    }
+
+    @Override
+    public void stateChanged(ISPController controller) {
+        String delta = createDelta(controller.getStatusData(), controller.getHistory());
+        if (delta == null) {
+            return;
+        }
+        IWebSocketConnectionRegistry registry = WebSocketSettings.Holder.get(application).getConnectionRegistry();
+        if (registry.getConnections(application).isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Push {}", delta);
+        new WebSocketPushBroadcaster(registry).broadcastAll(application, new StatusPushMessage(delta));
+    }
+
+    /**
+     * Compare with the previous state and describe the differences.
+     *
+     * @param status the current status
+     * @param history the outage history
+     * @return the changes as JSON text or null if nothing changed
+     */
+    synchronized String createDelta(List<StatusListItem> status, OutageStore history) {
+        StringBuilder sb = new StringBuilder(256);
+        if (lastValues.length != status.size()) {
+            lastValues = new String[status.size()];
+        }
+        int changes = 0;
+        for (int i = 0; i < lastValues.length; i++) {
+            StatusListItem item = status.get(i);
+            if (!item.getValue().equals(lastValues[i])) {
+                lastValues[i] = item.getValue();
+                sb.append(changes++ == 0 ? "{\"status\":[" : ",");
+                sb.append("{\"index\":").append(item.getIndex()).append(",\"value\":");
+                appendJsonString(sb, item.getValue()).append('}');
+            }
+        }
+        if (changes > 0) {
+            sb.append(']');
+        }
+
+        int size = history.size();
+        if (lastOutages < 0) {
+            // the page shows the history as it was when rendered
+            lastOutages = size;
+        }
+        if (size > lastOutages) {
+            sb.append(changes > 0 ? ",\"outages\":[" : "{\"outages\":[");
+            int first = Math.max(lastOutages, size - MAX_PUSHED_OUTAGES);
+            for (int i = first; i < size; i++) {
+                OutageListItem outage = history.get(i);
+                sb.append(i > first ? ",{\"index\":" : "{\"index\":").append(outage.getIndex());
+                sb.append(",\"start\":");
+                appendJsonString(sb, outage.getStart());
+                sb.append(",\"end\":");
+                appendJsonString(sb, outage.getEnd());
+                sb.append(",\"duration\":");
+                appendJsonString(sb, millisToTime(outage.getDuration()));
+                sb.append(",\"cause\":");
+                appendJsonString(sb, outage.getOutageCauseAsString()).append('}');
+            }
+            sb.append(']');
+            lastOutages = size;
+            changes++;
+        }
+        return changes > 0 ? sb.append('}').toString() : null;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.time.ZonedDateTime;
+import nl.verheulconsultants.monitorisp.api.TimelineResource;
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+/**
+ * A row of availability timeline tiles, ending with the current month or day. Each tile is an img rendered by the TimelineResource.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class TimelineTiles extends RepeatingView {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param id the component id, to be used on an img tag
+     * @param rollup the rollup, for the calendar periods
+     * @param granularity AvailabilityRollup.DAY for tiles of a month or AvailabilityRollup.HOUR for tiles of a day
+     * @param count the number of tiles
+     */
+    public TimelineTiles(String id, AvailabilityRollup rollup, int granularity, int count) {
+        this(id, null, rollup, granularity, count);
+    }
+
+    /**
+     * @param id the component id, to be used on an img tag
+     * @param profile the monitoring profile or null for the default profile
+     * @param rollup the rollup of the profile, for the calendar periods
+     * @param granularity AvailabilityRollup.DAY for tiles of a month or AvailabilityRollup.HOUR for tiles of a day
+     * @param count the number of tiles
+     */
+    public TimelineTiles(String id, String profile, AvailabilityRollup rollup, int granularity, int count) {
+        super(id);
+        ZonedDateTime now = ZonedDateTime.now(rollup.getZone());
+        for (int k = count - 1; k >= 0; k--) {
+            long tileStart = granularity == AvailabilityRollup.HOUR
+                    ? rollup.getPeriodStart(now.minusDays(k).toInstant().toEpochMilli(), AvailabilityRollup.DAY)
+                    : rollup.getPeriodStart(now.minusMonths(k).toInstant().toEpochMilli(), AvailabilityRollup.MONTH);
+            PageParameters parameters = new PageParameters()
+                    .add("granularity", granularity == AvailabilityRollup.HOUR ? "hour" : "day")
+                    .add("time", tileStart);
+            if (profile != null) {
+                parameters.add("profile", profile);
+            }
+            WebComponent tile = new WebComponent(newChildId());
+            tile.add(AttributeModifier.replace("src", urlFor(TimelineResource.REFERENCE, parameters).toString()));
+            if (k == 0) {
+                // this tile includes the current time
+                tile.add(AttributeModifier.replace("data-live-tile", "true"));
+            }
+            add(tile);
+        }
+    }
+}
@@ -23,13 +23,34 @@
  */
 package nl.verheulconsultants.monitorisp.ui;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import nl.verheulconsultants.monitorisp.api.ConfigApiResource;
+import nl.verheulconsultants.monitorisp.api.ExportResource;
+import nl.verheulconsultants.monitorisp.api.FederationApiResource;
+import nl.verheulconsultants.monitorisp.api.FederationExchangeResource;
+import nl.verheulconsultants.monitorisp.api.EventStreamResource;
+import nl.verheulconsultants.monitorisp.api.HostsApiResource;
+import nl.verheulconsultants.monitorisp.api.MetricsResource;
+import nl.verheulconsultants.monitorisp.api.OutagesApiResource;
+import nl.verheulconsultants.monitorisp.api.ProfilesApiResource;
+import nl.verheulconsultants.monitorisp.api.StatusApiResource;
+import nl.verheulconsultants.monitorisp.api.TimelineResource;
 import nl.verheulconsultants.monitorisp.service.Host;
 import org.apache.wicket.markup.html.WebPage;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import nl.verheulconsultants.monitorisp.service.ConfigFileWatcher;
+import nl.verheulconsultants.monitorisp.service.ControllerManagement;
+import nl.verheulconsultants.monitorisp.service.ControllerListener;
+import nl.verheulconsultants.monitorisp.service.Federation;
+import nl.verheulconsultants.monitorisp.service.FlightRecording;
 import nl.verheulconsultants.monitorisp.service.ISPController;
-import static nl.verheulconsultants.monitorisp.service.Utilities.sleepMillis;
+import nl.verheulconsultants.monitorisp.service.ProfileRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,7 +72,30 @@ public class WicketApplication extends WebApplication {
         return addresses;
     }
 
-    public static final ISPController CONTROLLER = new ISPController();
+    /**
+     * The monitoring profiles. Set the profiles to run next to the default profile as a comma separated list in the system property
+     * monitorisp.profiles or the init parameter profiles.
+     */
+    public static final ProfileRegistry PROFILES = new ProfileRegistry();
+    public static final ISPController CONTROLLER = PROFILES.getDefault();
+    static final String PROFILES_PROPERTY = "monitorisp.profiles";
+    /**
+     * The name of this node and the comma separated base URLs of its peers, to federate with other instances.
+     */
+    static final String NODE_PROPERTY = "monitorisp.node";
+    static final String PEERS_PROPERTY = "monitorisp.peers";
+    /**
+     * The file to write a continuous flight recording to at shutdown. There is no recording without it.
+     */
+    static final String JFR_PROPERTY = "monitorisp.jfr";
+    private final FlightRecording flightRecording = new FlightRecording();
+    private static Federation federation;
+    private ConfigFileWatcher configFileWatcher;
+    /**
+     * The maximum time to wait for the probe cycle in progress at shutdown, in milliseconds.
+     */
+    static final long SHUTDOWN_TIMEOUT = 30_000L;
+    private ControllerListener statusPublisher;
 
     /**
      * Make the CONTROLLER available.
@@ -62,6 +106,23 @@ public class WicketApplication extends WebApplication {
         return CONTROLLER;
     }
 
+    /**
+     * @return the federation with the peers of this node
+     */
+    public static Federation getFederation() {
+        return federation;
+    }
+
+    /**
+     * Get the controller of a profile.
+     *
+     * @param profile the name of the profile, null for the default profile
+     * @return the ISPController or null if there is no such profile
+     */
+    public static ISPController getController(String profile) {
+        return profile == null ? CONTROLLER : PROFILES.get(profile);
+    }
+
 	/**
      * Set the home page.
      *
@@ -74,31 +135,108 @@ public class WicketApplication extends WebApplication {
     }
 
 	/**
-     * Read the data of the previous session. Start the controller.
+     * Read the data of the previous session. Start the controllers of all profiles.
      *
      * @see org.apache.wicket.Application#init()
      */
     @Override
     public void init() {
         super.init();
+        String jfr = System.getProperty(JFR_PROPERTY, getInitParameter("jfr"));
+        if (jfr != null) {
+            flightRecording.start(Paths.get(jfr));
+        }
         // disable Content Security Policy; see https://cwiki.apache.org/confluence/display/WICKET/Migration+to+Wicket+9.0
         getCspSettings().blocking().disabled();
-        if (!CONTROLLER.isRunning()) {
-            CONTROLLER.initWithPreviousSessionData();
-            CONTROLLER.doInBackground(getAddresses(CONTROLLER.getSelected()));
-            LOGGER.info("Application init(): The service is started for checking connections with hosts {}", CONTROLLER.getSelected());
+        mountResource("/export", new ResourceReference("export") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public IResource getResource() {
+                return new ExportResource();
+            }
+        });
+        mountPage("/dashboard/#{profile}", DashboardPage.class);
+        mountResource("/timeline", TimelineResource.REFERENCE);
+        mountResource("/api/status", StatusApiResource.REFERENCE);
+        mountResource("/api/outages", OutagesApiResource.REFERENCE);
+        mountResource("/api/hosts", HostsApiResource.REFERENCE);
+        mountResource("/api/profiles", ProfilesApiResource.REFERENCE);
+        mountResource("/api/config", ConfigApiResource.REFERENCE);
+        mountResource("/api/federation/outages", FederationExchangeResource.REFERENCE);
+        mountResource("/api/federation", FederationApiResource.REFERENCE);
+        mountResource("/metrics", MetricsResource.REFERENCE);
+        mountResource("/events", EventStreamResource.REFERENCE);
+        statusPublisher = new StatusPublisher(this);
+        CONTROLLER.addListener(statusPublisher);
+        String profiles = System.getProperty(PROFILES_PROPERTY, getInitParameter("profiles"));
+        if (profiles != null) {
+            for (String name : profiles.split(",")) {
+                if (!name.isBlank()) {
+                    PROFILES.create(name.trim());
+                }
+            }
+        }
+        for (ISPController controller : PROFILES.getAll()) {
+            controller.addListener(EventStreamResource.getBroadcaster());
+            if (!controller.isRunning()) {
+                controller.initWithPreviousSessionData();
+                controller.doInBackground(getAddresses(controller.getSelected()));
+                LOGGER.info("Application init(): The service of profile {} is started for checking connections with hosts {}",
+                        controller.getProfile(), controller.getSelected());
+            }
         }
+        ControllerManagement.registerAll(PROFILES.getAll());
+        federation = new Federation(System.getProperty(NODE_PROPERTY, getNodeName()), CONTROLLER, getPeers());
+        federation.start();
+        configFileWatcher = new ConfigFileWatcher(PROFILES);
+        configFileWatcher.start();
+    }
+
+    private String getNodeName() {
+        String node = getInitParameter("node");
+        if (node == null) {
+            try {
+                node = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException ex) {
+                node = "monitorisp";
+            }
+        }
+        return node;
+    }
+
+    private List<String> getPeers() {
+        List<String> peers = new ArrayList<>();
+        String value = System.getProperty(PEERS_PROPERTY, getInitParameter("peers"));
+        if (value != null) {
+            for (String url : value.split(",")) {
+                if (!url.isBlank()) {
+                    peers.add(url.trim());
+                }
+            }
+        }
+        return peers;
     }
 
     /**
-     * Kill the running thread and save current session data before service exitService.
+     * Stop the controllers, wait for the probe cycles in progress and save the current session data of every profile.
      */
     @Override
     public void onDestroy() {
-        CONTROLLER.exitService();
-        sleepMillis(140);
-        if (CONTROLLER.getSessionData().saveData()) {
-            LOGGER.info("Session data is saved at exiting the application.");
+        CONTROLLER.removeListener(statusPublisher);
+        for (ISPController controller : PROFILES.getAll()) {
+            controller.removeListener(EventStreamResource.getBroadcaster());
+        }
+        EventStreamResource.getBroadcaster().closeAll();
+        federation.stop();
+        configFileWatcher.stop();
+        ControllerManagement.unregisterAll(PROFILES.getAll());
+        PROFILES.shutdown(SHUTDOWN_TIMEOUT);
+        for (ISPController controller : PROFILES.getAll()) {
+            if (controller.getSessionData().saveData()) {
+                LOGGER.info("Session data of profile {} is saved at exiting the application.", controller.getProfile());
+            }
         }
+        flightRecording.stop();
     }
 }
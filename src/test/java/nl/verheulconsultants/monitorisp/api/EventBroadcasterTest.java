@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * EventBroadcaster tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class EventBroadcasterTest {
+
+    /**
+     * Every subscriber gets the events in order.
+     */
+    @Test
+    public void testEvents() throws InterruptedException {
+        System.out.println("testEvents");
+        EventBroadcaster instance = new EventBroadcaster(4, 2);
+        EventBroadcaster.Subscriber first = instance.subscribe();
+        EventBroadcaster.Subscriber second = instance.subscribe();
+        assertNull("too many subscribers", instance.subscribe());
+
+        ISPController controller = new ISPController();
+        instance.outageStarted(controller, 60_000L, ISP);
+        instance.outageEnded(controller, 60_000L, 90_000L, ISP);
+        assertEquals("id: 1\nevent: outage-start\ndata: {\"profile\":\"default\",\"start\":\"1970-01-01T00:01:00Z\",\"cause\":\"ISP\"}\n\n", first.next(0L));
+        assertEquals("id: 2\nevent: outage-end\ndata: {\"profile\":\"default\",\"start\":\"1970-01-01T00:01:00Z\",\"end\":\"1970-01-01T00:01:30Z\",\"duration\":30000,"
+                + "\"cause\":\"ISP\"}\n\n", first.next(0L));
+        assertNull(first.next(0L));
+        assertTrue(second.next(0L).startsWith("id: 1\n"));
+
+        instance.unsubscribe(first);
+        assertEquals(1, instance.getSubscriberCount());
+        assertNotNull(instance.subscribe());
+    }
+
+    /**
+     * A subscriber that does not read is disconnected when its buffer is full; the others are not affected.
+     */
+    @Test
+    public void testLaggingSubscriber() throws InterruptedException {
+        System.out.println("testLaggingSubscriber");
+        EventBroadcaster instance = new EventBroadcaster(3, 10);
+        EventBroadcaster.Subscriber stuck = instance.subscribe();
+        EventBroadcaster.Subscriber reader = instance.subscribe();
+        for (int i = 0; i < 10; i++) {
+            instance.broadcast("default", "cycle", "{}");
+            assertNotNull(reader.next(0L));
+        }
+        assertTrue(stuck.isClosed());
+        assertNull(stuck.next(0L));
+        assertFalse(reader.isClosed());
+        assertEquals(1, instance.getSubscriberCount());
+    }
+
+    /**
+     * A subscriber to a profile gets the events of that profile only.
+     */
+    @Test
+    public void testProfileSubscriber() throws InterruptedException {
+        System.out.println("testProfileSubscriber");
+        EventBroadcaster instance = new EventBroadcaster(4, 10);
+        EventBroadcaster.Subscriber all = instance.subscribe();
+        EventBroadcaster.Subscriber office = instance.subscribe("office");
+        instance.broadcast("default", "cycle", "{}");
+        instance.broadcast("office", "cycle", "{}");
+        assertTrue(all.next(0L).startsWith("id: 1\n"));
+        assertTrue(all.next(0L).startsWith("id: 2\n"));
+        assertTrue(office.next(0L).startsWith("id: 2\n"));
+        assertNull(office.next(0L));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.ProbeMetrics;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * MetricsResource tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class MetricsResourceTest {
+
+    /**
+     * All metric families are present, each with its type, and the samples of every profile.
+     */
+    @Test
+    public void testWriteMetrics() {
+        System.out.println("testWriteMetrics");
+        ISPController controller = new ISPController();
+        ProbeMetrics metrics = controller.getMetrics();
+        metrics.recordProbe("uva.nl", 12_000L);
+        metrics.recordProbe("vu.nl", 900_000L);
+        metrics.getCycleDuration().record(12_500L);
+        metrics.getStartLag().record(300L);
+        metrics.recordProbeGap(1_000_000L, 7_500L);
+        ISPController office = new ISPController("office", null, 16);
+        office.getMetrics().recordProbe("uva.nl", 30_000L);
+
+        StringBuilder sb = new StringBuilder();
+        MetricsResource.writeMetrics(List.of(controller, office), sb);
+        String text = sb.toString();
+        assertTrue(text, text.contains("# TYPE monitorisp_checks_total counter\nmonitorisp_checks_total{profile=\"default\",result=\"success\"} 0\n"));
+        assertTrue(text, text.contains("monitorisp_interruptions_total{profile=\"default\"} 0\nmonitorisp_interruptions_total{profile=\"office\"} 0\n"));
+        assertTrue(text, text.contains("monitorisp_unavailability_seconds_total{profile=\"default\",cause=\"ISP\"} 0.000000\n"));
+        assertTrue(text, text.contains("monitorisp_unavailability_seconds_total{profile=\"office\",cause=\"FLAPPING\"} 0.000000\n"));
+        assertTrue(text, text.contains("# TYPE monitorisp_probe_duration_seconds histogram\n"));
+        assertTrue(text, text.contains("monitorisp_probe_duration_seconds_bucket{profile=\"default\",host=\"uva.nl\",le=\"0.025\"} 1\n"));
+        assertTrue(text, text.contains("monitorisp_probe_duration_seconds_bucket{profile=\"office\",host=\"uva.nl\",le=\"0.025\"} 0\n"));
+        assertTrue(text, text.contains("monitorisp_probe_duration_seconds_sum{profile=\"default\",host=\"vu.nl\"} 0.900000\n"));
+        assertTrue(text, text.contains("monitorisp_probe_cycle_duration_seconds_count{profile=\"default\"} 1\n"));
+        assertTrue(text, text.contains("monitorisp_session_save_duration_seconds_count{profile=\"office\"} 0\n"));
+        assertTrue(text, text.contains("monitorisp_probe_start_lag_seconds_bucket{profile=\"default\",le=\"0.001\"} 1\n"));
+        assertTrue(text, text.contains("# TYPE monitorisp_probe_interval_drift_seconds histogram\n"));
+        assertTrue(text, text.contains("monitorisp_probe_gaps_total{profile=\"default\"} 1\nmonitorisp_probe_gaps_total{profile=\"office\"} 0\n"));
+        assertTrue(text, text.contains("monitorisp_probe_gap_seconds_total{profile=\"default\"} 7.500000\n"));
+        assertEquals("one header per metric", text.indexOf("# TYPE monitorisp_up "), text.lastIndexOf("# TYPE monitorisp_up "));
+        assertTrue(text.endsWith("\n"));
+    }
+}
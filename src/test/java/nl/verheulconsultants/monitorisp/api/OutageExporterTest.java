@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import nl.verheulconsultants.monitorisp.service.ProbeSampleLog;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * OutageExporter tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutageExporterTest {
+
+    private static OutageStore sampleStore() {
+        OutageStore store = new OutageStore();
+        store.append(0L, 60_000L, ISP);
+        store.append(120_000L, 125_000L, INTERNAL);
+        store.append(180_000L, 240_000L, FLAPPING, 7);
+        return store;
+    }
+
+    /**
+     * CSV output has a header and one line per selected outage.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testOutagesCsv() throws IOException {
+        System.out.println("testOutagesCsv");
+        StringWriter out = new StringWriter();
+        long count = new OutageExporter(out, OutageExporter.CSV).writeOutages(sampleStore(), 0L, Long.MAX_VALUE, OutageExporter.ALL_CAUSES);
+        assertEquals(3L, count);
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("index,start,end,durationMillis,cause,interruptions", lines[0]);
+        assertEquals("1,1970-01-01T00:00:00Z,1970-01-01T00:01:00Z,60000,ISP,1", lines[1]);
+        assertEquals("3,1970-01-01T00:03:00Z,1970-01-01T00:04:00Z,60000,FLAPPING,7", lines[3]);
+    }
+
+    /**
+     * NDJSON output filtered on cause and time range.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testOutagesNdjsonFiltered() throws IOException {
+        System.out.println("testOutagesNdjsonFiltered");
+        StringWriter out = new StringWriter();
+        OutageExporter exporter = new OutageExporter(out, OutageExporter.NDJSON);
+        assertEquals(1L, exporter.writeOutages(sampleStore(), 0L, Long.MAX_VALUE, INTERNAL));
+        assertEquals("{\"index\":2,\"start\":\"1970-01-01T00:02:00Z\",\"end\":\"1970-01-01T00:02:05Z\","
+                + "\"durationMillis\":5000,\"cause\":\"INTERNAL\",\"interruptions\":1}\n", out.toString());
+
+        out.getBuffer().setLength(0);
+        assertEquals(2L, exporter.writeOutages(sampleStore(), 30_000L, 121_000L, OutageExporter.ALL_CAUSES));
+    }
+
+    /**
+     * Probe samples are written in order of recording.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testProbes() throws IOException {
+        System.out.println("testProbes");
+        ProbeSampleLog log = new ProbeSampleLog(16);
+        log.add(1_000L, "a.example", 1_500L, true);
+        log.add(2_000L, "b.example", 0L, false);
+        StringWriter out = new StringWriter();
+        assertEquals(2L, new OutageExporter(out, OutageExporter.CSV).writeProbes(log, 0L, Long.MAX_VALUE));
+        String[] lines = out.toString().split("\n");
+        assertEquals("sequence,time,host,success,rttMicros", lines[0]);
+        assertTrue(lines[1].startsWith("0,1970-01-01T00:00:01Z,a.example,true,"));
+        assertTrue(lines[2].startsWith("1,1970-01-01T00:00:02Z,b.example,false,"));
+    }
+
+    /**
+     * Request parameter parsing.
+     */
+    @Test
+    public void testParameters() {
+        System.out.println("testParameters");
+        assertEquals(OutageExporter.NDJSON, ExportResource.parseFormat("ndjson"));
+        assertEquals(1_000L, ExportResource.parseTime("1000", 0L));
+        assertEquals(60_000L, ExportResource.parseTime("1970-01-01T00:01:00Z", 0L));
+        assertEquals(-5L, ExportResource.parseTime(null, -5L));
+        assertEquals(FLAPPING, ExportResource.parseCause("flapping"));
+        assertEquals(OutageExporter.ALL_CAUSES, ExportResource.parseCause(null));
+        try {
+            ExportResource.parseCause("meteor");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * OutagesApiResource tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutagesApiResourceTest {
+
+    private static OutagesApiResource resource(final OutageStore store) {
+        return new OutagesApiResource() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected OutageStore getStore() {
+                return store;
+            }
+        };
+    }
+
+    private static String page(OutagesApiResource resource, PageParameters parameters) {
+        StringBuilder sb = new StringBuilder();
+        resource.writeJson(parameters, sb);
+        return sb.toString();
+    }
+
+    private static OutageStore sampleStore() {
+        OutageStore store = new OutageStore();
+        for (int i = 0; i < 10; i++) {
+            store.append(i * 60_000L, i * 60_000L + 1_000L, i % 3 == 0 ? INTERNAL : ISP);
+        }
+        return store;
+    }
+
+    /**
+     * Walk the history in pages using the cursor.
+     */
+    @Test
+    public void testCursor() {
+        System.out.println("testCursor");
+        OutageStore store = sampleStore();
+        OutagesApiResource instance = resource(store);
+        String first = page(instance, new PageParameters().add("limit", 4).add("from", 120_000L));
+        assertTrue(first, first.startsWith("{\"version\":10,\"items\":[{\"index\":3,\"start\":\"1970-01-01T00:02:00Z\""));
+        assertTrue(first, first.endsWith("\"nextCursor\":\"6\"}"));
+
+        String last = page(instance, new PageParameters().add("limit", 4).add("cursor", "6"));
+        assertEquals(4, last.split("\"index\"").length - 1);
+        assertTrue(last, last.endsWith("\"nextCursor\":\"10\"}"));
+
+        // polling at the end returns nothing until a new outage is added
+        assertEquals("{\"version\":10,\"items\":[],\"nextCursor\":\"10\"}", page(instance, new PageParameters().add("cursor", "10")));
+        store.append(600_000L, 601_000L, ISP);
+        assertTrue(page(instance, new PageParameters().add("cursor", "10")).contains("\"index\":11"));
+    }
+
+    /**
+     * Newest first, filtered on cause and time.
+     */
+    @Test
+    public void testDescending() {
+        System.out.println("testDescending");
+        OutagesApiResource instance = resource(sampleStore());
+        String json = page(instance, new PageParameters().add("order", "desc").add("cause", "INTERNAL").add("to", 540_000L).add("limit", 1));
+        assertTrue(json, json.contains("[{\"index\":7,"));
+        assertTrue(json, json.endsWith("\"nextCursor\":\"5\"}"));
+        json = page(instance, new PageParameters().add("order", "desc").add("cause", "INTERNAL").add("cursor", "5"));
+        assertTrue(json, json.contains("\"index\":4,"));
+        assertTrue(json, json.contains("\"index\":1,"));
+        assertTrue(json, json.endsWith("\"nextCursor\":null}"));
+    }
+
+    /**
+     * Invalid parameters are rejected.
+     */
+    @Test
+    public void testInvalid() {
+        System.out.println("testInvalid");
+        OutagesApiResource instance = resource(sampleStore());
+        for (PageParameters parameters : new PageParameters[]{new PageParameters().add("cursor", "11"),
+            new PageParameters().add("cursor", "10").add("order", "desc"), new PageParameters().add("cursor", "x"),
+            new PageParameters().add("limit", 5_000)}) {
+            try {
+                page(instance, parameters);
+                fail("Accepted " + parameters);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
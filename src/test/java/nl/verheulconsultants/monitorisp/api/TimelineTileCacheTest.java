@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.api;
+
+import nl.verheulconsultants.monitorisp.service.AvailabilityRollup;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.DAY;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.HOUR;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * TimelineTileCache and TimelineRenderer tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class TimelineTileCacheTest {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    /**
+     * Cells are coloured by the cause with the most downtime.
+     */
+    @Test
+    public void testRender() {
+        System.out.println("testRender");
+        AvailabilityRollup rollup = new AvailabilityRollup(0L);
+        long day = rollup.getPeriodStart(System.currentTimeMillis() - 10 * 24 * HOUR_MILLIS, DAY);
+        rollup.addUptime(day, day + 2 * HOUR_MILLIS);
+        rollup.addOutage(day + 2 * HOUR_MILLIS, day + 2 * HOUR_MILLIS + 60_000L, ISP);
+        rollup.addUptime(day + 2 * HOUR_MILLIS + 60_000L, day + 3 * HOUR_MILLIS);
+
+        String svg = TimelineRenderer.render(rollup, HOUR, day, System.currentTimeMillis());
+        assertTrue(svg.startsWith("<svg "));
+        assertEquals(24, svg.split("<rect ").length - 1);
+        assertEquals(2, svg.split("fill=\"" + TimelineRenderer.UP_COLOUR + "\"").length - 1);
+        assertTrue(svg, svg.contains("fill=\"#d62728\" fill-opacity=\"0.42\"><title>"));
+        assertTrue(svg, svg.contains(" availability 98.333 %, ISP "));
+    }
+
+    /**
+     * Past tiles are rendered again only when their window changes; current tiles are never cached.
+     */
+    @Test
+    public void testInvalidation() {
+        System.out.println("testInvalidation");
+        AvailabilityRollup rollup = new AvailabilityRollup(0L);
+        long now = System.currentTimeMillis();
+        long day = rollup.getPeriodStart(now - 10 * 24 * HOUR_MILLIS, DAY);
+        long otherDay = rollup.getPeriodStart(now - 5 * 24 * HOUR_MILLIS, DAY);
+        rollup.addUptime(day, day + HOUR_MILLIS);
+        TimelineTileCache instance = new TimelineTileCache(16);
+
+        TimelineTileCache.Tile first = instance.get(rollup, HOUR, day + 5L, now);
+        assertFalse(first.isLive());
+        assertSame(first, instance.get(rollup, HOUR, day + HOUR_MILLIS, now));
+        assertEquals(1L, instance.getHits());
+
+        rollup.addOutage(otherDay, otherDay + 60_000L, INTERNAL);
+        assertSame("a change in another window keeps the tile", first, instance.get(rollup, HOUR, day, now));
+
+        rollup.addOutage(day + HOUR_MILLIS, day + HOUR_MILLIS + 60_000L, INTERNAL);
+        TimelineTileCache.Tile second = instance.get(rollup, HOUR, day, now);
+        assertNotSame(first, second);
+        assertNotEquals(first.getEtag(), second.getEtag());
+
+        TimelineTileCache.Tile today = instance.get(rollup, HOUR, now, now);
+        assertTrue(today.isLive());
+        assertNotSame(today, instance.get(rollup, HOUR, now, now));
+        assertEquals(1, instance.size());
+
+        assertNotSame("a reloaded rollup clears the cache", second, instance.get(new AvailabilityRollup(0L), HOUR, day, now));
+    }
+}
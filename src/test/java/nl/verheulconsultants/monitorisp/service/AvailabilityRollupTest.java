@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.DAY;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.HOUR;
+import static nl.verheulconsultants.monitorisp.service.AvailabilityRollup.MONTH;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * AvailabilityRollup tests with fixed calendar times in the default time zone.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class AvailabilityRollupTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE;
+    private AvailabilityRollup instance;
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     *
+     */
+    @Before
+    public void setUp() {
+        instance = new AvailabilityRollup(time(2021, 1, 1, 0, 0));
+    }
+
+    /**
+     * An outage over midnight at the end of a month must be split over two hours, two days and two months.
+     */
+    @Test
+    public void testOutageSplitOverBoundaries() {
+        System.out.println("testOutageSplitOverBoundaries");
+        long start = time(2021, 1, 31, 23, 50);
+        long end = time(2021, 2, 1, 0, 20);
+        instance.addOutage(start, end, ISP);
+        assertEquals(10 * MINUTE, instance.getBuckets(HOUR).get(time(2021, 1, 31, 23, 0)).getDowntime(ISP));
+        assertEquals(20 * MINUTE, instance.getBuckets(HOUR).get(time(2021, 2, 1, 0, 0)).getDowntime(ISP));
+        assertEquals(10 * MINUTE, instance.getBuckets(DAY).get(time(2021, 1, 31, 0, 0)).getDowntime(ISP));
+        assertEquals(20 * MINUTE, instance.getBuckets(MONTH).get(time(2021, 2, 1, 0, 0)).getDowntime(ISP));
+        // the outage is counted once, in the period it started
+        assertEquals(1, instance.getBuckets(MONTH).get(time(2021, 1, 1, 0, 0)).getCount(ISP));
+        assertEquals(0, instance.getBuckets(MONTH).get(time(2021, 2, 1, 0, 0)).getCount(ISP));
+        assertEquals(30 * MINUTE, instance.getDowntime(time(2021, 1, 1, 0, 0), time(2021, 3, 1, 0, 0), ISP));
+    }
+
+    /**
+     * Queries over a range that is not aligned to days or months use the finer buckets at the edges.
+     */
+    @Test
+    public void testUnalignedRange() {
+        System.out.println("testUnalignedRange");
+        instance.addUptime(time(2021, 1, 1, 0, 0), time(2021, 4, 1, 0, 0));
+        instance.addOutage(time(2021, 2, 10, 5, 0), time(2021, 2, 10, 6, 0), INTERNAL);
+        instance.addOutage(time(2021, 3, 3, 3, 0), time(2021, 3, 3, 3, 30), ISP);
+        long from = time(2021, 1, 15, 7, 0);
+        long to = time(2021, 3, 3, 4, 0);
+        assertEquals(to - from, instance.getUptime(from, to));
+        assertEquals(HOUR_MILLIS, instance.getDowntime(from, to, INTERNAL));
+        assertEquals(30 * MINUTE, instance.getDowntime(from, to, ISP));
+        assertEquals(1, instance.getOutageCount(from, to, ISP));
+        assertEquals(0, instance.getOutageCount(from, time(2021, 3, 3, 3, 0), ISP));
+    }
+
+    /**
+     * The ongoing outage is part of the answers and is added to the buckets only once when it is closed.
+     */
+    @Test
+    public void testOngoingOutage() {
+        System.out.println("testOngoingOutage");
+        long now = System.currentTimeMillis();
+        long start = now - 2 * HOUR_MILLIS;
+        instance.openOutage(start, ISP);
+        long down = instance.getDowntime(start - HOUR_MILLIS, now + HOUR_MILLIS, ISP);
+        assertTrue("The ongoing outage is not included: " + down, down >= 2 * HOUR_MILLIS);
+        assertEquals(1, instance.getOutageCount(start - HOUR_MILLIS, now + HOUR_MILLIS, ISP));
+        instance.closeOutage(now, ISP);
+        assertEquals(2 * HOUR_MILLIS, instance.getDowntime(start - HOUR_MILLIS, now + HOUR_MILLIS, ISP));
+        assertEquals(1, instance.getOutageCount(start - HOUR_MILLIS, now + HOUR_MILLIS, ISP));
+    }
+
+    /**
+     * Test of getAvailability method, of class AvailabilityRollup.
+     */
+    @Test
+    public void testGetAvailability() {
+        System.out.println("testGetAvailability");
+        long from = time(2021, 6, 1, 0, 0);
+        long to = time(2021, 6, 2, 0, 0);
+        assertEquals(100.0, instance.getAvailability(from, to), 0.0);
+        instance.addUptime(from, time(2021, 6, 1, 12, 0));
+        instance.addOutage(time(2021, 6, 1, 12, 0), time(2021, 6, 1, 18, 0), ISP);
+        instance.addUptime(time(2021, 6, 1, 18, 0), to);
+        assertEquals(75.0, instance.getAvailability(from, to), 0.001);
+    }
+
+    /**
+     * The buckets must survive saving and loading the session data.
+     *
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        System.out.println("testSerialization");
+        long from = time(2021, 6, 1, 0, 0);
+        long to = time(2021, 7, 1, 0, 0);
+        instance.addUptime(from, time(2021, 6, 5, 12, 0));
+        instance.addOutage(time(2021, 6, 5, 12, 0), time(2021, 6, 5, 12, 45), INTERNAL);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(instance);
+        }
+        AvailabilityRollup read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (AvailabilityRollup) ois.readObject();
+        }
+        assertEquals(instance.getUptime(from, to), read.getUptime(from, to));
+        assertEquals(45 * MINUTE, read.getDowntime(from, to, INTERNAL));
+        assertEquals(1, read.getOutageCount(from, to, INTERNAL));
+        assertEquals(1L, read.getDurationSketch(from, to, INTERNAL).getCount());
+    }
+
+    /**
+     * The duration quantiles of a period are merged from the sketches of its buckets.
+     */
+    @Test
+    public void testGetDurationSketch() {
+        System.out.println("testGetDurationSketch");
+        for (int day = 1; day <= 20; day++) {
+            long start = time(2021, 5, day, 10, 0);
+            instance.addOutage(start, start + day * MINUTE, ISP);
+        }
+        // an outage over midnight is counted once with its full duration
+        instance.addOutage(time(2021, 5, 25, 23, 0), time(2021, 5, 26, 1, 0), ISP);
+        DurationSketch may = instance.getDurationSketch(time(2021, 5, 1, 0, 0), time(2021, 6, 1, 0, 0), ISP);
+        assertEquals(21L, may.getCount());
+        assertEquals(120 * MINUTE, may.getQuantile(1.0));
+        long median = may.getQuantile(0.5);
+        assertTrue("Median " + median, Math.abs(median - 11 * MINUTE) <= 0.01 * 11 * MINUTE);
+        DurationSketch firstWeek = instance.getDurationSketch(time(2021, 5, 1, 0, 0), time(2021, 5, 8, 0, 0), ISP);
+        assertEquals(7L, firstWeek.getCount());
+        assertEquals(0L, instance.getDurationSketch(time(2021, 5, 1, 0, 0), time(2021, 6, 1, 0, 0), INTERNAL).getCount());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.setSessionsDataFileNameForTest;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ControllerManagement tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ControllerManagementTest {
+
+    /**
+     * The attributes and operations are available on the platform MBean server.
+     */
+    @Test
+    public void testMBean() throws JMException {
+        System.out.println("testMBean");
+        setSessionsDataFileNameForTest();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ISPController controller = new ISPController("jmx", null, 16);
+        controller.initWithDefaults();
+        ObjectName name = ControllerManagement.getObjectName("jmx");
+        try {
+            ControllerManagement.registerAll(List.of(controller));
+            assertTrue(server.isRegistered(name));
+            assertEquals("jmx", server.getAttribute(name, "Profile"));
+            assertEquals(false, server.getAttribute(name, "Checking"));
+            assertEquals(0L, server.getAttribute(name, "Cycles"));
+            assertEquals(0L, server.getAttribute(name, "MeanCycleMicros"));
+            TabularData unavailability = (TabularData) server.getAttribute(name, "UnavailabilityMillis");
+            assertEquals(Utilities.NUMBER_OF_CAUSES, unavailability.size());
+            CompositeData isp = unavailability.get(new Object[]{"ISP"});
+            assertEquals(0L, isp.get("value"));
+
+            long version = (Long) server.invoke(name, "changeCheckInterval", new Object[]{10_000}, new String[]{"int"});
+            assertEquals(version, controller.getConfig().getVersion());
+            assertEquals(10_000, server.getAttribute(name, "CheckInterval"));
+            assertEquals(false, server.invoke(name, "probeNow", null, null));
+            new File(getSessionDataFileName("jmx")).delete();
+            server.invoke(name, "flush", null, null);
+            assertTrue(new File(getSessionDataFileName("jmx")).exists());
+        } finally {
+            ControllerManagement.unregisterAll(List.of(controller));
+            new File(getSessionDataFileName("jmx")).delete();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
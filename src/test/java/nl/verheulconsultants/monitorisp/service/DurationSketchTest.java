@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * DurationSketch tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class DurationSketchTest {
+
+    private static void assertRelative(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= 0.01 * expected + 1);
+    }
+
+    /**
+     * The quantiles must be within one percent of the exact values.
+     */
+    @Test
+    public void testGetQuantile() {
+        System.out.println("testGetQuantile");
+        DurationSketch instance = new DurationSketch();
+        assertEquals(0L, instance.getQuantile(0.5));
+        Random random = new Random(42);
+        long[] durations = new long[10_000];
+        for (int i = 0; i < durations.length; i++) {
+            // from a second up to a few hours
+            durations[i] = (long) (1_000 * Math.exp(random.nextDouble() * 9));
+            instance.add(durations[i]);
+        }
+        Arrays.sort(durations);
+        assertEquals(durations.length, instance.getCount());
+        assertRelative(durations[(int) (0.5 * (durations.length - 1))], instance.getQuantile(0.5));
+        assertRelative(durations[(int) (0.99 * (durations.length - 1))], instance.getQuantile(0.99));
+        assertEquals(durations[0], instance.getQuantile(0.0));
+        assertEquals(durations[durations.length - 1], instance.getQuantile(1.0));
+    }
+
+    /**
+     * Merged sketches must answer as one sketch with all durations.
+     */
+    @Test
+    public void testMerge() {
+        System.out.println("testMerge");
+        DurationSketch all = new DurationSketch();
+        DurationSketch first = new DurationSketch();
+        DurationSketch second = new DurationSketch();
+        for (int i = 1; i <= 1_000; i++) {
+            all.add(i * 1_000L);
+            (i % 3 == 0 ? first : second).add(i * 1_000L);
+        }
+        DurationSketch merged = new DurationSketch();
+        merged.merge(first);
+        merged.merge(second);
+        merged.merge(new DurationSketch());
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getQuantile(0.5), merged.getQuantile(0.5));
+        assertEquals(all.getQuantile(0.99), merged.getQuantile(0.99));
+    }
+
+    /**
+     * The sketch must survive saving and loading the session data.
+     *
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        System.out.println("testSerialization");
+        DurationSketch instance = new DurationSketch();
+        instance.add(0L);
+        instance.add(5_000L);
+        instance.add(3_600_000L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(instance);
+        }
+        DurationSketch read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (DurationSketch) ois.readObject();
+        }
+        assertEquals(3L, read.getCount());
+        assertEquals(instance.getQuantile(0.5), read.getQuantile(0.5));
+        assertEquals(3_600_000L, read.getQuantile(1.0));
+        assertEquals(0L, read.getQuantile(0.0));
+    }
+}
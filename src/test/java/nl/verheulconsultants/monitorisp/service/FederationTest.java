@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Federation tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class FederationTest {
+
+    private static Federation.Peer exchange(Federation.Peer peer, long epoch, OutageStore store) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Federation.writeBatch("site-b", epoch, store, peer.getSequence(), sb);
+        Federation.readBatch(peer, new StringReader(sb.toString()));
+        return peer;
+    }
+
+    /**
+     * A peer receives only the outages after the last sequence number it has.
+     */
+    @Test
+    public void testIncrementalExchange() throws IOException {
+        System.out.println("testIncrementalExchange");
+        OutageStore store = new OutageStore();
+        store.append(1_000L, 2_000L, ISP);
+        store.append(3_000L, 4_000L, FLAPPING, 3);
+        Federation.Peer peer = exchange(new Federation.Peer("http://site-b"), 42L, store);
+        assertEquals("site-b", peer.getNode());
+        assertEquals(42L, peer.getEpoch());
+        assertEquals(2, peer.getSequence());
+        assertEquals(3, peer.getHistory().getInterruptions(1));
+
+        store.append(5_000L, 6_000L, INTERNAL);
+        StringBuilder sb = new StringBuilder();
+        assertEquals(1, Federation.writeBatch("site-b", 42L, store, peer.getSequence(), sb));
+        assertEquals("monitorisp-outages 1 site-b 42 3\n3 5000 6000 1 1\n", sb.toString());
+        Federation.readBatch(peer, new StringReader(sb.toString()));
+        assertEquals(3, peer.getSequence());
+        assertEquals(5_000L, peer.getHistory().getStart(2));
+
+        try {
+            // the same batch again does not continue the sequence
+            Federation.readBatch(peer, new StringReader(sb.toString()));
+            fail("Sequence gap accepted");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * A peer with a new epoch has a new history that is fetched again.
+     */
+    @Test
+    public void testNewEpoch() throws IOException {
+        System.out.println("testNewEpoch");
+        OutageStore store = new OutageStore();
+        store.append(1_000L, 2_000L, ISP);
+        Federation.Peer peer = exchange(new Federation.Peer("http://site-b"), 42L, store);
+        assertEquals(1, peer.getSequence());
+
+        OutageStore newStore = new OutageStore();
+        newStore.append(7_000L, 8_000L, ISP);
+        newStore.append(9_000L, 9_500L, ISP);
+        StringBuilder sb = new StringBuilder();
+        Federation.writeBatch("site-b", 43L, newStore, peer.getSequence(), sb);
+        assertEquals(Federation.REFETCH, Federation.readBatch(peer, new StringReader(sb.toString())));
+        assertEquals(0, peer.getSequence());
+        exchange(peer, 43L, newStore);
+        assertEquals(2, peer.getSequence());
+        assertEquals(7_000L, peer.getHistory().getStart(0));
+    }
+
+    /**
+     * A local outage of the line is shared if a peer had an outage of the line at the same time.
+     */
+    @Test
+    public void testSharedWith() throws IOException {
+        System.out.println("testSharedWith");
+        OutageStore remote = new OutageStore();
+        remote.append(10_000L, 20_000L, ISP);
+        remote.append(30_000L, 40_000L, INTERNAL);
+        remote.append(50_000L, 60_000L, FLAPPING, 4);
+        Federation federation = new Federation("site-a", new ISPController(), List.of("http://site-b"));
+        exchange(federation.getPeers().get(0), 42L, remote);
+
+        OutageStore local = new OutageStore();
+        local.append(15_000L, 16_000L, ISP);
+        local.append(19_000L, 25_000L, ISP);
+        local.append(20_000L, 30_000L, ISP);
+        local.append(35_000L, 36_000L, ISP);
+        local.append(45_000L, 55_000L, INTERNAL);
+        local.append(58_000L, 70_000L, ISP);
+        assertEquals(List.of("site-b"), federation.getSharedWith(local, 0));
+        assertEquals(List.of("site-b"), federation.getSharedWith(local, 1));
+        assertTrue("touching is not overlapping", federation.getSharedWith(local, 2).isEmpty());
+        assertTrue("the peer had a local failure", federation.getSharedWith(local, 3).isEmpty());
+        assertTrue("a local failure is site-local", federation.getSharedWith(local, 4).isEmpty());
+        assertEquals(List.of("site-b"), federation.getSharedWith(local, 5));
+    }
+
+    /**
+     * Polling over HTTP fetches a long history in batches.
+     */
+    @Test
+    public void testPoll() throws IOException {
+        System.out.println("testPoll");
+        OutageStore store = new OutageStore();
+        for (int i = 0; i < 2 * Federation.MAX_BATCH + 10; i++) {
+            store.append(i * 1_000L, i * 1_000L + 500L, ISP);
+        }
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/federation/outages", exchange -> {
+            requests.incrementAndGet();
+            int since = Integer.parseInt(exchange.getRequestURI().getQuery().substring("since=".length()));
+            StringBuilder sb = new StringBuilder();
+            Federation.writeBatch("site-b", 42L, store, since, sb);
+            byte[] body = sb.toString().getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            Federation.Peer peer = new Federation.Peer("http://127.0.0.1:" + server.getAddress().getPort());
+            Federation.poll(peer, client);
+            assertEquals(store.size(), peer.getSequence());
+            assertEquals(3, requests.get());
+            assertNull(peer.getLastError());
+            assertTrue(peer.getLastPoll() > 0L);
+
+            store.append(1_000_000_000L, 1_000_000_500L, ISP);
+            Federation.poll(peer, client);
+            assertEquals(store.size(), peer.getSequence());
+            assertEquals(4, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
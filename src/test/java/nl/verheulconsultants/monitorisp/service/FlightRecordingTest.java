@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.setSessionsDataFileNameForTest;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * FlightRecording and flight recorder event tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class FlightRecordingTest {
+
+    /**
+     * The bundled settings enable the MonitorISP events next to the default JDK events.
+     */
+    @Test
+    public void testSettings() throws IOException, ParseException {
+        System.out.println("testSettings");
+        Map<String, String> settings = FlightRecording.getSettings();
+        assertEquals("true", settings.get("nl.verheulconsultants.monitorisp.Probe#enabled"));
+        assertEquals("true", settings.get("nl.verheulconsultants.monitorisp.Persistence#enabled"));
+        assertEquals("true", settings.get("jdk.GarbageCollection#enabled"));
+    }
+
+    /**
+     * A probe and saving and loading the session data are recorded.
+     */
+    @Test
+    public void testEvents() throws IOException, ParseException {
+        System.out.println("testEvents");
+        setSessionsDataFileNameForTest();
+        Path file = Files.createTempFile("monitorisp", ".jfr");
+        ISPController controller = new ISPController("jfr", null, 16);
+        try (ServerSocket listener = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+                Recording recording = new Recording(FlightRecording.getSettings())) {
+            recording.start();
+            controller.initWithDefaults();
+            String host = listener.getInetAddress().getHostAddress();
+            controller.updateConfig(Map.of(RuntimeConfig.HOSTS, host, RuntimeConfig.PORT, Integer.toString(listener.getLocalPort())), -1);
+            controller.applyConfig();
+            assertTrue(controller.checkISP(controller.getConfig().getHosts()));
+            try (Socket accepted = listener.accept()) {
+                // the connection of the probe
+            }
+            assertTrue(controller.getSessionData().loadData());
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<RecordedEvent> probes = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("nl.verheulconsultants.monitorisp.Probe")).collect(Collectors.toList());
+            assertEquals(1, probes.size());
+            assertEquals("jfr", probes.get(0).getString("profile"));
+            assertEquals(host, probes.get(0).getString("host"));
+            assertTrue(probes.get(0).getBoolean("success"));
+            List<String> operations = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("nl.verheulconsultants.monitorisp.Persistence"))
+                    .map(e -> e.getString("operation")).collect(Collectors.toList());
+            assertEquals(List.of("save", "load"), operations);
+        } finally {
+            Files.deleteIfExists(file);
+            new File(getSessionDataFileName("jfr")).delete();
+        }
+    }
+}
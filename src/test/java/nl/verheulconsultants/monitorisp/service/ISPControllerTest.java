@@ -30,7 +30,11 @@ import java.nio.file.Path;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import static nl.verheulconsultants.monitorisp.service.Utilities.CONTROLLERDOWN;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
 import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
 import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
 import static nl.verheulconsultants.monitorisp.service.Utilities.SERVICEDOWN;
@@ -88,8 +92,7 @@ public class ISPControllerTest {
     public void tearDown() {
         System.out.println("tearDown");
         instance.exitService();
-        sleepMillis(1_500);
-        if (instance.isAlive()) {
+        if (!instance.awaitTermination(10_000)) {
             LOGGER.warn("The controller thread is still running!");
         } else {
             LOGGER.info("The controller thread has exited.");
@@ -107,6 +110,30 @@ public class ISPControllerTest {
         assertEquals("Test should not run right now.", expResult, result);
     }
 
+    /**
+     * The status is shared until the state changes.
+     */
+    @Test
+    public void testStatusSnapshot() {
+        System.out.println("testStatusSnapshot");
+        StatusSnapshot first = instance.getStatusSnapshot();
+        assertSame(first, instance.getStatusSnapshot());
+        assertSame(first.getItems(), instance.getStatusData());
+        assertEquals(14, first.getItems().size());
+        assertEquals("None", first.getItems().get(12).getValue());
+        assertEquals(instance.getOutagesSize(), first.getOutages());
+
+        instance.setRouterAddress(TESTROUTERADDRESS);
+        StatusSnapshot second = instance.getStatusSnapshot();
+        assertNotSame(first, second);
+        assertEquals("Cannot say, conroller is not running", second.getItems().get(8).getValue());
+        try {
+            second.getItems().clear();
+            fail("The status must be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
     /**
      * Test of stopTemporarily method, of class ISPController.
      */
@@ -157,10 +184,11 @@ public class ISPControllerTest {
 
         instance.doInBackground(hosts);
         sleepMillis(120);
+        assertTrue("The service should be running now", instance.isRunning());
         instance.exitService();
-        sleepMillis(1_500);
+        assertTrue("The service did not exit", instance.awaitTermination(5_000));
         assertFalse("The service should NOT be running now", instance.isRunning());
-        assertFalse("The thread schould not be running now", instance.isAlive());
+        assertFalse("The controller should NOT be checking connections now", instance.isBusyCheckingConnections());
     }
 
     /**
@@ -170,10 +198,296 @@ public class ISPControllerTest {
     public void testRun() {
         System.out.println("testRun");
         instance.start();
-        assertTrue("The thread is running now", instance.isAlive());
+        assertTrue("The service is running now", instance.isRunning());
         instance.exitService();
-        sleepMillis(1_500);
-        assertTrue("The thread schould not be running now", !instance.isAlive());
+        assertTrue("The service did not exit", instance.awaitTermination(5_000));
+        assertTrue("The service schould not be running now", !instance.isRunning());
+    }
+
+    /**
+     * The host lists are read-only snapshots; a change makes new lists.
+     */
+    @Test
+    public void testSelectionSnapshots() {
+        System.out.println("testSelectionSnapshots");
+        List<Host> choices = instance.getChoices();
+        List<Host> before = instance.getSelected();
+        int selectedBefore = before.size();
+        try {
+            before.clear();
+            fail("The selection must be read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        instance.setSelected(List.of(choices.get(0)));
+        assertEquals(1, instance.getSelected().size());
+        assertSame(choices.get(0), instance.getSelected().get(0));
+        assertEquals("The previous snapshot is not changed", selectedBefore, before.size());
+
+        instance.removeAvailableHosts();
+        assertEquals(1, instance.getChoices().size());
+        instance.addChoice("example.com");
+        assertEquals(2, instance.getChoices().size());
+        assertEquals(1, instance.getSelected().size());
+    }
+
+    /**
+     * Changing the selection while checking does not skip a check nor needs a restart.
+     */
+    @Test
+    public void testSelectionWhileChecking() {
+        System.out.println("testSelectionWhileChecking");
+        List<String> hosts = new ArrayList();
+        hosts.add("uva.nl");
+
+        instance.doInBackground(hosts);
+        sleepMillis(120);
+        int outages = instance.getOutagesSize();
+        long checks = instance.getSessionData().successfulChecks;
+        Host uva = new Host("9", "uva.nl");
+        for (int i = 0; i < 100; i++) {
+            instance.setSelected(i % 2 == 0 ? List.of(uva) : List.of(uva, new Host("10", "vu.nl")));
+        }
+        sleepMillis(5_500);
+        assertTrue("The controller is NOT checking connections now", instance.isBusyCheckingConnections());
+        assertTrue("No check was made after the change", instance.getSessionData().successfulChecks > checks);
+        assertEquals("No outage should be registered", outages, instance.getOutagesSize());
+    }
+
+    /**
+     * A new configuration is used from the next cycle; the checks go on without a registered outage.
+     */
+    @Test
+    public void testUpdateConfigWhileChecking() {
+        System.out.println("testUpdateConfigWhileChecking");
+        List<String> hosts = new ArrayList();
+        hosts.add("uva.nl");
+
+        instance.doInBackground(hosts);
+        sleepMillis(120);
+        int outages = instance.getOutagesSize();
+        long version = instance.getConfig().getVersion();
+        RuntimeConfig config = instance.updateConfig(Map.of(RuntimeConfig.CHECK_INTERVAL, "1000", RuntimeConfig.HOSTS, "uva.nl, vu.nl"), version);
+        assertEquals(version + 1, config.getVersion());
+        assertSame(config, instance.getConfig());
+        assertEquals(List.of("uva.nl", "vu.nl"), config.getHosts());
+        assertEquals(2, instance.getSelected().size());
+        long checks = instance.getSessionData().successfulChecks;
+        sleepMillis(5_500);
+        assertTrue("The controller is NOT checking connections now", instance.isBusyCheckingConnections());
+        assertTrue("The check interval is not changed", instance.getSessionData().successfulChecks >= checks + 3);
+        assertEquals("No outage should be registered", outages, instance.getOutagesSize());
+        try {
+            instance.updateConfig(Map.of(RuntimeConfig.PORT, "443"), version);
+            fail("A change of an old version is accepted");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(80, instance.getConfig().getPort());
+    }
+
+    /**
+     * A probe cycle that cannot start because the scheduler is blocked is flagged as a probe gap.
+     */
+    @Test
+    public void testProbeGap() {
+        System.out.println("testProbeGap");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ISPController controller = new ISPController("gap", () -> scheduler, 16);
+        try {
+            controller.initWithDefaults();
+            controller.updateConfig(Map.of(RuntimeConfig.CHECK_INTERVAL, "1000", RuntimeConfig.HOSTS, "uva.nl"), -1);
+            controller.start();
+            sleepMillis(500);
+            // block the scheduler longer than the tolerance; the next cycle is due in the meantime
+            scheduler.execute(() -> sleepMillis(ISPController.PROBE_GAP_TOLERANCE + 2_000L));
+            sleepMillis(ISPController.PROBE_GAP_TOLERANCE + 4_000L);
+            assertEquals(1L, controller.getMetrics().getProbeGaps());
+            assertTrue(controller.getMetrics().getProbeGapMillis() > ISPController.PROBE_GAP_TOLERANCE);
+            assertTrue(controller.getMetrics().getStartLag().getCount() >= 2L);
+            assertTrue(controller.getMetrics().getIntervalDrift().getQuantile(1.0) > ISPController.PROBE_GAP_TOLERANCE * 1_000L);
+            controller.publishStatus();
+            assertEquals(1L, controller.getStatusSnapshot().getProbeGaps());
+            assertTrue(controller.getStatusSnapshot().getItems().get(12).getValue().startsWith("1, the last at "));
+        } finally {
+            controller.exitService();
+            controller.awaitTermination(10_000);
+            scheduler.shutdownNow();
+            new File(Utilities.getSessionDataFileName("gap")).delete();
+        }
+    }
+
+    /**
+     * A stop and restart while a probe cycle is in progress does not leave the cycle of before the stop running next to the new ones.
+     */
+    @Test
+    public void testStopAndRestartDuringCycle() {
+        System.out.println("testStopAndRestartDuringCycle");
+        VirtualClock clock = new VirtualClock(1_622_548_800_000L);
+        ISPController controller = new ISPController("restart", clock::getScheduler, 16, clock);
+        int[] cycles = new int[1];
+        controller.addListener(new ControllerListener() {
+            @Override
+            public void stateChanged(ISPController c) {
+            }
+
+            @Override
+            public void probeCycleEnded(ISPController c, long time, boolean success, long micros) {
+                if (cycles[0]++ == 3) {
+                    // in the middle of the cycle
+                    c.stopTemporarily();
+                    c.restart(c.getConfig().getHosts());
+                }
+            }
+        });
+        try {
+            controller.initWithDefaults();
+            controller.updateConfig(Map.of(RuntimeConfig.RECHECK_DELAY, "1000", RuntimeConfig.HOSTS, "uva.nl"), -1);
+            // no network: the line is down and checked again every recheck delay
+            controller.simulateISPfailure(true);
+            controller.start();
+            clock.advance(5_000L);
+            assertTrue("The controller is not checking connections", controller.isBusyCheckingConnections());
+            int before = cycles[0];
+            clock.advance(10_000L);
+            assertEquals("One probe cycle per recheck delay", 10, cycles[0] - before);
+        } finally {
+            controller.exitService();
+            clock.advance(0L);
+            assertTrue(controller.awaitTermination(1_000L));
+            new File(Utilities.getSessionDataFileName("restart")).delete();
+            new File(Utilities.getProbeEventLogFileName("restart")).delete();
+        }
+    }
+
+    /**
+     * An outage in progress when the checks stop ends with them. Session data saved during an outage and read again do not keep the outage open,
+     * so the downtime does not grow while nothing is checked.
+     */
+    @Test
+    public void testOutageAtStopAndReload() {
+        System.out.println("testOutageAtStopAndReload");
+        long start = 1_622_548_800_000L;
+        long hour = 3_600_000L;
+        VirtualClock clock = new VirtualClock(start);
+        ISPController controller = new ISPController("stale", clock::getScheduler, 16, clock);
+        try {
+            controller.initWithDefaults();
+            controller.updateConfig(Map.of(RuntimeConfig.HOSTS, "uva.nl"), -1);
+            controller.simulateISPfailure(true);
+            controller.start();
+            clock.advance(hour);
+            // saved while the outage is open, as by a flush before a crash
+            controller.flush();
+            clock.advance(0L);
+
+            VirtualClock later = new VirtualClock(start + 2 * hour);
+            ISPController reloaded = new ISPController("stale", later::getScheduler, 16, later);
+            assertTrue(reloaded.initWithPreviousSessionData());
+            long reloadedDowntime = reloaded.getRollup().getDowntime(start, start + 10 * hour, ISP);
+            assertTrue("downtime = " + reloadedDowntime, reloadedDowntime > hour - 5_000L && reloadedDowntime <= hour);
+            later.advance(hour);
+            assertEquals("The outage of the saved session is closed", reloadedDowntime, reloaded.getRollup().getDowntime(start, start + 10 * hour, ISP));
+
+            controller.exitService();
+            clock.advance(0L);
+            assertTrue(controller.awaitTermination(1_000L));
+            long downtime = controller.getRollup().getDowntime(start, start + 10 * hour, ISP);
+            assertTrue("downtime = " + downtime, downtime > hour - 5_000L && downtime <= hour);
+            clock.advance(hour);
+            assertEquals("The outage ended at the stop", downtime, controller.getRollup().getDowntime(start, start + 10 * hour, ISP));
+        } finally {
+            new File(Utilities.getSessionDataFileName("stale")).delete();
+            new File(Utilities.getProbeEventLogFileName("stale")).delete();
+        }
+    }
+
+    /**
+     * A stop while the line is down and flapping ends the outage and the episode. After a restart the stopped time does not count as unavailable.
+     */
+    @Test
+    public void testStopWhileFlapping() {
+        System.out.println("testStopWhileFlapping");
+        long start = 1_622_548_800_000L;
+        long hour = 3_600_000L;
+        VirtualClock clock = new VirtualClock(start);
+        ISPController controller = new ISPController("flapstop", clock::getScheduler, 16, clock);
+        List<Long> endedStarts = new ArrayList<>();
+        controller.addListener(new ControllerListener() {
+            @Override
+            public void stateChanged(ISPController c) {
+            }
+
+            @Override
+            public void outageEnded(ISPController c, long outageStart, long outageEnd, int cause) {
+                endedStarts.add(outageStart);
+            }
+        });
+        try {
+            controller.initWithDefaults();
+            controller.updateConfig(Map.of(RuntimeConfig.CHECK_INTERVAL, "1000", RuntimeConfig.RECHECK_DELAY, "1000", RuntimeConfig.HOSTS, "uva.nl"), -1);
+            // two outages within a minute make the line flapping
+            controller.setOutageDetection(1, 1, 2, 60_000L, 600_000L);
+            controller.simulateISPfailure(true);
+            controller.start();
+            clock.advance(3_000L);
+            controller.simulateISPfailure(false);
+            clock.advance(3_000L);
+            controller.simulateISPfailure(true);
+            clock.advance(3_000L);
+            int outages = controller.getSessionData().history.size();
+            long stopTime = clock.currentTimeMillis();
+            controller.stopTemporarily();
+            clock.advance(0L);
+            assertFalse(controller.isBusyCheckingConnections());
+            OutageStore history = controller.getSessionData().history;
+            assertEquals("The episode is registered at the stop", outages + 1, history.size());
+            assertEquals(FLAPPING, history.getCause(history.size() - 1));
+            assertEquals(1, history.getInterruptions(history.size() - 1));
+            assertEquals(stopTime, history.getEnd(history.size() - 1));
+            controller.publishStatus();
+            assertEquals(0L, controller.getStatusSnapshot().getCurrentISPUnavailability());
+            long downtime = controller.getRollup().getDowntime(start, start + 10 * hour, ISP);
+
+            clock.advance(hour);
+            controller.simulateISPfailure(false);
+            controller.restart(controller.getConfig().getHosts());
+            clock.advance(5_000L);
+            assertTrue(controller.isBusyCheckingConnections());
+            assertEquals("Only the stopped time is registered after the restart", outages + 2, history.size());
+            assertEquals(CONTROLLERDOWN, history.getCause(history.size() - 1));
+            assertFalse("An outage ended that was not open", endedStarts.contains(0L));
+            assertEquals(2, endedStarts.size());
+            controller.publishStatus();
+            assertEquals(0L, controller.getStatusSnapshot().getCurrentISPUnavailability());
+            assertEquals("The stopped time is not counted", downtime, controller.getRollup().getDowntime(start, start + 10 * hour, ISP));
+        } finally {
+            controller.exitService();
+            clock.advance(0L);
+            assertTrue(controller.awaitTermination(1_000L));
+            new File(Utilities.getSessionDataFileName("flapstop")).delete();
+            new File(Utilities.getProbeEventLogFileName("flapstop")).delete();
+        }
+    }
+
+    /**
+     * A restart after a temporary stop does not wait for the end of the check interval.
+     */
+    @Test
+    public void testQuickRestart() {
+        System.out.println("testQuickRestart");
+
+        List<String> hosts = new ArrayList();
+        hosts.add("uva.nl");
+
+        instance.doInBackground(hosts);
+        sleepMillis(120);
+        long checks = instance.getSessionData().successfulChecks;
+        instance.stopTemporarily();
+        instance.restart(hosts);
+        sleepMillis(300);
+        assertTrue("The controller is NOT checking connections now", instance.isBusyCheckingConnections());
+        assertTrue("No check was made after the restart", instance.getSessionData().successfulChecks > checks);
     }
 
     /**
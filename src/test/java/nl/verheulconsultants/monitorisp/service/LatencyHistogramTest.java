@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * The buckets are cumulative and the sum is in seconds.
+     */
+    @Test
+    public void testAppendTo() {
+        System.out.println("testAppendTo");
+        LatencyHistogram instance = new LatencyHistogram();
+        instance.record(800L);
+        instance.record(1_000L);
+        instance.record(30_000L);
+        instance.record(20_000_000L);
+        assertEquals(4L, instance.getCount());
+        assertEquals(20_031_800L, instance.getSum());
+
+        StringBuilder sb = new StringBuilder();
+        instance.appendTo(sb, "probe_seconds", "host=\"uva.nl\"");
+        String text = sb.toString();
+        assertTrue(text, text.startsWith("probe_seconds_bucket{host=\"uva.nl\",le=\"0.001\"} 2\n"));
+        assertTrue(text, text.contains("probe_seconds_bucket{host=\"uva.nl\",le=\"0.025\"} 2\n"));
+        assertTrue(text, text.contains("probe_seconds_bucket{host=\"uva.nl\",le=\"0.05\"} 3\n"));
+        assertTrue(text, text.contains("probe_seconds_bucket{host=\"uva.nl\",le=\"10\"} 3\n"));
+        assertTrue(text, text.contains("probe_seconds_bucket{host=\"uva.nl\",le=\"+Inf\"} 4\n"));
+        assertTrue(text, text.endsWith("probe_seconds_sum{host=\"uva.nl\"} 20.031800\nprobe_seconds_count{host=\"uva.nl\"} 4\n"));
+
+        sb.setLength(0);
+        new LatencyHistogram().appendTo(sb, "cycle_seconds", null);
+        assertTrue(sb.toString(), sb.toString().endsWith("cycle_seconds_sum 0.000000\ncycle_seconds_count 0\n"));
+    }
+
+    /**
+     * A quantile is estimated by the upper bound of its bucket.
+     */
+    @Test
+    public void testGetQuantile() {
+        System.out.println("testGetQuantile");
+        LatencyHistogram instance = new LatencyHistogram();
+        assertEquals(0L, instance.getQuantile(0.99));
+        for (int i = 0; i < 98; i++) {
+            instance.record(800L);
+        }
+        instance.record(3_000L);
+        instance.record(20_000_000L);
+        assertEquals(1_000L, instance.getQuantile(0.5));
+        assertEquals(5_000L, instance.getQuantile(0.99));
+        assertEquals(Long.MAX_VALUE, instance.getQuantile(1.0));
+    }
+
+    /**
+     * Seconds with six decimals.
+     */
+    @Test
+    public void testAppendSeconds() {
+        System.out.println("testAppendSeconds");
+        assertEquals("0.000005", LatencyHistogram.appendSeconds(new StringBuilder(), 5L).toString());
+        assertEquals("1.250000", LatencyHistogram.appendSeconds(new StringBuilder(), 1_250_000L).toString());
+        assertEquals("3600.123456", LatencyHistogram.appendSeconds(new StringBuilder(), 3_600_123_456L).toString());
+    }
+}
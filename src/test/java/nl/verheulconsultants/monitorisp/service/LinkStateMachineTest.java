@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.DOWN;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.FLAPPING_ENDED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.FLAPPING_STARTED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.OUTAGE_ENDED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.OUTAGE_STARTED;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.SUSPECT_DOWN;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.SUSPECT_UP;
+import static nl.verheulconsultants.monitorisp.service.LinkStateMachine.UP;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * LinkStateMachine tests. Checks are simulated every second.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class LinkStateMachineTest {
+
+    private static final long SECOND = 1_000L;
+
+    /**
+     * With thresholds of 1 every failed check starts an outage and every successful check ends it.
+     */
+    @Test
+    public void testWithoutHysteresis() {
+        System.out.println("testWithoutHysteresis");
+        LinkStateMachine instance = new LinkStateMachine(1, 1, 5, 600 * SECOND, 300 * SECOND);
+        assertEquals(0, instance.onProbe(true, 0L));
+        assertEquals(OUTAGE_STARTED, instance.onProbe(false, SECOND));
+        assertEquals(DOWN, instance.getState());
+        assertEquals(0, instance.onProbe(false, 2 * SECOND));
+        assertEquals(OUTAGE_ENDED, instance.onProbe(true, 3 * SECOND));
+        assertEquals(SECOND, instance.getOutageStart());
+        assertEquals(3 * SECOND, instance.getOutageEnd());
+        assertEquals(UP, instance.getState());
+    }
+
+    /**
+     * An outage is only confirmed after the confirm down threshold, but starts at the first failed check.
+     */
+    @Test
+    public void testConfirmThresholds() {
+        System.out.println("testConfirmThresholds");
+        LinkStateMachine instance = new LinkStateMachine(3, 2, 5, 600 * SECOND, 300 * SECOND);
+        assertEquals(0, instance.onProbe(false, SECOND));
+        assertEquals(0, instance.onProbe(false, 2 * SECOND));
+        assertEquals(SUSPECT_DOWN, instance.getState());
+        // a single success resets the suspicion
+        assertEquals(0, instance.onProbe(true, 3 * SECOND));
+        assertEquals(UP, instance.getState());
+        assertEquals(0, instance.onProbe(false, 4 * SECOND));
+        assertEquals(0, instance.onProbe(false, 5 * SECOND));
+        assertEquals(OUTAGE_STARTED, instance.onProbe(false, 6 * SECOND));
+        assertEquals(4 * SECOND, instance.getOutageStart());
+        assertEquals(0, instance.onProbe(true, 7 * SECOND));
+        assertEquals(SUSPECT_UP, instance.getState());
+        assertEquals(0, instance.onProbe(false, 8 * SECOND));
+        assertEquals(DOWN, instance.getState());
+        assertEquals(0, instance.onProbe(true, 9 * SECOND));
+        assertEquals(OUTAGE_ENDED, instance.onProbe(true, 10 * SECOND));
+        assertEquals(9 * SECOND, instance.getOutageEnd());
+    }
+
+    /**
+     * A burst of outages is coalesced into one flapping episode that ends after a quiet period.
+     */
+    @Test
+    public void testFlapping() {
+        System.out.println("testFlapping");
+        LinkStateMachine instance = new LinkStateMachine(1, 1, 3, 60 * SECOND, 30 * SECOND);
+        long t = 0L;
+        int started = 0;
+        for (int i = 0; i < 10; i++) {
+            int events = instance.onProbe(false, t += SECOND);
+            assertTrue((events & OUTAGE_STARTED) != 0);
+            if ((events & FLAPPING_STARTED) != 0) {
+                started++;
+                assertEquals(2, i);
+                assertEquals(t, instance.getEpisodeStart());
+            }
+            assertTrue((instance.onProbe(true, t += SECOND) & OUTAGE_ENDED) != 0);
+        }
+        assertEquals(1, started);
+        assertTrue(instance.isFlapping());
+        long lastEnd = t;
+        assertEquals(0, instance.onProbe(true, t += 20 * SECOND));
+        assertEquals(FLAPPING_ENDED, instance.onProbe(true, t += 10 * SECOND));
+        assertFalse(instance.isFlapping());
+        assertEquals(8, instance.getSubEvents());
+        assertEquals(lastEnd, instance.getEpisodeEnd());
+    }
+
+    /**
+     * Outages spread over more than the flap window do not make the line flapping.
+     */
+    @Test
+    public void testNoFlappingOutsideWindow() {
+        System.out.println("testNoFlappingOutsideWindow");
+        LinkStateMachine instance = new LinkStateMachine(1, 1, 3, 60 * SECOND, 30 * SECOND);
+        long t = 0L;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(OUTAGE_STARTED, instance.onProbe(false, t += 40 * SECOND));
+            assertEquals(OUTAGE_ENDED, instance.onProbe(true, t += SECOND));
+        }
+        assertFalse(instance.isFlapping());
+    }
+}
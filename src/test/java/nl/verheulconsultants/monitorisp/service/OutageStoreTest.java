@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import static nl.verheulconsultants.monitorisp.service.Utilities.FLAPPING;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.service.Utilities.SERVICEDOWN;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * OutageStore tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutageStoreTest {
+
+    /**
+     * Appending beyond the initial capacity must keep all outages.
+     */
+    @Test
+    public void testAppend() {
+        System.out.println("testAppend");
+        OutageStore instance = new OutageStore();
+        assertNull(instance.getLast());
+        for (int i = 0; i < 1_000; i++) {
+            instance.append(i * 10L, i * 10L + 5L, i % 2 == 0 ? ISP : INTERNAL);
+        }
+        assertEquals(1_000, instance.size());
+        assertEquals(9_990L, instance.getStart(999));
+        assertEquals(9_995L, instance.getEnd(999));
+        assertEquals(INTERNAL, instance.getCause(999));
+        OutageListItem last = instance.getLast();
+        assertEquals(1_000, last.getIndex());
+        assertEquals(5L, last.getDuration());
+        assertEquals(500 * 5L, instance.getTotalDuration(ISP));
+        assertEquals(ISP, instance.asList().get(998).getOutageCause());
+    }
+
+    /**
+     * Only coalesced outages carry a number of interruptions.
+     */
+    @Test
+    public void testInterruptions() {
+        System.out.println("testInterruptions");
+        OutageStore instance = new OutageStore();
+        for (int i = 0; i < 100; i++) {
+            if (i % 10 == 0) {
+                instance.append(i, i + 1L, FLAPPING, i + 2);
+            } else {
+                instance.append(i, i + 1L, ISP);
+            }
+        }
+        assertEquals(52, instance.getInterruptions(50));
+        assertEquals(1, instance.getInterruptions(51));
+        assertEquals(92, instance.get(90).getInterruptions());
+        OutageStore.Cursor cursor = instance.cursor();
+        cursor.moveTo(30);
+        assertEquals(32, cursor.getInterruptions());
+        assertTrue(instance.get(30).getOutageCauseAsString().contains("32 interruptions"));
+    }
+
+    /**
+     * The store must survive saving and loading the session data.
+     *
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        System.out.println("testSerialization");
+        OutageStore instance = new OutageStore();
+        for (int i = 0; i < 100; i++) {
+            instance.append(i, i + 1L, SERVICEDOWN);
+        }
+        instance.append(100L, 200L, FLAPPING, 12);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(instance);
+        }
+        OutageStore read;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (OutageStore) ois.readObject();
+        }
+        assertEquals(101, read.size());
+        assertEquals(99L, read.getStart(99));
+        assertEquals(SERVICEDOWN, read.getCause(0));
+        assertEquals(12, read.getInterruptions(100));
+        read.append(200L, 300L, ISP);
+        assertEquals(102, read.size());
+        assertEquals(1, read.getInterruptions(101));
+    }
+
+    /**
+     * Test of the conversion of the outage list of a previous version.
+     */
+    @Test
+    public void testOf() {
+        System.out.println("testOf");
+        List<OutageListItem> outages = new ArrayList<>();
+        outages.add(new OutageListItem(0, 100L, 200L, 100L, SERVICEDOWN));
+        outages.add(new OutageListItem(1, 300L, 450L, 150L, ISP));
+        OutageStore instance = OutageStore.of(outages);
+        assertEquals(2, instance.size());
+        assertEquals(150L, instance.getTotalDuration(ISP));
+        assertEquals(2, instance.getLast().getIndex());
+    }
+
+    /**
+     * A reader running concurrently with the writer must only see completely written outages.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testConcurrentRead() throws InterruptedException {
+        System.out.println("testConcurrentRead");
+        OutageStore instance = new OutageStore();
+        int total = 200_000;
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            int seen = 0;
+            while (seen < total && null == failure.get()) {
+                OutageStore.Cursor cursor = instance.cursor();
+                if (cursor.getLimit() > 0) {
+                    cursor.moveTo(cursor.getLimit() - 1);
+                    if (cursor.getEnd() != cursor.getStart() + 1L || cursor.getStart() != cursor.getIndex()) {
+                        failure.set("Incomplete outage at " + cursor.getIndex());
+                    }
+                }
+                seen = cursor.getLimit();
+            }
+        });
+        reader.start();
+        for (int i = 0; i < total; i++) {
+            instance.append(i, i + 1L, ISP);
+        }
+        reader.join(10_000);
+        assertNull(failure.get(), failure.get());
+        assertEquals(total, instance.size());
+    }
+}
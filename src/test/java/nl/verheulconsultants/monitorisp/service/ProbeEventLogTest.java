@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static nl.verheulconsultants.monitorisp.service.Utilities.sleepMillis;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ProbeEventLog tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProbeEventLogTest {
+
+    private static List<String> readLines(Path file, int expected) throws IOException {
+        for (int i = 0; i < 40 && (!Files.exists(file) || Files.readAllLines(file).size() < expected); i++) {
+            sleepMillis(50);
+        }
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A line is written when the result of a host changes; the identical results in between are summarized.
+     */
+    @Test
+    public void testRecord() throws IOException {
+        System.out.println("testRecord");
+        Path file = Files.createTempFile("probe-events", ".ndjson");
+        try {
+            ProbeEventLog instance = new ProbeEventLog("office", file);
+            long t = 1_622_548_800_000L;
+            instance.record(t, "uva.nl", null, 9_000L);
+            instance.record(t + 5_000L, "uva.nl", null, 9_100L);
+            instance.record(t + 10_000L, "uva.nl", null, 9_200L);
+            instance.record(t + 15_000L, "uva.nl", "ConnectException: Connection refused", 1_200L);
+            instance.record(t + 15_500L, "uva.nl", "ConnectException: Connection refused", 1_100L);
+            instance.record(t + 16_000L, "uva.nl", "SocketTimeoutException: connect timed out", 900_000L);
+            instance.record(t + 17_000L, "vu.nl", null, 8_000L);
+            instance.record(t + 20_000L, "vu.nl", null, 8_000L);
+
+            List<String> lines = readLines(file, 6);
+            assertEquals(lines.toString(), 6, lines.size());
+            assertEquals("{\"time\":\"2021-06-01T12:00:00Z\",\"profile\":\"office\",\"host\":\"uva.nl\",\"event\":\"ok\",\"rttMicros\":9000}", lines.get(0));
+            assertEquals("{\"time\":\"2021-06-01T12:00:15Z\",\"profile\":\"office\",\"host\":\"uva.nl\",\"event\":\"repeated\",\"times\":2,"
+                    + "\"until\":\"2021-06-01T12:00:10Z\"}", lines.get(1));
+            assertEquals("{\"time\":\"2021-06-01T12:00:15Z\",\"profile\":\"office\",\"host\":\"uva.nl\",\"event\":\"fail\","
+                    + "\"error\":\"ConnectException: Connection refused\",\"rttMicros\":1200}", lines.get(2));
+            assertTrue(lines.get(3), lines.get(3).contains("\"event\":\"repeated\",\"times\":1,"));
+            assertTrue(lines.get(4), lines.get(4).contains("\"error\":\"SocketTimeoutException: connect timed out\""));
+            assertTrue(lines.get(5), lines.get(5).contains("\"host\":\"vu.nl\",\"event\":\"ok\""));
+
+            // the summary of the repeated results when the checks stop
+            instance.summarize(t + 21_000L);
+            lines = readLines(file, 7);
+            assertEquals(lines.toString(), 7, lines.size());
+            assertEquals("{\"time\":\"2021-06-01T12:00:21Z\",\"profile\":\"office\",\"host\":\"vu.nl\",\"event\":\"repeated\",\"times\":1,"
+                    + "\"until\":\"2021-06-01T12:00:20Z\"}", lines.get(6));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Close writes the queued lines, also the summary, and stops the writer thread; a later probe starts a new one.
+     */
+    @Test
+    public void testClose() throws IOException {
+        System.out.println("testClose");
+        Path file = Files.createTempFile("probe-events", ".ndjson");
+        try {
+            ProbeEventLog instance = new ProbeEventLog("closing", file);
+            long t = 1_622_548_800_000L;
+            instance.record(t, "uva.nl", null, 9_000L);
+            instance.record(t + 5_000L, "uva.nl", null, 9_100L);
+            instance.summarize(t + 6_000L);
+            instance.close();
+            // no waiting: the lines are written by close
+            assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+            assertFalse("The writer thread is still running", writerRunning("closing"));
+
+            instance.record(t + 10_000L, "uva.nl", "ConnectException: Connection refused", 1_200L);
+            instance.close();
+            assertEquals(3, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+            assertFalse("The writer thread is still running", writerRunning("closing"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static boolean writerRunning(String profile) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("monitorisp-probe-events-" + profile)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static nl.verheulconsultants.monitorisp.service.Utilities.sleepMillis;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ProfileRegistry tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class ProfileRegistryTest {
+
+    /**
+     * Profiles are created once, ordered by name and have valid names only.
+     */
+    @Test
+    public void testCreate() {
+        System.out.println("testCreate");
+        ProfileRegistry instance = new ProfileRegistry();
+        assertEquals(ProfileRegistry.DEFAULT_PROFILE, instance.getDefault().getProfile());
+        ISPController office = instance.create("office");
+        assertSame(office, instance.create("office"));
+        assertSame(office, instance.get("office"));
+        assertNull(instance.get("home"));
+        assertNull(instance.get(null));
+        instance.create("backup-line");
+        assertEquals(List.of("backup-line", "default", "office"), instance.getNames());
+        assertEquals(3, instance.getAll().size());
+        for (String name : new String[]{"", "a b", "../etc", "x".repeat(33)}) {
+            try {
+                instance.create(name);
+                fail("Invalid name " + name);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Every profile has its own history and counters and stores its session data in a file of its own.
+     */
+    @Test
+    public void testSeparateState() {
+        System.out.println("testSeparateState");
+        ProfileRegistry instance = new ProfileRegistry();
+        ISPController home = instance.getDefault();
+        ISPController office = instance.create("office");
+        assertNotSame(home.getHistory(), office.getHistory());
+        assertNotSame(home.getRollup(), office.getRollup());
+        assertNotSame(home.getMetrics(), office.getMetrics());
+        assertEquals("profile=\"office\"", office.getMetrics().getLabels());
+        home.initWithDefaults();
+        assertTrue(office.getChoices().isEmpty());
+        assertEquals(Utilities.getSessionDataFileName(), Utilities.getSessionDataFileName(ProfileRegistry.DEFAULT_PROFILE));
+        assertTrue(Utilities.getSessionDataFileName("office").endsWith("MonitorISPData-office.bin"));
+    }
+
+    /**
+     * The controllers of all profiles run on the shared scheduler and exit at shutdown.
+     */
+    @Test
+    public void testSharedScheduler() throws InterruptedException {
+        System.out.println("testSharedScheduler");
+        ProfileRegistry instance = new ProfileRegistry();
+        ISPController home = instance.getDefault();
+        ISPController office = instance.create("office");
+        home.initWithDefaults();
+        office.initWithDefaults();
+        home.doInBackground(List.of("uva.nl"));
+        office.doInBackground(List.of("vu.nl"));
+        assertTrue(home.isRunning());
+        assertTrue(office.isRunning());
+        int threads = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("monitorisp-controller-")) {
+                threads++;
+            }
+        }
+        assertTrue("threads = " + threads, threads <= instance.getSchedulerThreads());
+        instance.shutdown(ISPController.TIMEOUT_5_SEC);
+        assertFalse(home.isRunning());
+        assertFalse(office.isRunning());
+    }
+
+    /**
+     * The failing hosts of one profile, with a pause between them, do not delay the probe cycles of the others.
+     */
+    @Test
+    public void testFailingProfiles() throws IOException {
+        System.out.println("testFailingProfiles");
+        Utilities.setSessionsDataFileNameForTest();
+        int port;
+        try (ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = closed.getLocalPort();
+        }
+        ProfileRegistry instance = new ProfileRegistry();
+        List<ISPController> failing = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            failing.add(instance.create("failing-" + i));
+        }
+        assertEquals(9, instance.getSchedulerThreads());
+        try {
+            for (ISPController controller : failing) {
+                controller.initWithDefaults();
+                // every cycle takes a refused connection and a pause of 2 seconds, then the next check follows in 0.5 seconds
+                controller.updateConfig(Map.of(RuntimeConfig.HOSTS, "127.0.0.1", RuntimeConfig.PORT, Integer.toString(port),
+                        RuntimeConfig.HOST_PAUSE, "2000"), -1L);
+                controller.start();
+            }
+            sleepMillis(10_000L);
+            for (ISPController controller : failing) {
+                assertEquals(controller.getProfile(), 0L, controller.getMetrics().getProbeGaps());
+                assertTrue(controller.getProfile() + " checked " + controller.getMetrics().getCycleDuration().getCount() + " times",
+                        controller.getMetrics().getCycleDuration().getCount() >= 3L);
+            }
+        } finally {
+            instance.shutdown(ISPController.TIMEOUT_5_SEC);
+            for (ISPController controller : failing) {
+                new File(Utilities.getSessionDataFileName(controller.getProfile())).delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * RuntimeConfig and ConfigFileWatcher tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class RuntimeConfigTest {
+
+    /**
+     * A change makes a new configuration; settings that are not changed keep their value.
+     */
+    @Test
+    public void testWith() {
+        System.out.println("testWith");
+        RuntimeConfig config = RuntimeConfig.DEFAULT.with(Map.of(RuntimeConfig.CHECK_INTERVAL, "10000", RuntimeConfig.HOSTS, "uva.nl,vu.nl"), 1L);
+        assertEquals(1L, config.getVersion());
+        assertEquals(10_000, config.getCheckInterval());
+        assertEquals(ISPController.TIMEOUT_900_MIL, config.getProbeTimeout());
+        assertEquals(List.of("uva.nl", "vu.nl"), config.getHosts());
+        assertEquals(ISPController.TIMEOUT_5_SEC, RuntimeConfig.DEFAULT.getCheckInterval());
+        assertEquals(config.toMap(), RuntimeConfig.DEFAULT.with(config.toMap(), 2L).toMap());
+    }
+
+    /**
+     * An invalid change is refused as a whole.
+     */
+    @Test
+    public void testInvalid() {
+        System.out.println("testInvalid");
+        List<Map<String, String>> invalid = List.of(Map.of("speed", "1"), Map.of(RuntimeConfig.PORT, "0"), Map.of(RuntimeConfig.PROBE_TIMEOUT, "fast"),
+                Map.of(RuntimeConfig.CHECK_INTERVAL, "10"), Map.of(RuntimeConfig.ROUTER_ADDRESS, "not a router"), Map.of(RuntimeConfig.HOSTS, "uva.nl,"));
+        for (Map<String, String> changes : invalid) {
+            try {
+                RuntimeConfig.DEFAULT.with(changes, 1L);
+                fail("Accepted " + changes);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * A configuration file is applied once when it changes.
+     */
+    @Test
+    public void testConfigFile() throws IOException {
+        System.out.println("testConfigFile");
+        ISPController controller = new ISPController("watched", null, 16);
+        controller.initWithDefaults();
+        ConfigFileWatcher watcher = new ConfigFileWatcher(new ProfileRegistry());
+        Path file = Files.createTempFile("monitorisp", ".properties");
+        try {
+            Files.writeString(file, "# test\ncheckInterval=2000\nport=443\n");
+            assertTrue(watcher.check(controller, file));
+            assertEquals(2_000, controller.getConfig().getCheckInterval());
+            assertEquals(443, controller.getConfig().getPort());
+            assertFalse("not changed", watcher.check(controller, file));
+
+            Files.writeString(file, "checkInterval=oops\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2_000L));
+            assertFalse("invalid", watcher.check(controller, file));
+            assertEquals(2_000, controller.getConfig().getCheckInterval());
+        } finally {
+            Files.delete(file);
+        }
+        assertFalse("no file", watcher.check(controller, file));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getProbeEventLogFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.getSessionDataFileName;
+import static nl.verheulconsultants.monitorisp.service.Utilities.setSessionsDataFileNameForTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * VirtualClock tests, also of a controller that runs weeks in the virtual time.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class VirtualClockTest {
+
+    private static final String PROFILE = "simulation";
+    private static final long START = 1_622_548_800_000L;
+    private static final long MINUTE = 60_000L;
+    private static final long INTERVAL = 5 * MINUTE;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private ServerSocket listener;
+    private Thread acceptor;
+
+    /**
+     * A loopback listener is the host that can be reached.
+     */
+    @Before
+    public void setUp() throws IOException {
+        System.out.println("setUp");
+        setSessionsDataFileNameForTest();
+        listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(() -> {
+            while (!listener.isClosed()) {
+                try (Socket socket = listener.accept()) {
+                    // the connection is all the probe wants; wait for the probe to close first, so the port it used is not reused too soon
+                    socket.getInputStream().read();
+                } catch (IOException ex) {
+                    // the listener is closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     *
+     */
+    @After
+    public void tearDown() throws IOException {
+        System.out.println("tearDown");
+        listener.close();
+        Files.deleteIfExists(Paths.get(getSessionDataFileName(PROFILE)));
+        Files.deleteIfExists(Paths.get(getProbeEventLogFileName(PROFILE)));
+    }
+
+    private ISPController startController(VirtualClock clock) {
+        ISPController controller = new ISPController(PROFILE, clock::getScheduler, ProbeSampleLog.DEFAULT_CAPACITY, clock);
+        controller.initWithDefaults();
+        // a second host, as in a real selection, keeps a lost loopback connection from being an outage
+        controller.updateConfig(Map.of(RuntimeConfig.HOSTS, "127.0.0.1,127.0.0.1", RuntimeConfig.PORT, Integer.toString(listener.getLocalPort()),
+                RuntimeConfig.CHECK_INTERVAL, Long.toString(INTERVAL)), -1L);
+        return controller;
+    }
+
+    private static void exit(ISPController controller, VirtualClock clock) {
+        controller.exitService();
+        clock.advance(0L);
+        assertTrue("The controller did not exit", controller.awaitTermination(1_000L));
+    }
+
+    /**
+     * The tasks run in the order of their due time, with the clock set to that time.
+     */
+    @Test
+    public void testAdvance() {
+        System.out.println("testAdvance");
+        VirtualClock instance = new VirtualClock(START);
+        ScheduledExecutorService scheduler = instance.getScheduler();
+        List<Long> runs = new ArrayList<>();
+        scheduler.schedule(() -> runs.add(instance.currentTimeMillis()), 300L, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> runs.add(instance.currentTimeMillis()), 100L, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> runs.add(instance.currentTimeMillis()), 200L, TimeUnit.MILLISECONDS);
+        assertTrue("Nothing runs before the clock is advanced", runs.isEmpty());
+        instance.advance(250L);
+        assertEquals(List.of(START + 100L, START + 200L), runs);
+        assertEquals(START + 250L, instance.currentTimeMillis());
+        assertEquals(250_000_000L, instance.nanoTime());
+        assertEquals(1, instance.getPendingTasks());
+        instance.advance(DAY);
+        assertEquals(START + 300L, (long) runs.get(2));
+        assertEquals(START + 250L + DAY, instance.currentTimeMillis());
+    }
+
+    /**
+     * A sleep moves the clock at once; the tasks that became due run late. A periodic task runs until it is cancelled.
+     */
+    @Test
+    public void testSleepAndPeriodic() throws InterruptedException {
+        System.out.println("testSleepAndPeriodic");
+        VirtualClock instance = new VirtualClock(START);
+        ScheduledExecutorService scheduler = instance.getScheduler();
+        List<Long> runs = new ArrayList<>();
+        ScheduledFuture<?> periodic = scheduler.scheduleAtFixedRate(() -> runs.add(instance.currentTimeMillis()), 0L, 1L, TimeUnit.HOURS);
+        instance.sleep(HOUR / 2);
+        assertTrue("A sleep does not run tasks", runs.isEmpty());
+        instance.advance(0L);
+        assertEquals(List.of(START + HOUR / 2), runs);
+        instance.advance(DAY);
+        assertEquals(25, runs.size());
+        assertEquals(START + DAY, (long) runs.get(24));
+        assertEquals(HOUR / 2, periodic.getDelay(TimeUnit.MILLISECONDS));
+        periodic.cancel(false);
+        instance.advance(DAY);
+        assertEquals(25, runs.size());
+        assertEquals(0, instance.getPendingTasks());
+    }
+
+    /**
+     * Two weeks of probe cycles with an outage of two hours run in the virtual time.
+     */
+    @Test
+    public void testSimulateOutage() {
+        System.out.println("testSimulateOutage");
+        VirtualClock clock = new VirtualClock(START);
+        ISPController controller = startController(clock);
+        long realStart = System.currentTimeMillis();
+        controller.start();
+        clock.advance(3 * DAY);
+        long down = clock.currentTimeMillis();
+        controller.simulateISPfailure(true);
+        clock.advance(2 * HOUR);
+        long up = clock.currentTimeMillis();
+        controller.simulateISPfailure(false);
+        clock.advance(11 * DAY);
+        exit(controller, clock);
+        System.out.println("Two weeks are simulated in " + (System.currentTimeMillis() - realStart) + " ms");
+
+        assertEquals(1L, controller.getSessionData().numberOfInterruptions);
+        OutageStore.Cursor cursor = controller.getHistory().cursor();
+        OutageStore.Cursor last = null;
+        while (cursor.next()) {
+            if (cursor.getCause() == ISP) {
+                assertTrue("The outage starts at the first failed check", cursor.getStart() >= down && cursor.getStart() <= down + INTERVAL);
+                assertTrue("The outage ends at the first successful recheck", cursor.getEnd() >= up && cursor.getEnd() <= up + ISPController.RECHECK_DELAY);
+                last = cursor;
+            }
+        }
+        assertNotNull("The outage is not registered", last);
+        long downtime = controller.getRollup().getDowntime(START, START + 14 * DAY, ISP);
+        assertTrue("The downtime is " + downtime, downtime > 2 * HOUR - INTERVAL && downtime <= 2 * HOUR);
+        assertEquals(START + 14 * DAY + 2 * HOUR, clock.currentTimeMillis());
+    }
+
+    /**
+     * What if the outage detection waits for more failed checks: short interruptions are no longer outages.
+     */
+    @Test
+    public void testWhatIfThreshold() {
+        System.out.println("testWhatIfThreshold");
+        int[] outages = new int[2];
+        int[] confirmDown = {1, 1_000};
+        for (int k = 0; k < confirmDown.length; k++) {
+            VirtualClock clock = new VirtualClock(START);
+            ISPController controller = startController(clock);
+            controller.setOutageDetection(confirmDown[k], ISPController.CONFIRM_UP, ISPController.FLAP_THRESHOLD, ISPController.FLAP_WINDOW,
+                    ISPController.FLAP_QUIET);
+            controller.start();
+            // an interruption of 6 minutes every hour, longer than the check interval
+            for (int hour = 1; hour <= 24; hour++) {
+                clock.advanceTo(START + hour * HOUR);
+                controller.simulateISPfailure(true);
+                clock.advance(6 * MINUTE);
+                controller.simulateISPfailure(false);
+            }
+            clock.advance(HOUR);
+            exit(controller, clock);
+            outages[k] = (int) controller.getSessionData().numberOfInterruptions;
+        }
+        assertEquals("Every interruption is an outage", 24, outages[0]);
+        assertEquals("No interruption lasts 1000 rechecks", 0, outages[1]);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.PROFILES;
+import static nl.verheulconsultants.monitorisp.ui.WicketApplication.getController;
+import org.apache.wicket.Page;
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * DashboardPage tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class DashboardPageTest {
+
+    private WicketTester tester;
+
+    @Before
+    public void setUp() {
+        tester = new WicketTester(new MockApplication() {
+            @Override
+            protected void init() {
+                super.init();
+                mountPage("/dashboard/#{profile}", DashboardPage.class);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        tester.destroy();
+    }
+
+    /**
+     * Rendering the dashboard does not bind a session nor stores the page.
+     */
+    @Test
+    public void testStateless() {
+        System.out.println("testStateless");
+        tester.startPage(DashboardPage.class);
+        tester.assertRenderedPage(DashboardPage.class);
+        assertTrue(tester.getLastRenderedPage().isPageStateless());
+        assertTrue(tester.getSession().isTemporary());
+        tester.assertContains("content=\"15\"");
+    }
+
+    /**
+     * The refresh interval is taken from the page parameters, but not shorter than the minimum.
+     */
+    @Test
+    public void testRefresh() {
+        System.out.println("testRefresh");
+        tester.startPage(DashboardPage.class, new PageParameters().add("refresh", 60));
+        tester.assertContains("content=\"60\"");
+        tester.startPage(DashboardPage.class, new PageParameters().add("refresh", 1));
+        tester.assertContains("content=\"5\"");
+    }
+
+    /**
+     * A profile is selected by name; an unknown profile is not found.
+     */
+    @Test
+    public void testProfile() {
+        System.out.println("testProfile");
+        PROFILES.create("office");
+        tester.startPage(DashboardPage.class, new PageParameters().add("profile", "office"));
+        tester.assertRenderedPage(DashboardPage.class);
+        tester.assertLabel("profile", "office");
+        tester.assertContains("profile=office");
+        tester.startPage(DashboardPage.class, new PageParameters().add("profile", "nosuchprofile"));
+        assertEquals(404, tester.getLastResponse().getStatus());
+    }
+
+    /**
+     * The most recent outages come first.
+     */
+    @Test
+    public void testRecentOutages() {
+        System.out.println("testRecentOutages");
+        OutageStore store = new OutageStore();
+        assertTrue(DashboardPage.getRecentOutages(store, 3).isEmpty());
+        for (int i = 0; i < 5; i++) {
+            store.append(i * 1_000L, i * 1_000L + 10L, ISP);
+        }
+        List<OutageListItem> recent = DashboardPage.getRecentOutages(store, 3);
+        assertEquals(3, recent.size());
+        assertEquals(5, recent.get(0).getIndex());
+        assertEquals(3, recent.get(2).getIndex());
+    }
+
+    /**
+     * Compare the serialized size of the pages; the HomePage is kept in the session page store for every viewer, the dashboard is not.
+     */
+    @Test
+    public void testPageSize() {
+        System.out.println("testPageSize");
+        if (getController().getChoices().isEmpty()) {
+            getController().initWithDefaults();
+        }
+        Page home = tester.startPage(HomePage.class);
+        long homeSize = WicketObjects.sizeof(home);
+        Page dashboard = tester.startPage(DashboardPage.class);
+        long dashboardSize = WicketObjects.sizeof(dashboard);
+        System.out.println("serialized size HomePage = " + homeSize + " bytes, DashboardPage = " + dashboardSize + " bytes");
+        assertFalse(home.isPageStateless());
+        assertTrue(dashboardSize < homeSize);
+    }
+}
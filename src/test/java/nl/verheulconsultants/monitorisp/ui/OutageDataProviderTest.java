@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.OutageListItem;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import static nl.verheulconsultants.monitorisp.service.Utilities.INTERNAL;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * OutageDataProvider tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class OutageDataProviderTest {
+
+    private static OutageDataProvider provider(final OutageStore store) {
+        return new OutageDataProvider() {
+            @Override
+            protected OutageStore getStore() {
+                return store;
+            }
+        };
+    }
+
+    private static List<Integer> indexes(Iterator<? extends OutageListItem> it) {
+        List<Integer> result = new ArrayList<>();
+        it.forEachRemaining(o -> result.add(o.getIndex()));
+        return result;
+    }
+
+    /**
+     * The default order shows the newest outage first, one page at a time.
+     */
+    @Test
+    public void testDefaultPaging() {
+        System.out.println("testDefaultPaging");
+        OutageStore store = new OutageStore();
+        for (int i = 0; i < 100; i++) {
+            store.append(i * 1_000L, i * 1_000L + 10L, ISP);
+        }
+        OutageDataProvider instance = provider(store);
+        assertEquals(100L, instance.size());
+        assertEquals(List.of(100, 99, 98), indexes(instance.iterator(0, 3)));
+        assertEquals(List.of(2, 1), indexes(instance.iterator(98, 10)));
+
+        instance.setSort(OutageDataProvider.START, SortOrder.ASCENDING);
+        assertEquals(List.of(11, 12), indexes(instance.iterator(10, 2)));
+    }
+
+    /**
+     * Filter on cause and sort on duration.
+     */
+    @Test
+    public void testFilterAndSort() {
+        System.out.println("testFilterAndSort");
+        OutageStore store = new OutageStore();
+        store.append(0L, 300L, ISP);
+        store.append(1_000L, 1_100L, INTERNAL);
+        store.append(2_000L, 2_500L, ISP);
+        store.append(3_000L, 3_050L, ISP);
+        OutageDataProvider instance = provider(store);
+        instance.getFilterState().setCauseName("ISP");
+        assertEquals(3L, instance.size());
+        assertEquals(List.of(4, 3, 1), indexes(instance.iterator(0, 10)));
+
+        instance.setSort(OutageDataProvider.DURATION, SortOrder.ASCENDING);
+        assertEquals(List.of(4, 1, 3), indexes(instance.iterator(0, 10)));
+
+        // a new outage must show up although the selection is cached
+        store.append(4_000L, 4_010L, ISP);
+        assertEquals(4L, instance.size());
+        assertEquals(List.of(5, 4), indexes(instance.iterator(0, 2)));
+
+        instance.getFilterState().setCauseName(null);
+        assertEquals(5L, instance.size());
+    }
+}
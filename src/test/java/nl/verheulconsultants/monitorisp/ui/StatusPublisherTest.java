@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015-2021, Verheul Consultants
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package nl.verheulconsultants.monitorisp.ui;
+
+import java.util.List;
+import nl.verheulconsultants.monitorisp.service.ISPController;
+import nl.verheulconsultants.monitorisp.service.OutageStore;
+import nl.verheulconsultants.monitorisp.service.StatusListItem;
+import static nl.verheulconsultants.monitorisp.service.Utilities.ISP;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * StatusPublisher tests.
+ *
+ * @author Erik Verheul <erik@verheulconsultants.nl>
+ */
+public class StatusPublisherTest {
+
+    /**
+     * Only changed status values and new outages are in the delta.
+     */
+    @Test
+    public void testCreateDelta() {
+        System.out.println("testCreateDelta");
+        ISPController controller = new ISPController();
+        List<StatusListItem> status = controller.getStatusData();
+        OutageStore history = new OutageStore();
+        history.append(0L, 1_000L, ISP);
+        StatusPublisher instance = new StatusPublisher(null);
+
+        String delta = instance.createDelta(status, history);
+        assertTrue(delta, delta.startsWith("{\"status\":[{\"index\":1,\"value\":"));
+        assertFalse("the history at the first call is already shown", delta.contains("\"outages\""));
+        assertNull(instance.createDelta(status, history));
+
+        history.append(5_000L, 65_000L, ISP);
+        delta = instance.createDelta(status, history);
+        assertTrue(delta, delta.startsWith("{\"outages\":[{\"index\":2,\"start\":"));
+        assertTrue(delta, delta.endsWith(",\"duration\":\"00:00:01:00 [d:h:m:s]\",\"cause\":\"ISP\"}]}"));
+        assertNull(instance.createDelta(status, history));
+    }
+
+    /**
+     * After a burst no more than a page of outages is pushed.
+     */
+    @Test
+    public void testBurst() {
+        System.out.println("testBurst");
+        OutageStore history = new OutageStore();
+        StatusPublisher instance = new StatusPublisher(null);
+        assertNull(instance.createDelta(List.of(), history));
+        for (int i = 0; i < 100; i++) {
+            history.append(i * 1_000L, i * 1_000L + 10L, ISP);
+        }
+        String delta = instance.createDelta(List.of(), history);
+        assertEquals(StatusPublisher.MAX_PUSHED_OUTAGES, delta.split("\"index\"").length - 1);
+        assertTrue(delta, delta.startsWith("{\"outages\":[{\"index\":76,"));
+    }
+}